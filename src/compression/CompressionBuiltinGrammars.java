@@ -39,7 +39,7 @@ public class CompressionBuiltinGrammars {
             System.out.println("\t where <dataset> is the name of a subfolder in datasets ");
             System.out.println("\t where <grammars> is a comma-separated list of built-in grammar names");
             System.out.println("\t where <with-NCR> [true|false] whether or not to include rules for noncanonical base pairs ");
-            System.out.println("\t where <rule-probability-model> is either ADAPTIVE , SEMI-ADAPTIVE or STATIC");
+            System.out.println("\t where <rule-probability-model> is either ADAPTIVE , SEMI-ADAPTIVE, STATIC, STATIC-CONTEXT or MIXED");
             System.out.println("\t where <training-dataset> is the name for the rule probabilities for the static model ");
 
             System.exit(98);
@@ -52,7 +52,8 @@ public class CompressionBuiltinGrammars {
         String ruleProbTyp = args[3];
         RuleProbType model = RuleProbType.fromString(ruleProbTyp);
         TrainingDataset trainingDataset = null;
-        if (model == RuleProbType.STATIC || model == RuleProbType.STATIC_FROM_FILE) {
+        if (model == RuleProbType.STATIC || model == RuleProbType.STATIC_FROM_FILE
+                || model == RuleProbType.STATIC_CONTEXT || model == RuleProbType.MIXED) {
             if (args.length < 5) {
                 System.out.println("CompressionsBuiltinGrammars <dataset> <grammars> <with-NCR> <rule-probability-model> <training-dataset>");
                 System.out.println("\t where <training-dataset> is the name for the rule probabilities for the static model ");
@@ -104,8 +105,11 @@ public class CompressionBuiltinGrammars {
 
         for (SampleGrammar sg : listOfGrammars) {
             RNAGrammar rnaGrammar = sg.getGrammar();
+            // the rule counts headers a decoder needs, see SemiAdaptiveArchive
+            Map<RNAWithStructure, Integer> headerLengths = model == RuleProbType.SEMI_ADAPTIVE
+                    ? Collections.synchronizedMap(new HashMap<>()) : null;
             Map<RNAWithStructure, Integer> encodedLengths = Compressions.getEncodedLengthsParallel(
-                    dataset, rnaGrammar, model, trainingDataset);
+                    dataset, rnaGrammar, model, trainingDataset, headerLengths);
 
             List<String> cells = new ArrayList<>();
             cells.add(sg.getName()); //name of grammar file
@@ -115,6 +119,8 @@ public class CompressionBuiltinGrammars {
             out.appendRow(cells);
             System.out.println("Grammar " + sg.getName() + " done");
             System.out.println("bit per base " + Compressions.getBitsPerBase(encodedLengths));
+            if (headerLengths != null)
+                System.out.println("header bit per base " + Compressions.getBitsPerBase(headerLengths));
             System.out.println();
         }
         out.close();
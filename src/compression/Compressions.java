@@ -1,14 +1,21 @@
 package compression;
 
 
-import compression.arithmaticCoding.bigDecimalAc.ArithmeticEncoder;
 import compression.arithmaticCoding.bigDecimalAc.BitSizeOnlyArithmeticEncoder;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.benchmark.SemiAdaptiveArchive;
 import compression.data.CachedDataset;
 import compression.data.Dataset;
 import compression.data.FolderBasedDataset;
 import compression.data.TrainingDataset;
 import compression.grammar.*;
+import compression.samplegrammars.LeftmostDerivation;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+import compression.samplegrammars.RuleProbsForGrammarSemiAdaptive;
 import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.CodeLengthOracle;
+import compression.samplegrammars.model.ContextRuleProbModel;
+import compression.samplegrammars.model.MixingRuleProbModel;
 import compression.samplegrammars.model.RuleProbModel;
 import compression.samplegrammars.model.SemiAdaptiveRuleProbModel;
 import compression.samplegrammars.model.StaticRuleProbModel;
@@ -64,7 +71,8 @@ public class Compressions {
         System.out.println("withNonCanonicalRules = " + withNonCanonicalRules);
         System.out.println("model = "+ model);
         TrainingDataset trainingDataset = null;
-        if (model == RuleProbType.STATIC || model == RuleProbType.STATIC_FROM_FILE) {
+        if (model == RuleProbType.STATIC || model == RuleProbType.STATIC_FROM_FILE
+                || model == RuleProbType.STATIC_CONTEXT || model == RuleProbType.MIXED) {
             if (args.length < 5) {
                 System.out.println("Compressions <dataset> <grammar-folder> <with-NCR> <rule-probability-model> <training-dataset>");
                 System.out.println("\t where <training-dataset> is the name for the rule probabilities for the static model ");
@@ -113,8 +121,11 @@ public class Compressions {
 
         for (SecondaryStructureGrammar ssg : grammarFolder) {
             RNAGrammar G = RNAGrammar.from(ssg, withNonCanonicalRules);
+            // the rule counts headers a decoder needs, see SemiAdaptiveArchive
+            Map<RNAWithStructure, Integer> headerLengths = model == RuleProbType.SEMI_ADAPTIVE
+                    ? Collections.synchronizedMap(new HashMap<>()) : null;
             Map<RNAWithStructure, Integer> encodedLengths = getEncodedLengthsParallel(
-                    dataset, G, model, trainingDataset);
+                    dataset, G, model, trainingDataset, headerLengths);
 
             List<String> cells = new ArrayList<>();
             cells.add(ssg.name); //name of grammar file
@@ -124,6 +135,8 @@ public class Compressions {
             out.appendRow(cells);
             System.out.println("Grammar " + ssg.name + " done");
             System.out.println("bit per base " + getBitsPerBase(encodedLengths));
+            if (headerLengths != null)
+                System.out.println("header bit per base " + getBitsPerBase(headerLengths));
             System.out.println();
         }
         out.close();
@@ -131,14 +144,27 @@ public class Compressions {
 
     public static Map<RNAWithStructure, Integer> getEncodedLengthsParallel(
             final Dataset dataset, final RNAGrammar G, final RuleProbType model, final TrainingDataset trainingDataset) {
+        return getEncodedLengthsParallel(dataset, G, model, trainingDataset, null);
+    }
+
+    /**
+     * Like {@link #getEncodedLengthsParallel(Dataset, RNAGrammar, RuleProbType, TrainingDataset)};
+     * for {@link RuleProbType#SEMI_ADAPTIVE}, also puts the sizes in bits of the rule counts headers of
+     * {@link SemiAdaptiveArchive} into headerLengths (if not null), from the same derivations.
+     */
+    public static Map<RNAWithStructure, Integer> getEncodedLengthsParallel(
+            final Dataset dataset, final RNAGrammar G, final RuleProbType model, final TrainingDataset trainingDataset,
+            final Map<RNAWithStructure, Integer> headerLengths) {
         Map<RNAWithStructure, Integer> encodedLengths = Collections.synchronizedMap(
                 new HashMap<>(dataset.getSize() * 3 / 2));
 
         // For static models, get rule probabilities once and for all up front
         final Map<Rule, Double> staticRuleProbs;
+        ContextRuleProbModel contextModel = null;
         try {
             switch (model) {
                 case STATIC:
+                case MIXED:
                     // compute rule counts over training dataset
                     Dataset cachedTrainingDataset = new CachedDataset(trainingDataset);
                     Map<Rule, Long> ruleCounts = G.computeRuleCounts(cachedTrainingDataset);
@@ -149,6 +175,12 @@ public class Compressions {
                     staticRuleProbs = Collections.unmodifiableMap(
                             G.readRuleProbs(trainingDataset.ruleProbsFileFor(G)));
                     break;
+                case STATIC_CONTEXT:
+                    // rule counts per context, shared by the models of all RNAs
+                    contextModel = new ContextRuleProbModel(G.getGrammar(),
+                            new RuleCountsForGrammarLaPlace(G.getGrammar(), new CachedDataset(trainingDataset), true));
+                    staticRuleProbs = null;
+                    break;
                 default:
                     staticRuleProbs = null;
             }
@@ -160,34 +192,84 @@ public class Compressions {
             throw new RuntimeException(e);
         }
 
+        final ContextRuleProbModel sharedContextModel = contextModel;
+        // the static model quantises its frequencies once and is immutable, so all RNAs share it
+        final StaticRuleProbModel sharedStaticModel = staticRuleProbs != null
+                ? new StaticRuleProbModel(G.getGrammar(), staticRuleProbs) : null;
+        final MixingRuleProbModel sharedMixingModel = model == RuleProbType.MIXED
+                ? new MixingRuleProbModel(G.getGrammar(), sharedStaticModel) : null;
         StreamSupport.stream(dataset.spliterator(), true).unordered()
                 .forEach((rnaWithStructure) -> {
-                    final ArithmeticEncoder arithmeticEncoder = new BitSizeOnlyArithmeticEncoder();
-                    final RuleProbModel ruleProbModel;
+                    final int encodedLength;
                     switch (model) {
                         case STATIC:
                         case STATIC_FROM_FILE:
-                            ruleProbModel = new StaticRuleProbModel(G.getGrammar(), staticRuleProbs);
+                            encodedLength = encodedLength(sharedStaticModel, G, rnaWithStructure);
                             break;
-                        case SEMI_ADAPTIVE:
-                            ruleProbModel = new SemiAdaptiveRuleProbModel(G, rnaWithStructure);
+                        case STATIC_CONTEXT:
+                            encodedLength = encodedLength(new ContextRuleProbModel(sharedContextModel),
+                                    G, rnaWithStructure);
                             break;
-                        case ADAPTIVE:
-                            ruleProbModel = new AdaptiveRuleProbModel(G);
+                        case MIXED:
+                            encodedLength = encodedLength(new MixingRuleProbModel(sharedMixingModel),
+                                    G, rnaWithStructure);
                             break;
+                        case SEMI_ADAPTIVE: {
+                            List<Rule> derivation = LeftmostDerivation.rules(G, rnaWithStructure);
+                            encodedLength = LocalConfig.EXACT_CODE_LENGTHS
+                                    ? exactEncodedLength(derivation, SemiAdaptiveRuleProbModel.fromCounts(G,
+                                            new RuleProbsForGrammarSemiAdaptive(G, derivation).ruleCounts()))
+                                    // closed form from the rule counts, no need to simulate coding
+                                    : CodeLengthOracle.encodedLength(CodeLengthOracle.semiAdaptiveBits(G, derivation));
+                            if (headerLengths != null)
+                                headerLengths.put(rnaWithStructure, headerBits(G, derivation));
+                            break;
+                        }
+                        case ADAPTIVE: {
+                            List<Rule> derivation = LeftmostDerivation.rules(G, rnaWithStructure);
+                            encodedLength = LocalConfig.EXACT_CODE_LENGTHS
+                                    ? exactEncodedLength(derivation, new AdaptiveRuleProbModel(G))
+                                    : CodeLengthOracle.encodedLength(CodeLengthOracle.adaptiveBits(G, derivation));
+                            break;
+                        }
                         default:
                             throw new AssertionError();
                     }
-                    GenericRNAEncoderForPrecision encoder =
-                            new GenericRNAEncoderForPrecision(
-                                    ruleProbModel, arithmeticEncoder,
-                                    G.getGrammar(), G.getStartSymbol());
-                    int encodedLength = encoder.getPrecisionForRNACode(rnaWithStructure);
                     encodedLengths.put(rnaWithStructure, encodedLength);
                 });
         return encodedLengths;
     }
 
+    /**
+     * Encoded length of rna with model in bits: the sum of the log interval lengths, or with
+     * {@link LocalConfig#EXACT_CODE_LENGTHS}, the exact size of the Nayuki coder's output.
+     */
+    private static int encodedLength(final RuleProbModel model, final RNAGrammar G, final RNAWithStructure rna) {
+        GenericRNAEncoderForPrecision encoder = new GenericRNAEncoderForPrecision(
+                model, new BitSizeOnlyArithmeticEncoder(), G.getGrammar(), G.getStartSymbol());
+        if (LocalConfig.EXACT_CODE_LENGTHS)
+            return exactEncodedLength(encoder.leftmostDerivationFor(rna), model);
+        return encoder.getPrecisionForRNACode(rna);
+    }
+
+    /** Size of the Nayuki coder's output in bits, computed without storing it */
+    private static int exactEncodedLength(final List<Rule> derivation, final RuleProbModel model) {
+        try {
+            return Math.toIntExact(NayukiEncodeRunner.encodedBits(derivation, model));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Size of the rule counts header of {@link SemiAdaptiveArchive} in bits */
+    private static int headerBits(final RNAGrammar G, final List<Rule> derivation) {
+        try {
+            return Math.toIntExact(SemiAdaptiveArchive.headerBits(G, derivation));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static double getBitsPerBase(Map<RNAWithStructure, Integer> encodedLengths) {
    		Stream<Double> bitsPerBase = encodedLengths.entrySet().parallelStream().map(e -> {
    			RNAWithStructure rna = e.getKey();
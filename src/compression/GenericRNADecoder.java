@@ -38,50 +38,15 @@ public class GenericRNADecoder {
 
     /** decode from given ArithmeticDecoder */
     public RNAWithStructure decode() {
-        final List<Category> leftmostDerivation = new LinkedList<>();
-        NonTerminal leftmostNT = startSymbol;
-        leftmostDerivation.add(leftmostNT);
-        while (leftmostNT != null) {
+        final LeftmostDerivationStack derivation = new LeftmostDerivationStack(startSymbol);
+        NonTerminal leftmostNT;
+        while ((leftmostNT = derivation.nextNonTerminal()) != null) {
             final List<Interval> options = model.getIntervalList(leftmostNT);
             Interval interval = acDecoder.decodeNext(options);
             List<Category> rhs = model.getRhsFor(interval, leftmostNT);
-            leftmostNT = replaceFirstNonterminal(leftmostDerivation, rhs);
+            derivation.expand(rhs);
         }
-        return getRNAString(decodeCategoryList(leftmostDerivation));
-    }
-
-
-    /**
-     * replace the first nonterminal in the derivation with rhs and
-     * return the new leftmost nonterminal in the derivation.
-     * */
-    private static NonTerminal replaceFirstNonterminal(final List<Category> leftmostDerivation, List<Category> rhs) {
-	    for (ListIterator<Category> iterator = leftmostDerivation.listIterator(); iterator.hasNext(); ) {
-		    final Category cat = iterator.next();
-		    if (Category.isNonTerminal(cat)) {
-                // replace the nonterminal with the rhs
-                iterator.remove();
-			    for (Category category : rhs) iterator.add(category);
-			    // find next nonterminal, can be either in rhs or in rest of derivation
-                for (Category category : rhs) iterator.previous(); // backtrack
-                while (iterator.hasNext()) {
-                    final Category nextCat = iterator.next();
-                    if (Category.isNonTerminal(nextCat)) {
-                        return (NonTerminal) nextCat;
-                    }
-                }
-		    }
-	    }
-        return null; // no more nonterminals
-    }
-
-    private ArrayList<PairOfChar> decodeCategoryList(List<Category> catList) {
-        ArrayList<PairOfChar> pairOfCharList = new ArrayList<>();
-        for (Category cat : catList) {
-            if (!Category.isTerminal(cat)) throw new IllegalArgumentException("only terminals allowed here");
-            pairOfCharList.add(((PairOfCharTerminal) cat).getChars());
-        }
-        return pairOfCharList;
+        return derivation.toRNA();
     }
 
     public RNAWithStructure getRNAString(ArrayList<PairOfChar> POCList) {
@@ -3,7 +3,7 @@ package compression;
 import compression.arithmaticCoding.BigDecimalACAdapter;
 import compression.arithmaticCoding.bigDecimalAc.ArithmeticEncoder;
 import compression.arithmaticCoding.bigDecimalAc.Interval;
-import compression.parser.SRFParser;
+import compression.parser.CompiledSRFParser;
 import compression.parser.StochasticParser;
 import compression.samplegrammars.model.RuleProbModel;
 import compression.samplegrammars.LeftmostDerivation;
@@ -11,6 +11,7 @@ import compression.grammar.NonTerminal;
 import compression.grammar.Rule;
 
 import compression.grammar.*;
+import compression.samplegrammars.model.ContextRuleProbModel;
 import compression.samplegrammars.model.StaticRuleProbModel;
 
 import java.util.ArrayList;
@@ -43,9 +44,11 @@ public class GenericRNAEncoder {
         // NB: We should NOT use a semiadaptive model in the parser (even though it is static after training),
         // as require to get the SAME derivation
         if (model instanceof StaticRuleProbModel)
-            this.parser = new SRFParser<>(grammar, model);
+            this.parser = new CompiledSRFParser<>(grammar, model);
+        else if (model instanceof ContextRuleProbModel)
+            this.parser = new CompiledSRFParser<>(grammar, ((ContextRuleProbModel) model).getBaseModel());
         else
-            this.parser = new SRFParser<>(grammar, RuleProbModel.DONT_CARE);
+            this.parser = new CompiledSRFParser<>(grammar, RuleProbModel.DONT_CARE);
     }
 
     public List<Rule> leftmostDerivationFor(RNAWithStructure RNA){
@@ -0,0 +1,93 @@
+package compression;
+
+import compression.grammar.Category;
+import compression.grammar.NonTerminal;
+import compression.grammar.PairOfChar;
+import compression.grammar.PairOfCharTerminal;
+import compression.grammar.RNAWithStructure;
+
+import java.util.List;
+
+/**
+ * The sentential form of a leftmost derivation that is being decoded, for
+ * {@link GenericRNADecoder} and the Nayuki decode runner.
+ * <p>
+ * Terminals left of the leftmost nonterminal are final, so they are appended to the output
+ * right away; the symbols right of it are kept on a stack, with the leftmost on top.
+ * Expanding the leftmost nonterminal by a rule pushes its right-hand side, and finding the
+ * next leftmost nonterminal pops terminals to the output; so each rule costs O(|rhs|),
+ * instead of rescanning the sentential form from the start.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class LeftmostDerivationStack {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /** pending symbols; top of stack (leftmost symbol) at index size - 1 */
+    private Category[] stack = new Category[16];
+    private int size = 0;
+
+    private final StringBuilder primary;
+    private final StringBuilder secondary;
+
+    public LeftmostDerivationStack(final NonTerminal startSymbol) {
+        this(startSymbol, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedLength initial capacity of the output, e.g., the length of the RNA if known
+     */
+    public LeftmostDerivationStack(final NonTerminal startSymbol, final int expectedLength) {
+        primary = new StringBuilder(expectedLength);
+        secondary = new StringBuilder(expectedLength);
+        push(startSymbol);
+    }
+
+    /**
+     * Moves the terminals before the leftmost nonterminal to the output and
+     * returns the leftmost nonterminal, or null if the derivation is complete.
+     * The nonterminal is removed; it must be replaced using {@link #expand(List)}.
+     */
+    public NonTerminal nextNonTerminal() {
+        while (size > 0) {
+            final Category cat = stack[--size];
+            stack[size] = null;
+            if (Category.isNonTerminal(cat)) return (NonTerminal) cat;
+            final PairOfChar chars = ((PairOfCharTerminal) cat).getChars();
+            primary.append(chars.getPry());
+            secondary.append(chars.getSec());
+        }
+        return null;
+    }
+
+    /** Replaces the nonterminal last returned by {@link #nextNonTerminal()} by rhs. */
+    public void expand(final List<Category> rhs) {
+        for (int i = rhs.size() - 1; i >= 0; --i) push(rhs.get(i));
+    }
+
+    /**
+     * The number of bases output so far. A nonterminal returned by {@link #nextNonTerminal()}
+     * that is not expanded is dropped; the string it derives can be inserted at this position
+     * of the output later, as {@code SubstreamArchive} does for subtrees coded separately.
+     */
+    public int outputLength() {
+        return primary.length();
+    }
+
+    private void push(final Category cat) {
+        if (size == stack.length) {
+            Category[] larger = new Category[2 * stack.length];
+            System.arraycopy(stack, 0, larger, 0, size);
+            stack = larger;
+        }
+        stack[size++] = cat;
+    }
+
+    /** The decoded RNA; only valid once {@link #nextNonTerminal()} returned null. */
+    public RNAWithStructure toRNA() {
+        if (size > 0) throw new IllegalStateException("Derivation not complete");
+        return new RNAWithStructure(primary.toString(), secondary.toString());
+    }
+
+}
@@ -14,6 +14,13 @@ public class LocalConfig {
 	public static final ArithmeticCodingFactory.Backend AC_BACKEND =
 			ArithmeticCodingFactory.Backend.NAYUKI;
 
+	/**
+	 * Whether Compressions reports the exact output sizes of the Nayuki coder, computed with
+	 * {@link compression.arithmaticCoding.nayukiAc.CountingBitSink}, instead of the sum of
+	 * the log probabilities.
+	 */
+	public static final boolean EXACT_CODE_LENGTHS = false;
+
 
 }
 
@@ -3,7 +3,8 @@ package compression;
 public enum RuleProbType {
 
     STATIC("static"), ADAPTIVE("adaptive"), SEMI_ADAPTIVE("semi-adaptive"),
-    STATIC_FROM_FILE("static-from-file");
+    STATIC_FROM_FILE("static-from-file"), STATIC_CONTEXT("static-context"),
+    MIXED("mixed");
 
     private String name;
 
@@ -27,6 +28,13 @@ public enum RuleProbType {
             case "STATIC_FILE":
             case "STATIC_FROM_FILE":
                 return STATIC_FROM_FILE;
+            case "static-context":
+            case "STATIC_CONTEXT":
+            case "STATIC-CONTEXT":
+                return STATIC_CONTEXT;
+            case "mixed":
+            case "MIXED":
+                return MIXED;
             case "adaptive":
             case "ADAPTIVE":
                 return ADAPTIVE;
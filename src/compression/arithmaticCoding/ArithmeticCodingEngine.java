@@ -2,6 +2,8 @@ package compression.arithmaticCoding;
 
 
 import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.grammar.NonTerminal;
+
 import java.io.IOException;
 import java.util.List;
 
@@ -9,6 +11,22 @@ public interface ArithmeticCodingEngine {
 
     void encodeNext(List<Interval> options, Interval chosen) throws IOException;
 
+    /**
+     * Encodes the choice among the options of nonterminal lhs;
+     * engines can use lhs to cache per-nonterminal state.
+     */
+    default void encodeNext(NonTerminal lhs, List<Interval> options, Interval chosen) throws IOException {
+        encodeNext(options, chosen);
+    }
+
+    /**
+     * Encodes options.get(index) among the options of nonterminal lhs, which are 2^bits
+     * equally likely options; engines can code it without a frequency table.
+     */
+    default void encodeUniform(NonTerminal lhs, List<Interval> options, int index, int bits) throws IOException {
+        encodeNext(lhs, options, options.get(index));
+    }
+
     default void finish() throws IOException {
         // BigDecimal AC does nothing
     }
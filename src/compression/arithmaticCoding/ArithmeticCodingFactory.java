@@ -1,25 +1,54 @@
 package compression.arithmaticCoding;
 
-import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.ans.RansDecoderAdapter;
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.arithmaticCoding.nayukiAc.BitSource;
+import compression.arithmaticCoding.nayukiAc.NayukiArithmeticDecoderAdapter;
+
+import java.io.IOException;
+
 public final class ArithmeticCodingFactory {
 
     public enum Backend {
         BIG_DECIMAL,
-        NAYUKI
+        NAYUKI,
+        /** interleaved range asymmetric numeral systems */
+        RANS
     }
 
     public static ArithmeticCodingEngine createEncoder(
             Backend backend,
-            BitOutputStream out
+            BitSink out
     ) {
         switch (backend) {
             case NAYUKI:
                 return new NayukiACAdapter(out);
+            case RANS:
+                return new RansACAdapter(out);
             case BIG_DECIMAL:
             default:
                 return new BigDecimalACAdapter();
         }
     }
 
+    /**
+     * Decoder for the output of {@link #createEncoder(Backend, BitSink)};
+     * not available for BIG_DECIMAL, whose encoder does not write to a stream.
+     */
+    public static ArithmeticDecodingEngine createDecoder(
+            Backend backend,
+            BitSource in
+    ) throws IOException {
+        switch (backend) {
+            case NAYUKI:
+                return new NayukiArithmeticDecoderAdapter(in);
+            case RANS:
+                return new RansDecoderAdapter(in);
+            case BIG_DECIMAL:
+            default:
+                throw new UnsupportedOperationException("No stream decoder for " + backend);
+        }
+    }
+
     private ArithmeticCodingFactory() {}
 }
@@ -0,0 +1,32 @@
+package compression.arithmaticCoding;
+
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.grammar.NonTerminal;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decoding counterpart of {@link ArithmeticCodingEngine}.
+ */
+public interface ArithmeticDecodingEngine {
+
+    /** Decodes the next choice among options and returns the chosen option. */
+    Interval decodeNext(List<Interval> options) throws IOException;
+
+    /**
+     * Decodes the choice among the options of nonterminal lhs;
+     * engines can use lhs to cache per-nonterminal state.
+     */
+    default Interval decodeNext(NonTerminal lhs, List<Interval> options) throws IOException {
+        return decodeNext(options);
+    }
+
+    /**
+     * Decodes a choice written by
+     * {@link ArithmeticCodingEngine#encodeUniform(NonTerminal, List, int, int)}.
+     */
+    default Interval decodeUniform(NonTerminal lhs, List<Interval> options, int bits) throws IOException {
+        return decodeNext(lhs, options);
+    }
+}
@@ -0,0 +1,60 @@
+package compression.arithmaticCoding;
+
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.grammar.NonTerminal;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An {@link ArithmeticCodingEngine} that leaves out choices whose outcome is known and codes
+ * uniform choices as bypass bits, before handing the remaining choices to the given engine.
+ * <p>
+ * A nonterminal with a single option is not coded at all; the decoder knows the outcome.
+ * The choice among 2^b options of equal length is coded with
+ * {@link ArithmeticCodingEngine#encodeUniform(NonTerminal, List, int, int)}, which the Nayuki
+ * engine implements by splitting its range with shifts (like the bypass bins of CABAC)
+ * instead of looking up a frequency table. With the Nayuki engine, both give the same
+ * output as coding all choices with the wrapped engine.
+ * <p>
+ * {@link BypassDecodingEngine} must wrap the decoder, so that it skips the same choices.
+ * Uniform choices are only detected for {@link #encodeNext(NonTerminal, List, Interval)}.
+ */
+public final class BypassCodingEngine implements ArithmeticCodingEngine {
+
+    private final ArithmeticCodingEngine engine;
+    private final UniformChoices uniform = new UniformChoices();
+
+    public BypassCodingEngine(ArithmeticCodingEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public void encodeNext(List<Interval> options, Interval chosen) throws IOException {
+        if (options.size() == 1) return;
+        engine.encodeNext(options, chosen);
+    }
+
+    @Override
+    public void encodeNext(NonTerminal lhs, List<Interval> options, Interval chosen) throws IOException {
+        if (options.size() == 1) return;
+        int bits = uniform.uniformBits(lhs, options);
+        if (bits < 0) {
+            engine.encodeNext(lhs, options, chosen);
+            return;
+        }
+        int index = options.indexOf(chosen);
+        if (index < 0) throw new IllegalArgumentException("Chosen interval not found in options");
+        engine.encodeUniform(lhs, options, index, bits);
+    }
+
+    @Override
+    public void encodeUniform(NonTerminal lhs, List<Interval> options, int index, int bits) throws IOException {
+        engine.encodeUniform(lhs, options, index, bits);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        engine.finish();
+    }
+}
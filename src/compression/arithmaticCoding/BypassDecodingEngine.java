@@ -0,0 +1,41 @@
+package compression.arithmaticCoding;
+
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.grammar.NonTerminal;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decoding counterpart of {@link BypassCodingEngine}: single options are returned without
+ * reading anything, and uniform choices are decoded with
+ * {@link ArithmeticDecodingEngine#decodeUniform(NonTerminal, List, int)}.
+ */
+public final class BypassDecodingEngine implements ArithmeticDecodingEngine {
+
+    private final ArithmeticDecodingEngine engine;
+    private final UniformChoices uniform = new UniformChoices();
+
+    public BypassDecodingEngine(ArithmeticDecodingEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public Interval decodeNext(List<Interval> options) throws IOException {
+        if (options.size() == 1) return options.get(0);
+        return engine.decodeNext(options);
+    }
+
+    @Override
+    public Interval decodeNext(NonTerminal lhs, List<Interval> options) throws IOException {
+        if (options.size() == 1) return options.get(0);
+        int bits = uniform.uniformBits(lhs, options);
+        if (bits < 0) return engine.decodeNext(lhs, options);
+        return engine.decodeUniform(lhs, options, bits);
+    }
+
+    @Override
+    public Interval decodeUniform(NonTerminal lhs, List<Interval> options, int bits) throws IOException {
+        return engine.decodeUniform(lhs, options, bits);
+    }
+}
@@ -1,8 +1,9 @@
 package compression.arithmaticCoding;
 
 import compression.arithmaticCoding.bigDecimalAc.Interval;
-import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.nayukiAc.BitSink;
 import compression.arithmaticCoding.nayukiAc.NayukiArithmeticEncoderAdapter;
+import compression.grammar.NonTerminal;
 
 import java.io.IOException;
 import java.util.List;
@@ -11,7 +12,7 @@ public final class NayukiACAdapter implements ArithmeticCodingEngine {
 
     private final NayukiArithmeticEncoderAdapter encoder;
 
-    public NayukiACAdapter(BitOutputStream out) {
+    public NayukiACAdapter(BitSink out) {
         this.encoder = new NayukiArithmeticEncoderAdapter(out);
     }
 
@@ -20,6 +21,16 @@ public final class NayukiACAdapter implements ArithmeticCodingEngine {
         encoder.encodeNext(options, chosen);
     }
 
+    @Override
+    public void encodeNext(NonTerminal lhs, List<Interval> options, Interval chosen) throws IOException {
+        encoder.encodeNext(lhs, options, chosen);
+    }
+
+    @Override
+    public void encodeUniform(NonTerminal lhs, List<Interval> options, int index, int bits) throws IOException {
+        encoder.encodeUniform(index, bits);
+    }
+
     @Override
     public void finish() throws IOException {
         encoder.finish();
@@ -0,0 +1,33 @@
+package compression.arithmaticCoding;
+
+import compression.arithmaticCoding.ans.RansEncoderAdapter;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.grammar.NonTerminal;
+
+import java.io.IOException;
+import java.util.List;
+
+public final class RansACAdapter implements ArithmeticCodingEngine {
+
+    private final RansEncoderAdapter encoder;
+
+    public RansACAdapter(BitSink out) {
+        this.encoder = new RansEncoderAdapter(out);
+    }
+
+    @Override
+    public void encodeNext(List<Interval> options, Interval chosen) {
+        encoder.encodeNext(options, chosen);
+    }
+
+    @Override
+    public void encodeNext(NonTerminal lhs, List<Interval> options, Interval chosen) {
+        encoder.encodeNext(lhs, options, chosen);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        encoder.finish();
+    }
+}
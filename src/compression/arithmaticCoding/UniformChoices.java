@@ -0,0 +1,63 @@
+package compression.arithmaticCoding;
+
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.grammar.NonTerminal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classifies the options of each nonterminal for {@link BypassCodingEngine} and
+ * {@link BypassDecodingEngine}: the number of bits if they are 2^bits options of equal length,
+ * or -1 otherwise.
+ * <p>
+ * Comparing the BigDecimal lengths is only done when the options of a nonterminal change;
+ * as in the quantised frequency tables of the Nayuki adapters, the result is cached together
+ * with the option objects and reused as long as the options are the identical objects.
+ */
+final class UniformChoices {
+
+    /** larger uniform choices are left to the engine's frequency tables */
+    static final int MAX_UNIFORM_BITS = 16;
+
+    private static final class Entry {
+        final Interval[] options;
+        final int uniformBits;
+
+        Entry(List<Interval> options) {
+            this.options = options.toArray(new Interval[0]);
+            this.uniformBits = uniformBits(this.options);
+        }
+
+        boolean isFor(List<Interval> options) {
+            if (options.size() != this.options.length) return false;
+            for (int i = 0; i < this.options.length; i++)
+                if (options.get(i) != this.options[i]) return false;
+            return true;
+        }
+    }
+
+    private final Map<NonTerminal, Entry> byNonTerminal = new HashMap<>();
+
+    /** bits if options are 2^bits options of equal length, with bits &ge; 1, or -1 otherwise */
+    int uniformBits(NonTerminal lhs, List<Interval> options) {
+        Entry entry = byNonTerminal.get(lhs);
+        if (entry == null || !entry.isFor(options)) {
+            entry = new Entry(options);
+            byNonTerminal.put(lhs, entry);
+        }
+        return entry.uniformBits;
+    }
+
+    private static int uniformBits(Interval[] options) {
+        int k = options.length;
+        if (k < 2 || Integer.bitCount(k) != 1) return -1;
+        int bits = Integer.numberOfTrailingZeros(k);
+        if (bits > MAX_UNIFORM_BITS) return -1;
+        for (int i = 1; i < k; i++)
+            if (options[i].getLength().compareTo(options[0].getLength()) != 0) return -1;
+        if (options[0].getLength().signum() <= 0) return -1;
+        return bits;
+    }
+}
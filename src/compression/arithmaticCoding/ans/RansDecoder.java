@@ -0,0 +1,65 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.nayukiAc.BitSource;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static compression.arithmaticCoding.ans.RansEncoder.L;
+import static compression.arithmaticCoding.ans.RansEncoder.PROB_BITS;
+import static compression.arithmaticCoding.ans.RansEncoder.PROB_SCALE;
+
+/**
+ * Decoder for the output of {@link RansEncoder}; must use the same number of ways
+ * and be given the same frequency tables, in the same order.
+ * Reading beyond the end of the input yields 0-bytes.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see RansEncoder
+ */
+public final class RansDecoder {
+
+	private final int ways;
+	private final BitSource input;
+	private final int[] state;
+	/** number of decoded symbols */
+	private int n = 0;
+
+	public RansDecoder(BitSource in) throws IOException {
+		this(RansEncoder.DEFAULT_WAYS, in);
+	}
+
+	public RansDecoder(int ways, BitSource in) throws IOException {
+		if (ways < 1 || ways > RansEncoder.MAX_WAYS)
+			throw new IllegalArgumentException("ways must be between 1 and " + RansEncoder.MAX_WAYS + ": " + ways);
+		this.ways = ways;
+		this.input = Objects.requireNonNull(in);
+		this.state = new int[ways];
+		for (int j = 0; j < ways; j++) {
+			for (int k = 0; k < 4; k++) state[j] = (state[j] << 8) | readByte();
+		}
+	}
+
+	/**
+	 * Decodes the next symbol based on the specified frequency table.
+	 * @throws IllegalArgumentException if the table's total is not {@link RansEncoder#PROB_SCALE}
+	 */
+	public int read(FrequencyTable freqs) throws IOException {
+		if (freqs.getTotal() != PROB_SCALE)
+			throw new IllegalArgumentException("Total must be " + PROB_SCALE + ": " + freqs.getTotal());
+		int j = n++ % ways;
+		int x = state[j];
+		int slot = x & (PROB_SCALE - 1);
+		int symbol = freqs.findSymbol(slot);
+		x = freqs.get(symbol) * (x >>> PROB_BITS) + slot - freqs.getLow(symbol);
+		while (x < L) x = (x << 8) | readByte();
+		state[j] = x;
+		return symbol;
+	}
+
+	private int readByte() throws IOException {
+		return (int) input.readBits(8);
+	}
+
+}
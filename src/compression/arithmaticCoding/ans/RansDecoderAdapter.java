@@ -0,0 +1,43 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.ArithmeticDecodingEngine;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.BitSource;
+import compression.grammar.NonTerminal;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decoder adapter corresponding to RansEncoderAdapter.
+ * Reconstructs the same frequency tables, including the points where
+ * tables of adaptive models are rebuilt.
+ */
+public final class RansDecoderAdapter implements ArithmeticDecodingEngine {
+
+	private final RansDecoder decoder;
+	private final RansTables tables = new RansTables();
+
+	public RansDecoderAdapter(BitSource in) throws IOException {
+		this(RansEncoder.DEFAULT_WAYS, in);
+	}
+
+	public RansDecoderAdapter(int ways, BitSource in) throws IOException {
+		this.decoder = new RansDecoder(ways, in);
+	}
+
+	@Override
+	public Interval decodeNext(List<Interval> options) throws IOException {
+		return decode(tables.lookup(options));
+	}
+
+	@Override
+	public Interval decodeNext(NonTerminal lhs, List<Interval> options) throws IOException {
+		return decode(tables.lookup(lhs, options));
+	}
+
+	private Interval decode(RansTables.Entry entry) throws IOException {
+		int symbol = decoder.read(entry.table);
+		return entry.options[symbol];
+	}
+}
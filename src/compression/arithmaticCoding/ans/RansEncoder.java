@@ -0,0 +1,136 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Encoder for range asymmetric numeral systems (rANS) with interleaved states.
+ * <p>
+ * Frequency tables must have total 2^{@link #PROB_BITS}. Each state is a 32-bit integer in
+ * [L, 256 L) with L = 2^23, renormalised byte-wise; symbol i uses state i mod ways, so
+ * consecutive symbols do not depend on each other's state. rANS decodes in the reverse
+ * order of encoding, so symbols are only recorded by {@link #write(FrequencyTable, int)}
+ * and encoded backwards by {@link #finish()}; this also makes adaptive tables work
+ * without any extra effort, since each symbol keeps the range it was recorded with.
+ * <p>
+ * The output is the final states (4 bytes each, big-endian), followed by the
+ * renormalisation bytes in the order {@link RansDecoder} consumes them.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see RansDecoder
+ */
+public final class RansEncoder {
+
+	/** frequency tables must have total 2^PROB_BITS */
+	public static final int PROB_BITS = 15;
+	public static final int PROB_SCALE = 1 << PROB_BITS;
+
+	/** lower bound of the normalised state interval [L, 256 L) */
+	static final int L = 1 << 23;
+
+	public static final int DEFAULT_WAYS = 2;
+	public static final int MAX_WAYS = 4;
+
+	private final int ways;
+	private final BitSink output;
+
+	/** recorded symbols: cumulative start and frequency */
+	private int[] starts = new int[256];
+	private int[] freqs = new int[256];
+	private int n = 0;
+
+	private boolean finished = false;
+
+	public RansEncoder(BitSink out) {
+		this(DEFAULT_WAYS, out);
+	}
+
+	/**
+	 * @param ways the number of interleaved states, between 1 and {@link #MAX_WAYS}
+	 * @param out the bit output stream to write to
+	 */
+	public RansEncoder(int ways, BitSink out) {
+		if (ways < 1 || ways > MAX_WAYS)
+			throw new IllegalArgumentException("ways must be between 1 and " + MAX_WAYS + ": " + ways);
+		this.ways = ways;
+		this.output = Objects.requireNonNull(out);
+	}
+
+	/**
+	 * Records the specified symbol with the range it has in the specified frequency table.
+	 * @throws IllegalArgumentException if the symbol has zero frequency
+	 * or the table's total is not {@link #PROB_SCALE}
+	 */
+	public void write(FrequencyTable freqs, int symbol) {
+		if (finished) throw new IllegalStateException("Encoder already finished");
+		if (freqs.getTotal() != PROB_SCALE)
+			throw new IllegalArgumentException("Total must be " + PROB_SCALE + ": " + freqs.getTotal());
+		int freq = freqs.get(symbol);
+		if (freq == 0) throw new IllegalArgumentException("Symbol has zero frequency");
+		if (n == starts.length) {
+			starts = Arrays.copyOf(starts, 2 * n);
+			this.freqs = Arrays.copyOf(this.freqs, 2 * n);
+		}
+		starts[n] = freqs.getLow(symbol);
+		this.freqs[n] = freq;
+		++n;
+	}
+
+	/**
+	 * Encodes all recorded symbols and writes the result.
+	 * Subsequent calls have no effect.
+	 */
+	public void finish() throws IOException {
+		if (finished) return;
+		finished = true;
+		// bytes are produced in the reverse order of reading
+		ReversedBytes bytes = new ReversedBytes(n / 2 + 4 * ways);
+		int[] state = new int[ways];
+		Arrays.fill(state, L);
+		for (int i = n - 1; i >= 0; --i) {
+			int j = i % ways;
+			int x = state[j];
+			int freq = freqs[i];
+			// largest x for which encoding keeps x below 256 L
+			long xMax = ((long) (L >>> PROB_BITS) << 8) * freq;
+			while (x >= xMax) {
+				bytes.add(x & 0xFF);
+				x >>>= 8;
+			}
+			state[j] = ((x / freq) << PROB_BITS) + (x % freq) + starts[i];
+		}
+		for (int j = ways - 1; j >= 0; --j) {
+			for (int k = 0; k < 4; k++) bytes.add(state[j] >>> (8 * k));
+		}
+		bytes.writeTo(output);
+	}
+
+	/** The number of recorded symbols */
+	public int size() {
+		return n;
+	}
+
+	/** A byte buffer that is filled back to front. */
+	private static final class ReversedBytes {
+		private byte[] buf;
+		private int size = 0;
+
+		ReversedBytes(int capacity) {
+			buf = new byte[Math.max(16, capacity)];
+		}
+
+		void add(int b) {
+			if (size == buf.length) buf = Arrays.copyOf(buf, 2 * size);
+			buf[size++] = (byte) b;
+		}
+
+		void writeTo(BitSink out) throws IOException {
+			for (int i = size - 1; i >= 0; --i) out.writeBits(buf[i], 8);
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.grammar.NonTerminal;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes choices among {@link Interval} options with {@link RansEncoder};
+ * counterpart of {@link compression.arithmaticCoding.nayukiAc.NayukiArithmeticEncoderAdapter}.
+ */
+public final class RansEncoderAdapter {
+
+	private final RansEncoder encoder;
+	private final RansTables tables = new RansTables();
+
+	public RansEncoderAdapter(BitSink out) {
+		this(RansEncoder.DEFAULT_WAYS, out);
+	}
+
+	public RansEncoderAdapter(int ways, BitSink out) {
+		this.encoder = new RansEncoder(ways, out);
+	}
+
+	public void encodeNext(List<Interval> options, Interval chosen) {
+		encode(tables.lookup(options), chosen);
+	}
+
+	/**
+	 * Same as {@link #encodeNext(List, Interval)}, for the options of nonterminal lhs;
+	 * the frequency table is cached per nonterminal.
+	 */
+	public void encodeNext(NonTerminal lhs, List<Interval> options, Interval chosen) {
+		encode(tables.lookup(lhs, options), chosen);
+	}
+
+	private void encode(RansTables.Entry entry, Interval chosen) {
+		int symbol = entry.indexOf(chosen);
+		if (symbol < 0) {
+			throw new IllegalArgumentException("Chosen interval not found in options");
+		}
+		encoder.write(entry.table, symbol);
+	}
+
+	public void finish() throws IOException {
+		encoder.finish();
+	}
+}
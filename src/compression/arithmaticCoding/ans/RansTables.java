@@ -0,0 +1,121 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.QuantisedFrequencyTables;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
+import compression.grammar.NonTerminal;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frequency tables with total {@link RansEncoder#PROB_SCALE} for lists of {@link Interval}
+ * options, as used by {@link RansEncoderAdapter} and {@link RansDecoderAdapter}.
+ * <p>
+ * For static models, the options of a nonterminal are the identical objects every time,
+ * so their table is built once and reused. Adaptive models return new options after every
+ * update; rebuilding the table each time would dominate the coding cost. A table is therefore
+ * reused (as long as the number of options stays the same) until the uses of its nonterminal
+ * since the rebuild exceed 1/{@link #REBUILD_FRACTION} of all its uses, and then rebuilt from
+ * the current options. For count-based models, the counts have changed by at most that
+ * fraction since the rebuild, and a nonterminal used n times causes O(log n) rebuilds. Options are
+ * matched by position, so the model must list them in the same order every time. Stale
+ * tables cost a little compression, but encoder and decoder rebuild at the same points.
+ * <p>
+ * Without a nonterminal, tables are cached per first option and never reused for other options.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+final class RansTables {
+
+	static final int REBUILD_FRACTION = 16;
+
+	/** bound on entries without nonterminal; their keys are not reused once a model changes */
+	private static final int MAX_ANONYMOUS_ENTRIES = 4096;
+
+	/** A table for one list of options. */
+	static final class Entry {
+		final Interval[] options;
+		final FrequencyTable table;
+		/** number of uses with other options than the table was built from */
+		private int staleUses = 0;
+		/** number of uses of the nonterminal, including earlier tables */
+		private int uses;
+
+		private Entry(List<Interval> options, int uses) {
+			this(options);
+			this.uses = uses;
+		}
+
+		private Entry(List<Interval> options) {
+			this.options = options.toArray(new Interval[0]);
+			this.table = new SimpleFrequencyTable(
+					QuantisedFrequencyTables.quantise(options, RansEncoder.PROB_SCALE));
+		}
+
+		boolean isFor(List<Interval> options) {
+			if (options.size() != this.options.length) return false;
+			for (int i = 0; i < this.options.length; i++)
+				if (options.get(i) != this.options[i]) return false;
+			return true;
+		}
+
+		/** @return index of chosen among the options, or -1 */
+		int indexOf(Interval chosen) {
+			for (int i = 0; i < options.length; i++)
+				if (options[i] == chosen) return i;
+			for (int i = 0; i < options.length; i++) {
+				Interval it = options[i];
+				if (it.getLowerBound().compareTo(chosen.getLowerBound()) == 0 &&
+						it.getUpperBound().compareTo(chosen.getUpperBound()) == 0) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	private final Map<NonTerminal, Entry> byNonTerminal = new HashMap<>();
+	private final Map<Interval, Entry> byFirstOption = new IdentityHashMap<>();
+
+	Entry lookup(NonTerminal lhs, List<Interval> options) {
+		checkNotEmpty(options);
+		Entry entry = byNonTerminal.get(lhs);
+		if (entry == null) {
+			entry = new Entry(options, 1);
+			byNonTerminal.put(lhs, entry);
+			return entry;
+		}
+		++entry.uses;
+		if (entry.isFor(options)) return entry;
+		if (entry.options.length == options.size() && ++entry.staleUses * REBUILD_FRACTION < entry.uses) {
+			// keep the table, but refer to the current option objects
+			for (int i = 0; i < entry.options.length; i++) entry.options[i] = options.get(i);
+			return entry;
+		}
+		entry = new Entry(options, entry.uses);
+		byNonTerminal.put(lhs, entry);
+		return entry;
+	}
+
+	Entry lookup(List<Interval> options) {
+		checkNotEmpty(options);
+		Entry entry = byFirstOption.get(options.get(0));
+		if (entry == null || !entry.isFor(options)) {
+			entry = new Entry(options);
+			if (byFirstOption.size() >= MAX_ANONYMOUS_ENTRIES) byFirstOption.clear();
+			byFirstOption.put(options.get(0), entry);
+		}
+		return entry;
+	}
+
+	private static void checkNotEmpty(List<Interval> options) {
+		if (options.isEmpty()) {
+			throw new IllegalArgumentException("Options list must not be empty");
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.nayukiAc.BitSource;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Decoder for the output of {@link TansEncoder}; must be given the same tables in the same order.
+ * Reading beyond the end of the input yields 0-bits.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see TansEncoder
+ */
+public final class TansDecoder {
+
+	private final int tableLog;
+	private final BitSource input;
+	/** current state minus 2^tableLog */
+	private int state;
+
+	public TansDecoder(BitSource in) throws IOException {
+		this(TansTable.DEFAULT_TABLE_LOG, in);
+	}
+
+	public TansDecoder(int tableLog, BitSource in) throws IOException {
+		this.tableLog = tableLog;
+		this.input = Objects.requireNonNull(in);
+		this.state = (int) input.readBits(tableLog);
+	}
+
+	/** Decodes the next symbol with the specified table. */
+	public int read(TansTable table) throws IOException {
+		if (table.tableLog != tableLog)
+			throw new IllegalArgumentException("Table has tableLog " + table.tableLog + " instead of " + tableLog);
+		int entry = table.decodeEntries[state];
+		state = (entry >>> 16) + (int) input.readBits((entry >>> 8) & 0xFF);
+		return entry & 0xFF;
+	}
+
+}
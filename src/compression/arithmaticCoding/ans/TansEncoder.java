@@ -0,0 +1,90 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.nayukiAc.BitSink;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Encoder for tabled asymmetric numeral systems with one state shared by all
+ * {@link TansTable}s (which must have the same tableLog).
+ * <p>
+ * As with {@link RansEncoder}, symbols are decoded in the reverse order of encoding, so they are
+ * recorded by {@link #write(TansTable, int)} and encoded backwards by {@link #finish()}.
+ * The output is the final state (tableLog bits), followed by the bits of each symbol in the
+ * order {@link TansDecoder} reads them.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see TansDecoder
+ */
+public final class TansEncoder {
+
+	private final int tableLog;
+	private final BitSink output;
+
+	private TansTable[] tables = new TansTable[256];
+	private int[] symbols = new int[256];
+	private int n = 0;
+
+	private boolean finished = false;
+
+	public TansEncoder(BitSink out) {
+		this(TansTable.DEFAULT_TABLE_LOG, out);
+	}
+
+	public TansEncoder(int tableLog, BitSink out) {
+		this.tableLog = tableLog;
+		this.output = Objects.requireNonNull(out);
+	}
+
+	/**
+	 * Records the specified symbol with the specified table.
+	 * @throws IllegalArgumentException if the symbol has zero frequency or the table has another tableLog
+	 */
+	public void write(TansTable table, int symbol) {
+		if (finished) throw new IllegalStateException("Encoder already finished");
+		if (table.tableLog != tableLog)
+			throw new IllegalArgumentException("Table has tableLog " + table.tableLog + " instead of " + tableLog);
+		if (table.get(symbol) == 0) throw new IllegalArgumentException("Symbol has zero frequency");
+		if (n == symbols.length) {
+			tables = Arrays.copyOf(tables, 2 * n);
+			symbols = Arrays.copyOf(symbols, 2 * n);
+		}
+		tables[n] = table;
+		symbols[n] = symbol;
+		++n;
+	}
+
+	/**
+	 * Encodes all recorded symbols and writes the result.
+	 * Subsequent calls have no effect.
+	 */
+	public void finish() throws IOException {
+		if (finished) return;
+		finished = true;
+		// bits written when encoding symbol i: value in bits[i], count in nbBits[i]
+		int[] bits = new int[n];
+		byte[] nbBits = new byte[n];
+		int x = 1 << tableLog;
+		for (int i = n - 1; i >= 0; --i) {
+			TansTable table = tables[i];
+			int s = symbols[i];
+			int freq = table.freqs[s];
+			// shift x into [freq, 2 freq)
+			int nb = (31 - Integer.numberOfLeadingZeros(x)) - (31 - Integer.numberOfLeadingZeros(freq));
+			if ((x >>> nb) < freq) --nb;
+			bits[i] = x & ((1 << nb) - 1);
+			nbBits[i] = (byte) nb;
+			x = table.encodeStates[table.starts[s] + (x >>> nb) - freq];
+		}
+		output.writeBits(x - (1 << tableLog), tableLog);
+		for (int i = 0; i < n; i++) output.writeBits(bits[i], nbBits[i]);
+	}
+
+	/** The number of recorded symbols */
+	public int size() {
+		return n;
+	}
+
+}
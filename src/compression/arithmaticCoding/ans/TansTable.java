@@ -0,0 +1,121 @@
+package compression.arithmaticCoding.ans;
+
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+
+/**
+ * The finite-state encoding and decoding tables of tabled asymmetric numeral systems
+ * (tANS, as in FSE) for one fixed distribution.
+ * <p>
+ * Frequencies are normalised to total L = 2^tableLog; states are the integers in [L, 2L).
+ * The states are assigned to the symbols by spreading each symbol's freq states over the
+ * table with a fixed odd step, as in FSE. Since all tables with the same tableLog use the same
+ * states, a single state can be coded with a different table for every symbol.
+ * <p>
+ * Decoding state x yields a packed entry: the symbol, the number of bits to read, and the base
+ * of the next state; so decoding a symbol is one table lookup plus one bit read.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see TansEncoder
+ * @see TansDecoder
+ */
+public final class TansTable {
+
+	public static final int DEFAULT_TABLE_LOG = 12;
+	public static final int MAX_TABLE_LOG = 15;
+	/** symbols must fit into the 8 bits of decode entries */
+	public static final int MAX_SYMBOLS = 256;
+
+	final int tableLog;
+	/** normalised frequencies, summing to 2^tableLog */
+	final int[] freqs;
+	/** first slot of each symbol in encodeStates */
+	final int[] starts;
+	/** next state for (symbol, x) with x in [freq, 2 freq), at starts[symbol] + x - freq */
+	final int[] encodeStates;
+	/** by state - L: next state base << 16 | bits to read << 8 | symbol */
+	final int[] decodeEntries;
+
+	/** Table for the given frequencies, normalised to total 2^tableLog */
+	public TansTable(final FrequencyTable frequencies, final int tableLog) {
+		if (tableLog < 1 || tableLog > MAX_TABLE_LOG)
+			throw new IllegalArgumentException("tableLog must be between 1 and " + MAX_TABLE_LOG + ": " + tableLog);
+		int k = frequencies.getSymbolLimit();
+		if (k > MAX_SYMBOLS || k > (1 << tableLog))
+			throw new IllegalArgumentException("Too many symbols for table: " + k);
+		this.tableLog = tableLog;
+		this.freqs = normalise(frequencies, 1 << tableLog);
+		final int size = 1 << tableLog;
+
+		// spread symbols over the table
+		int[] spread = new int[size];
+		final int step = (size >>> 1) + (size >>> 3) + 3;
+		final int mask = size - 1;
+		int position = 0;
+		for (int s = 0; s < k; s++) {
+			for (int i = 0; i < freqs[s]; i++) {
+				spread[position] = s;
+				position = (position + step) & mask;
+			}
+		}
+		// step is odd, hence coprime to size, so all positions were visited once
+
+		starts = new int[k];
+		for (int s = 1; s < k; s++) starts[s] = starts[s - 1] + freqs[s - 1];
+		int[] next = freqs.clone();
+		encodeStates = new int[size];
+		decodeEntries = new int[size];
+		for (int u = 0; u < size; u++) {
+			int s = spread[u];
+			int x = next[s]++; // in [freq, 2 freq)
+			int nbBits = tableLog - (31 - Integer.numberOfLeadingZeros(x));
+			int base = (x << nbBits) - size;
+			decodeEntries[u] = base << 16 | nbBits << 8 | s;
+			encodeStates[starts[s] + x - freqs[s]] = size + u;
+		}
+	}
+
+	public TansTable(final FrequencyTable frequencies) {
+		this(frequencies, DEFAULT_TABLE_LOG);
+	}
+
+	/**
+	 * Scales frequencies to the given total, keeping every nonzero frequency at least 1;
+	 * the rounding correction goes to the largest frequency (if it would drop below 1,
+	 * the excess is taken from the largest frequencies one at a time).
+	 */
+	static int[] normalise(final FrequencyTable frequencies, final int total) {
+		int k = frequencies.getSymbolLimit();
+		int[] res = new int[k];
+		long oldTotal = frequencies.getTotal();
+		int sum = 0, largest = 0;
+		for (int s = 0; s < k; s++) {
+			int f = frequencies.get(s);
+			if (f > 0) res[s] = (int) Math.max(1, (f * (long) total + oldTotal / 2) / oldTotal);
+			sum += res[s];
+			if (res[s] > res[largest]) largest = s;
+		}
+		while (sum - total >= res[largest]) {
+			// rare: many frequencies were rounded up to 1
+			if (res[largest] == 1) throw new IllegalArgumentException("Cannot normalise frequencies to total " + total);
+			--res[largest];
+			--sum;
+			for (int s = 0; s < k; s++) if (res[s] > res[largest]) largest = s;
+		}
+		res[largest] += total - sum;
+		return res;
+	}
+
+	public int getTableLog() {
+		return tableLog;
+	}
+
+	public int getSymbolLimit() {
+		return freqs.length;
+	}
+
+	/** The normalised frequency of symbol */
+	public int get(final int symbol) {
+		return freqs[symbol];
+	}
+
+}
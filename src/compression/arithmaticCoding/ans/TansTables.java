@@ -0,0 +1,44 @@
+package compression.arithmaticCoding.ans;
+
+import compression.grammar.NonTerminal;
+import compression.samplegrammars.model.IndexedRuleProbModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link TansTable}s of a static {@link IndexedRuleProbModel}, compiled once per
+ * nonterminal when it is first used and then shared by all encoders and decoders.
+ * The model must not adapt, e.g., a static or static-from-file model.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class TansTables {
+
+	private final IndexedRuleProbModel model;
+	private final int tableLog;
+	private final Map<NonTerminal, TansTable> tables = new HashMap<>();
+
+	public TansTables(final IndexedRuleProbModel model, final int tableLog) {
+		this.model = model;
+		this.tableLog = tableLog;
+	}
+
+	public TansTables(final IndexedRuleProbModel model) {
+		this(model, TansTable.DEFAULT_TABLE_LOG);
+	}
+
+	public IndexedRuleProbModel getModel() {
+		return model;
+	}
+
+	public int getTableLog() {
+		return tableLog;
+	}
+
+	/** The table for the rules of lhs, indexed by rule index */
+	public TansTable get(final NonTerminal lhs) {
+		return tables.computeIfAbsent(lhs, nt -> new TansTable(model.getFrequencyTable(nt), tableLog));
+	}
+
+}
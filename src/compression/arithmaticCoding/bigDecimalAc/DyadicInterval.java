@@ -0,0 +1,162 @@
+package compression.arithmaticCoding.bigDecimalAc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * A half-open interval [low / 2^k, (low + length) / 2^k) with long numerators and a
+ * power-of-two denominator 2^k, k = denominatorBits.
+ * <p>
+ * The natural log of the length is computed once at construction, so {@link #getLnLength()}
+ * (the only method the parsers call) is a field read. The BigDecimal bounds are exact,
+ * since 2^-k has k decimal digits; they are only created when a BigDecimal-based coder asks
+ * for them, and then kept.
+ * <p>
+ * Two dyadic intervals are equal if they denote the same interval, whatever their denominators.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class DyadicInterval implements Interval {
+
+	/** Denominator 2^32, about the precision of BigDecimal intervals with 10 digits */
+	public static final int DEFAULT_DENOMINATOR_BITS = 32;
+	public static final int MAX_DENOMINATOR_BITS = 62;
+
+	private static final double LN2 = Math.log(2);
+	private static final BigInteger[] POWERS_OF_FIVE = new BigInteger[MAX_DENOMINATOR_BITS + 1];
+	static {
+		POWERS_OF_FIVE[0] = BigInteger.ONE;
+		for (int i = 1; i <= MAX_DENOMINATOR_BITS; i++)
+			POWERS_OF_FIVE[i] = POWERS_OF_FIVE[i - 1].multiply(BigInteger.valueOf(5));
+	}
+
+	private final long low;
+	private final long length;
+	private final int denominatorBits;
+	private final double lnLength;
+
+	private BigDecimal lowerBound, lengthDecimal;
+
+	public DyadicInterval(final long low, final long length, final int denominatorBits) {
+		this(low, length, denominatorBits, Math.log(length) - denominatorBits * LN2);
+	}
+
+	/** Uses the given lnLength instead of the log of the dyadic length, e.g., that of an exact probability */
+	public DyadicInterval(final long low, final long length, final int denominatorBits, final double lnLength) {
+		if (denominatorBits < 0 || denominatorBits > MAX_DENOMINATOR_BITS)
+			throw new IllegalArgumentException("denominatorBits must be in [0.." + MAX_DENOMINATOR_BITS + "]: " + denominatorBits);
+		if (low < 0 || length < 0)
+			throw new IllegalArgumentException("low and length must not be negative: " + low + ", " + length);
+		this.low = low;
+		this.length = length;
+		this.denominatorBits = denominatorBits;
+		this.lnLength = lnLength;
+	}
+
+	/**
+	 * The dyadic interval of length floor(p * 2^denominatorBits) / 2^denominatorBits, but at
+	 * least 2^-denominatorBits for p &gt; 0, starting at low / 2^denominatorBits;
+	 * its lnLength is ln(p).
+	 */
+	public static DyadicInterval ofProbability(final long low, final double p, final int denominatorBits) {
+		long length = (long) Math.scalb(p, denominatorBits);
+		if (length == 0 && p > 0) length = 1;
+		return new DyadicInterval(low, length, denominatorBits, Math.log(p));
+	}
+
+	/**
+	 * The dyadic interval [floor(cumulative / total * 2^denominatorBits), ...) whose length is
+	 * floor(count / total * 2^denominatorBits), as for a rule with the given count and the given
+	 * cumulative count of the rules before it.
+	 */
+	public static DyadicInterval ofCounts(final long cumulative, final long count, final long total,
+			final int denominatorBits) {
+		return new DyadicInterval(scale(cumulative, total, denominatorBits), scale(count, total, denominatorBits),
+				denominatorBits);
+	}
+
+	/** floor(x * 2^bits / total) for 0 &le; x &le; total */
+	private static long scale(final long x, final long total, final int bits) {
+		if (x == total) return 1L << bits;
+		if (Long.numberOfLeadingZeros(x) > bits) return (x << bits) / total;
+		return BigInteger.valueOf(x).shiftLeft(bits).divide(BigInteger.valueOf(total)).longValueExact();
+	}
+
+	/** numerator of the lower bound */
+	public long getLow() {
+		return low;
+	}
+
+	/** numerator of the length */
+	public long getLengthNumerator() {
+		return length;
+	}
+
+	public int getDenominatorBits() {
+		return denominatorBits;
+	}
+
+	@Override
+	public BigDecimal getLowerBound() {
+		if (lowerBound == null) lowerBound = toDecimal(low);
+		return lowerBound;
+	}
+
+	@Override
+	public BigDecimal getLength() {
+		if (lengthDecimal == null) lengthDecimal = toDecimal(length);
+		return lengthDecimal;
+	}
+
+	@Override
+	public BigDecimal getUpperBound() {
+		return toDecimal(low + length);
+	}
+
+	/** x / 2^k == x * 5^k / 10^k */
+	private BigDecimal toDecimal(final long x) {
+		return new BigDecimal(BigInteger.valueOf(x).multiply(POWERS_OF_FIVE[denominatorBits]), denominatorBits);
+	}
+
+	@Override
+	public double getLnLength() {
+		return lnLength;
+	}
+
+	@Override
+	public boolean contains(final BigDecimal x) {
+		return getLowerBound().compareTo(x) <= 0 && getUpperBound().compareTo(x) > 0;
+	}
+
+	/** number of trailing zero bits that low, length and the denominator have in common */
+	private int reducibleBits() {
+		return Math.min(denominatorBits, Long.numberOfTrailingZeros(low | length));
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		final DyadicInterval that = (DyadicInterval) o;
+		int r = reducibleBits(), s = that.reducibleBits();
+		return denominatorBits - r == that.denominatorBits - s
+				&& low >>> r == that.low >>> s
+				&& length >>> r == that.length >>> s;
+	}
+
+	@Override
+	public int hashCode() {
+		int r = reducibleBits();
+		return 31 * (31 * Long.hashCode(low >>> r) + Long.hashCode(length >>> r)) + denominatorBits - r;
+	}
+
+	@Override
+	public String toString() {
+		return "DyadicInterval(" +
+				"low=" + low +
+				", length=" + length +
+				", denominator=2^" + denominatorBits +
+				", lnLength=" + lnLength +
+				')';
+	}
+}
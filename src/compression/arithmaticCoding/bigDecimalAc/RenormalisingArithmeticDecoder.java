@@ -0,0 +1,83 @@
+package compression.arithmaticCoding.bigDecimalAc;
+
+import compression.arithmaticCoding.nayukiAc.BitSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Decoder for {@link RenormalisingArithmeticEncoder}.
+ * <p>
+ * Instead of low, the decoder keeps offset = code - low, the position of the code within
+ * the current interval; offset never carries, so no bits have to be held back.
+ * Bits after the end of the stream are read as 0.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class RenormalisingArithmeticDecoder implements ArithmeticDecoder {
+
+	private final int precisionBits;
+	/** 2^(precisionBits-1) */
+	private final BigInteger half;
+
+	private final BitSource in;
+	private final String bits;
+	private int bitsRead = 0;
+
+	private BigInteger offset = BigInteger.ZERO;
+	private BigInteger range;
+
+	public RenormalisingArithmeticDecoder(BitSource in) {
+		this(in, RenormalisingArithmeticEncoder.DEFAULT_PRECISION_BITS);
+	}
+
+	public RenormalisingArithmeticDecoder(BitSource in, int precisionBits) {
+		this(in, null, precisionBits);
+	}
+
+	/** Decoder for the bits of {@link RenormalisingArithmeticEncoder#getFinalEncoding()} */
+	public RenormalisingArithmeticDecoder(String encodedBits) {
+		this(null, encodedBits, RenormalisingArithmeticEncoder.DEFAULT_PRECISION_BITS);
+	}
+
+	private RenormalisingArithmeticDecoder(BitSource in, String bits, int precisionBits) {
+		if (precisionBits < 2) throw new IllegalArgumentException("precisionBits must be at least 2");
+		this.in = in;
+		this.bits = bits;
+		this.precisionBits = precisionBits;
+		this.half = BigInteger.ONE.shiftLeft(precisionBits - 1);
+		this.range = BigInteger.ONE.shiftLeft(precisionBits);
+		for (int i = 0; i < precisionBits; i++) offset = offset.shiftLeft(1).add(BigInteger.valueOf(readBit()));
+	}
+
+	@Override
+	public Interval decodeNext(final List<Interval> options) {
+		for (Interval interval : options) {
+			BigInteger lo = RenormalisingArithmeticEncoder.scale(range, interval.getLowerBound());
+			if (offset.compareTo(lo) < 0) continue;
+			BigInteger hi = RenormalisingArithmeticEncoder.scale(range, interval.getUpperBound());
+			if (offset.compareTo(hi) >= 0) continue;
+			offset = offset.subtract(lo);
+			range = hi.subtract(lo);
+			while (range.compareTo(half) <= 0) {
+				offset = offset.shiftLeft(1).add(BigInteger.valueOf(readBit()));
+				range = range.shiftLeft(1);
+			}
+			return interval;
+		}
+		throw new IllegalArgumentException("Interval not found!");
+	}
+
+	private int readBit() {
+		if (bits != null) return bitsRead < bits.length() ? bits.charAt(bitsRead++) - '0' : 0;
+		try {
+			int bit = in.read();
+			return bit == -1 ? 0 : bit;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
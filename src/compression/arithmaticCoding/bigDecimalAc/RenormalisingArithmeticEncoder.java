@@ -0,0 +1,174 @@
+package compression.arithmaticCoding.bigDecimalAc;
+
+import compression.arithmaticCoding.nayukiAc.BitSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic encoder for the exact BigDecimal intervals of our rule probability models
+ * with bounded working precision.
+ * <p>
+ * Unlike {@link ExactArithmeticEncoder}, which keeps the full BigDecimal interval whose scale
+ * grows with every symbol, the current interval is kept as [low, low + range) in units of
+ * 2^-(emitted bits + precisionBits), with BigInteger low and range. A symbol interval [c, c + d)
+ * of [0,1) maps to [low + floor(range * c), low + floor(range * (c + d))); since the same
+ * rounding is applied to shared endpoints, neighbouring intervals stay disjoint, and
+ * {@link RenormalisingArithmeticDecoder} reproduces it exactly. After each symbol, leading bits
+ * are shifted out until range exceeds 2^(precisionBits-1); a shifted-out bit may still receive a
+ * carry, so 1-bits are held back until a 0-bit (or a carry) settles them.
+ * <p>
+ * Each symbol costs at most -log2(1 - 2^-(precisionBits-1) / d) bits more than its exact length,
+ * so precisionBits should comfortably exceed the number of bits of the model's intervals.
+ * The final code is the shortest dyadic interval inside the final interval, as in
+ * {@link ExactArithmeticEncoder}, so code lengths agree with it within one bit.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class RenormalisingArithmeticEncoder implements ArithmeticEncoder {
+
+	public static final int DEFAULT_PRECISION_BITS = 96;
+
+	private final int precisionBits;
+	/** 2^precisionBits */
+	private final BigInteger one;
+	/** 2^(precisionBits-1) */
+	private final BigInteger half;
+
+	private BigInteger low = BigInteger.ZERO;
+	private BigInteger range;
+
+	/** last shifted-out bit that is not yet written; -1 before the first bit */
+	private int cache = -1;
+	/** number of 1-bits after cache that are not yet written */
+	private long pendingOnes = 0;
+
+	private final BitSink out;
+	private final StringBuilder bits;
+	private int bitsWritten = 0;
+	private boolean finished = false;
+
+	/** Encoder writing to the given bit sink */
+	public RenormalisingArithmeticEncoder(BitSink out) {
+		this(out, DEFAULT_PRECISION_BITS);
+	}
+
+	public RenormalisingArithmeticEncoder(BitSink out, int precisionBits) {
+		this(out, null, precisionBits);
+	}
+
+	/** Encoder collecting the bits for {@link #getFinalEncoding()} */
+	public RenormalisingArithmeticEncoder() {
+		this(null, new StringBuilder(), DEFAULT_PRECISION_BITS);
+	}
+
+	private RenormalisingArithmeticEncoder(BitSink out, StringBuilder bits, int precisionBits) {
+		if (precisionBits < 2) throw new IllegalArgumentException("precisionBits must be at least 2");
+		this.out = out;
+		this.bits = bits;
+		this.precisionBits = precisionBits;
+		this.one = BigInteger.ONE.shiftLeft(precisionBits);
+		this.half = BigInteger.ONE.shiftLeft(precisionBits - 1);
+		this.range = one;
+	}
+
+	@Override
+	public void encodeNext(final Interval interval) {
+		if (finished) throw new IllegalStateException("Encoder already finished");
+		BigInteger lo = scale(range, interval.getLowerBound());
+		BigInteger hi = scale(range, interval.getUpperBound());
+		if (hi.compareTo(lo) <= 0)
+			throw new IllegalArgumentException("Interval too small for " + precisionBits + " bits precision: " + interval);
+		low = low.add(lo);
+		range = hi.subtract(lo);
+		while (range.compareTo(half) <= 0) {
+			shiftLow();
+			range = range.shiftLeft(1);
+		}
+	}
+
+	/** floor(range * x); shared by encoder and decoder */
+	static BigInteger scale(final BigInteger range, final BigDecimal x) {
+		return new BigDecimal(range).multiply(x).setScale(0, RoundingMode.FLOOR).toBigIntegerExact();
+	}
+
+	/**
+	 * Shifts the leading bit of low out; low may have a carry in bit precisionBits.
+	 */
+	private void shiftLow() {
+		boolean carry = low.testBit(precisionBits);
+		int top = low.testBit(precisionBits - 1) ? 1 : 0;
+		if (carry || top == 0) {
+			// cache and pending bits are settled now
+			if (cache >= 0) {
+				if (carry && cache == 1) throw new AssertionError("carry overflow");
+				writeBit(cache + (carry ? 1 : 0));
+			}
+			for (; pendingOnes > 0; --pendingOnes) writeBit(carry ? 0 : 1);
+			cache = top;
+		} else {
+			++pendingOnes;
+		}
+		low = low.clearBit(precisionBits).clearBit(precisionBits - 1).shiftLeft(1);
+	}
+
+	private void writeBit(int bit) {
+		++bitsWritten;
+		if (bits != null) bits.append(bit);
+		if (out != null) {
+			try {
+				out.write(bit);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the shortest dyadic interval contained in the current interval.
+	 * Subsequent calls have no effect.
+	 */
+	public void finish() {
+		if (finished) return;
+		finished = true;
+		BigInteger high = low.add(range);
+		// smallest t such that [m, m + 2^(precisionBits-t)) fits in [low, high) for a multiple m;
+		// as range > 2^(precisionBits-1), t <= 2
+		int t = 0;
+		BigInteger m = ceilToMultiple(low, precisionBits);
+		while (m.add(BigInteger.ONE.shiftLeft(precisionBits - t)).compareTo(high) > 0) {
+			++t;
+			m = ceilToMultiple(low, precisionBits - t);
+		}
+		low = m;
+		// emit the t leading bits of m (plus carry), then flush
+		for (int i = 0; i < t; i++) shiftLow();
+		// for t == 0, m itself can carry
+		boolean carry = low.testBit(precisionBits);
+		if (cache >= 0) writeBit(cache + (carry ? 1 : 0));
+		for (; pendingOnes > 0; --pendingOnes) writeBit(carry ? 0 : 1);
+		cache = -1;
+	}
+
+	private static BigInteger ceilToMultiple(BigInteger x, int shift) {
+		BigInteger floor = x.shiftRight(shift).shiftLeft(shift);
+		return floor.equals(x) ? x : floor.add(BigInteger.ONE.shiftLeft(shift));
+	}
+
+	@Override
+	public String getFinalEncoding() {
+		if (bits == null) throw new UnsupportedOperationException("Encoder writes to a bit sink");
+		finish();
+		return bits.toString();
+	}
+
+	@Override
+	public int getFinalPrecision() {
+		finish();
+		return bitsWritten;
+	}
+
+}
@@ -0,0 +1,52 @@
+package compression.arithmaticCoding.binary;
+
+import compression.arithmaticCoding.nayukiAc.BitSource;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static compression.arithmaticCoding.binary.BinaryRangeEncoder.PROB_BITS;
+import static compression.arithmaticCoding.binary.BinaryRangeEncoder.TOP;
+
+/**
+ * Decoder for the output of {@link BinaryRangeEncoder}; the caller must use the same
+ * probabilities, and adapt them the same way, as the encoder. Bytes past the end of the
+ * input are read as zeros.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class BinaryRangeDecoder {
+
+	private final BitSource input;
+
+	/** unsigned */
+	private int range = -1;
+	/** unsigned offset of the code from the bottom of the range */
+	private int code = 0;
+
+	public BinaryRangeDecoder(BitSource in) throws IOException {
+		this.input = Objects.requireNonNull(in);
+		for (int i = 0; i < 4; i++) code = (code << 8) | (int) input.readBits(8);
+	}
+
+	/**
+	 * Decodes a bit, where prob is the probability of a 0-bit in units of 2^-{@link BinaryRangeEncoder#PROB_BITS}.
+	 */
+	public int decodeBit(int prob) throws IOException {
+		int bound = (range >>> PROB_BITS) * prob;
+		int bit;
+		if (Integer.compareUnsigned(code, bound) < 0) {
+			range = bound;
+			bit = 0;
+		} else {
+			code -= bound;
+			range -= bound;
+			bit = 1;
+		}
+		while (Integer.compareUnsigned(range, TOP) < 0) {
+			range <<= 8;
+			code = (code << 8) | (int) input.readBits(8);
+		}
+		return bit;
+	}
+}
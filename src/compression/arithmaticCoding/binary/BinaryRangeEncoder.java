@@ -0,0 +1,114 @@
+package compression.arithmaticCoding.binary;
+
+import compression.arithmaticCoding.nayukiAc.BitSink;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Binary range encoder in the style of LZMA: codes single bits with a given probability,
+ * using shifts and one multiplication per bit, but no division.
+ * <p>
+ * Probabilities are those of a 0-bit, in units of 2^-{@link #PROB_BITS}, in (0, 2^PROB_BITS);
+ * adapting them is up to the caller, e.g., with {@link #adapt(int, int, int)}. The range is a
+ * 32-bit unsigned integer, renormalised byte-wise as soon as its top byte is 0; a carry into
+ * bytes already shifted out is resolved with a cached byte and a count of pending 0xFF bytes.
+ * <p>
+ * Unlike LZMA, the output omits the leading byte, which is always zero, and
+ * {@link #finish()} only writes as many bytes as are needed to identify the final range,
+ * since the decoder reads zeros past the end.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see BinaryRangeDecoder
+ */
+public final class BinaryRangeEncoder {
+
+	/** probabilities are multiples of 2^-PROB_BITS */
+	public static final int PROB_BITS = 15;
+	public static final int PROB_SCALE = 1 << PROB_BITS;
+	/** probability 1/2 */
+	public static final int PROB_INIT = PROB_SCALE / 2;
+
+	static final int TOP = 1 << 24;
+
+	private final BitSink output;
+
+	/** 33 bits; bit 32 is a carry into the cached byte */
+	private long low = 0;
+	/** unsigned */
+	private int range = -1;
+	private int cache = 0;
+	/** number of bytes pending: the cached byte and cacheSize - 1 0xFF bytes */
+	private long cacheSize = 1;
+	/** whether the cached byte is the leading zero byte, which is not written */
+	private boolean leadingByte = true;
+	private boolean finished = false;
+
+	public BinaryRangeEncoder(BitSink out) {
+		this.output = Objects.requireNonNull(out);
+	}
+
+	/**
+	 * Encodes bit, where prob is the probability of a 0-bit in units of 2^-{@link #PROB_BITS}.
+	 */
+	public void encodeBit(int prob, int bit) throws IOException {
+		if (finished) throw new IllegalStateException("Encoder already finished");
+		int bound = (range >>> PROB_BITS) * prob;
+		if (bit == 0) {
+			range = bound;
+		} else {
+			low += bound & 0xFFFFFFFFL;
+			range -= bound;
+		}
+		while ((range & 0xFF000000) == 0) {
+			range <<= 8;
+			shiftLow();
+		}
+	}
+
+	/**
+	 * The probability of a 0-bit after coding bit with probability prob; moves prob towards
+	 * the observed bit by a 2^-shift fraction of the distance.
+	 */
+	public static int adapt(int prob, int bit, int shift) {
+		return bit == 0 ? prob + ((PROB_SCALE - prob) >>> shift) : prob - (prob >>> shift);
+	}
+
+	private void shiftLow() throws IOException {
+		if (low < 0xFF000000L || low > 0xFFFFFFFFL) {
+			int carry = (int) (low >>> 32);
+			int temp = cache;
+			do {
+				if (leadingByte) leadingByte = false;
+				else output.writeBits((temp + carry) & 0xFF, 8);
+				temp = 0xFF;
+			} while (--cacheSize != 0);
+			cache = (int) (low >>> 24) & 0xFF;
+		}
+		++cacheSize;
+		low = (low & 0x00FFFFFFL) << 8;
+	}
+
+	/**
+	 * Writes the remaining bytes of the code: those of the value in the final range with the
+	 * most trailing zero bytes, up to its last nonzero byte. Subsequent calls have no effect.
+	 */
+	public void finish() throws IOException {
+		if (finished) return;
+		long high = low + (range & 0xFFFFFFFFL);
+		int bytes = 0;
+		long value = low;
+		for (int zeroBytes = 4; zeroBytes >= 0; --zeroBytes) {
+			long mask = (1L << (8 * zeroBytes)) - 1;
+			value = (low + mask) & ~mask;
+			if (value < high) {
+				bytes = 4 - zeroBytes;
+				break;
+			}
+		}
+		low = value;
+		// push out the cached byte and the bytes of value
+		for (int i = 0; i <= bytes; i++) shiftLow();
+		finished = true;
+	}
+}
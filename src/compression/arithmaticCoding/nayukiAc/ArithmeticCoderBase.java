@@ -138,7 +138,33 @@ public abstract class ArithmeticCoderBase {
 		long newHigh = low + symHigh * range / total - 1;
 		low = newLow;
 		high = newHigh;
-		
+		renormalise();
+	}
+	
+	
+	/**
+	 * Updates the code range as {@link #update(CheckedFrequencyTable, int)} does for a
+	 * table of 2<sup>bits</sup> symbols of frequency 1 each, but without a table:
+	 * the range is split into equal parts by shifts (a "bypass" symbol).
+	 * @param symbol the symbol that was processed, in [0, 2<sup>bits</sup>)
+	 * @param bits the number of bits of the symbol
+	 * @throws IllegalArgumentException if 2<sup>bits</sup> exceeds the maximum total
+	 */
+	protected void updateUniform(int symbol, int bits) throws IOException {
+		if (bits < 0 || (1L << bits) > maximumTotal)
+			throw new IllegalArgumentException("Cannot code " + bits + " uniform bits");
+		if (symbol < 0 || symbol >= (1L << bits))
+			throw new IllegalArgumentException("Symbol out of range");
+		long range = high - low + 1;
+		long newLow  = low + ((symbol * range) >>> bits);
+		long newHigh = low + (((symbol + 1L) * range) >>> bits) - 1;
+		low = newLow;
+		high = newHigh;
+		renormalise();
+	}
+	
+	
+	private void renormalise() throws IOException {
 		// While low and high have the same top bit value, shift them out
 		while (((low ^ high) & halfRange) == 0) {
 			shift();
@@ -19,7 +19,7 @@ public final class ArithmeticDecoderNayuki extends ArithmeticCoderBase {
 	/*---- Fields ----*/
 	
 	// The underlying bit input stream (not null).
-	private BitInputStream input;
+	private BitSource input;
 	
 	// The current raw code bits being buffered, which is always in the range [low, high].
 	private long code;
@@ -37,12 +37,10 @@ public final class ArithmeticDecoderNayuki extends ArithmeticCoderBase {
 	 * @throws IllegalArgumentException if stateSize is outside the range [1, 62]
 	 * @throws IOException if an I/O exception occurred
 	 */
-	public ArithmeticDecoderNayuki(int numBits, BitInputStream in) throws IOException {
+	public ArithmeticDecoderNayuki(int numBits, BitSource in) throws IOException {
 		super(numBits);
 		input = Objects.requireNonNull(in);
-		code = 0;
-		for (int i = 0; i < numStateBits; i++)
-			code = code << 1 | readCodeBit();
+		code = input.readBits(numStateBits);
 	}
 	
 	
@@ -84,20 +82,8 @@ public final class ArithmeticDecoderNayuki extends ArithmeticCoderBase {
 		if (!(0 <= value && value < total))
 			throw new AssertionError();
 		
-		// A kind of binary search. Find highest symbol such that freqs.getLow(symbol) <= value.
-		int start = 0;
-		int end = freqs.getSymbolLimit();
-		while (end - start > 1) {
-			int middle = (start + end) >>> 1;
-			if (freqs.getLow(middle) > value)
-				end = middle;
-			else
-				start = middle;
-		}
-		if (start + 1 != end)
-			throw new AssertionError();
-		
-		int symbol = start;
+		// Find highest symbol such that freqs.getLow(symbol) <= value.
+		int symbol = freqs.findSymbol((int) value);
 		if (!(freqs.getLow(symbol) * range / total <= offset && offset < freqs.getHigh(symbol) * range / total))
 			throw new AssertionError();
 		update(freqs, symbol);
@@ -107,6 +93,26 @@ public final class ArithmeticDecoderNayuki extends ArithmeticCoderBase {
 	}
 	
 	
+	/**
+	 * Decodes a symbol written by {@link ArithmeticEncoderNayuki#writeUniform(int, int)}.
+	 * @param bits the number of bits of the symbol
+	 * @return the next symbol, in [0, 2<sup>bits</sup>)
+	 * @throws IllegalArgumentException if bits is too large
+	 * @throws IOException if an I/O exception occurred
+	 */
+	public int readUniform(int bits) throws IOException {
+		if (bits < 0 || (1L << bits) > maximumTotal)
+			throw new IllegalArgumentException("Cannot decode " + bits + " uniform bits");
+		long range = high - low + 1;
+		long offset = code - low;
+		int symbol = (int) ((((offset + 1) << bits) - 1) / range);
+		updateUniform(symbol, bits);
+		if (!(low <= code && code <= high))
+			throw new AssertionError("Code out of range");
+		return symbol;
+	}
+	
+	
 	protected void shift() throws IOException {
 		code = ((code << 1) & stateMask) | readCodeBit();
 	}
@@ -19,7 +19,7 @@ public final class ArithmeticEncoderNayuki extends ArithmeticCoderBase {
 	/*---- Fields ----*/
 	
 	// The underlying bit output stream (not null).
-	private BitOutputStream output;
+	private BitSink output;
 	
 	// Number of saved underflow bits. This value can grow without bound,
 	// so a truly correct implementation would use a BigInteger.
@@ -36,7 +36,7 @@ public final class ArithmeticEncoderNayuki extends ArithmeticCoderBase {
 	 * @throws NullPointerException if the output stream is {@code null}
 	 * @throws IllegalArgumentException if stateSize is outside the range [1, 62]
 	 */
-	public ArithmeticEncoderNayuki(int numBits, BitOutputStream out) {
+	public ArithmeticEncoderNayuki(int numBits, BitSink out) {
 		super(numBits);
 		output = Objects.requireNonNull(out);
 		numUnderflow = 0;
@@ -76,6 +76,19 @@ public final class ArithmeticEncoderNayuki extends ArithmeticCoderBase {
 	}
 	
 	
+	/**
+	 * Encodes symbol in [0, 2<sup>bits</sup>) with probability 2<sup>&minus;bits</sup>, without a
+	 * frequency table; the output is the same as writing it with a table of equal frequencies.
+	 * @param symbol the symbol to encode
+	 * @param bits the number of bits of the symbol
+	 * @throws IllegalArgumentException if the symbol is out of range or bits is too large
+	 * @throws IOException if an I/O exception occurred
+	 */
+	public void writeUniform(int symbol, int bits) throws IOException {
+		updateUniform(symbol, bits);
+	}
+	
+	
 	/**
 	 * Terminates the arithmetic coding by flushing any buffered bits, so that the output can be decoded properly.
 	 * It is important that this method must be called at the end of the each encoding process.
@@ -92,8 +105,8 @@ public final class ArithmeticEncoderNayuki extends ArithmeticCoderBase {
 		output.write(bit);
 		
 		// Write out the saved underflow bits
-		for (; numUnderflow > 0; numUnderflow--)
-			output.write(bit ^ 1);
+		output.writeRepeated(bit ^ 1, numUnderflow);
+		numUnderflow = 0;
 	}
 	
 	
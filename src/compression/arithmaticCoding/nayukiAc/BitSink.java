@@ -0,0 +1,35 @@
+package compression.arithmaticCoding.nayukiAc;
+
+import java.io.IOException;
+
+/**
+ * Destination for the bits written by the coders, in big endian.
+ * Implemented by {@link BitOutputStream} and {@link WordBitWriter}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see BitSource
+ */
+public interface BitSink {
+
+	/**
+	 * Writes a bit, which must be 0 or 1.
+	 */
+	void write(int b) throws IOException;
+
+	/**
+	 * Writes the lowest count bits of value, most significant first; 0 &le; count &le; 64.
+	 */
+	default void writeBits(long value, int count) throws IOException {
+		for (int k = count - 1; k >= 0; --k)
+			write((int) (value >>> k) & 1);
+	}
+
+	/**
+	 * Writes count copies of bit, which must be 0 or 1.
+	 */
+	default void writeRepeated(int bit, long count) throws IOException {
+		for (; count > 0; --count)
+			write(bit);
+	}
+
+}
@@ -0,0 +1,30 @@
+package compression.arithmaticCoding.nayukiAc;
+
+import java.io.IOException;
+
+/**
+ * Source of the bits read by the coders, in big endian.
+ * Implemented by {@link BitInputStream} and {@link WordBitReader}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see BitSink
+ */
+public interface BitSource {
+
+	/**
+	 * Reads a bit; returns 0 or 1, or -1 at the end of the input.
+	 */
+	int read() throws IOException;
+
+	/**
+	 * Reads count bits, most significant first, where bits after the end of the input
+	 * are taken as 0; 0 &le; count &le; 64.
+	 */
+	default long readBits(int count) throws IOException {
+		long value = 0;
+		for (int k = 0; k < count; k++)
+			value = (value << 1) | Math.max(read(), 0);
+		return value;
+	}
+
+}
@@ -87,6 +87,16 @@ public final class CheckedFrequencyTable implements FrequencyTable {
 	}
 	
 	
+	public int findSymbol(int value) {
+		int result = freqTable.findSymbol(value);
+		if (!isSymbolInRange(result))
+			throw new AssertionError("Symbol out of range");
+		if (!(freqTable.getLow(result) <= value && value < freqTable.getHigh(result)))
+			throw new AssertionError("Value not in range of found symbol");
+		return result;
+	}
+	
+	
 	public String toString() {
 		return "CheckedFrequencyTable (" + freqTable.toString() + ")";
 	}
@@ -0,0 +1,44 @@
+package compression.arithmaticCoding.nayukiAc;
+
+/**
+ * A {@link BitSink} that only counts the bits written to it, so that the exact size of an
+ * encoding can be computed by running the real coder, without storing its output.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class CountingBitSink implements BitSink {
+
+	private long bits = 0;
+
+	@Override
+	public void write(int b) {
+		if ((b & ~1) != 0)
+			throw new IllegalArgumentException("Argument must be 0 or 1");
+		++bits;
+	}
+
+	@Override
+	public void writeBits(long value, int count) {
+		if (count < 0 || count > 64)
+			throw new IllegalArgumentException("count must be between 0 and 64: " + count);
+		bits += count;
+	}
+
+	@Override
+	public void writeRepeated(int bit, long count) {
+		if ((bit & ~1) != 0)
+			throw new IllegalArgumentException("Argument must be 0 or 1");
+		if (count > 0) bits += count;
+	}
+
+	/** Number of bits written so far, as {@link WordBitWriter#bitsWritten()} */
+	public long bitsWritten() {
+		return bits;
+	}
+
+	/** Number of bytes that {@link WordBitWriter#toByteArray()} would return */
+	public long bytesWritten() {
+		return (bits + 7) >>> 3;
+	}
+
+}
@@ -0,0 +1,251 @@
+package compression.arithmaticCoding.nayukiAc;
+
+import java.util.Objects;
+
+
+/**
+ * A mutable table of symbol frequencies backed by a Fenwick tree (binary indexed tree).
+ * <p>
+ * Unlike {@link SimpleFrequencyTable}, which recomputes all cumulative frequencies in
+ * linear time after each modification, {@link #increment(int)}, {@link #set(int, int)},
+ * {@link #getLow(int)}, {@link #getHigh(int)} and {@link #findSymbol(int)} all take
+ * O(log k) time for k symbols. This makes it suitable for adaptive coding, where the
+ * frequencies change after every coded symbol.
+ * The number of symbols cannot be changed after construction.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class FenwickFrequencyTable implements FrequencyTable {
+
+	/*---- Fields ----*/
+
+	// The frequency for each symbol. Its length is at least 1, and each element is non-negative.
+	private final int[] frequencies;
+
+	// 1-based Fenwick tree: tree[i] is the sum of frequencies[i - lowbit(i) .. i - 1].
+	private final int[] tree;
+
+	// Largest power of 2 that is at most frequencies.length; start of the descent in findSymbol.
+	private final int topStep;
+
+	// Always equal to the sum of 'frequencies'.
+	private int total;
+
+
+
+	/*---- Constructors ----*/
+
+	/**
+	 * Constructs a frequency table from the specified array of symbol frequencies. There must be at least
+	 * 1 symbol, no symbol has a negative frequency, and the total must not exceed {@code Integer.MAX_VALUE}.
+	 * @param freqs the array of symbol frequencies
+	 * @throws NullPointerException if the array is {@code null}
+	 * @throws IllegalArgumentException if {@code freqs.length} &lt; 1,
+	 * {@code freqs.length} = {@code Integer.MAX_VALUE}, or any element {@code freqs[i]} &lt; 0
+	 * @throws ArithmeticException if the total of {@code freqs} exceeds {@code Integer.MAX_VALUE}
+	 */
+	public FenwickFrequencyTable(int[] freqs) {
+		Objects.requireNonNull(freqs);
+		if (freqs.length < 1)
+			throw new IllegalArgumentException("At least 1 symbol needed");
+		if (freqs.length > Integer.MAX_VALUE - 1)
+			throw new IllegalArgumentException("Too many symbols");
+
+		frequencies = freqs.clone();
+		tree = new int[frequencies.length + 1];
+		total = 0;
+		for (int i = 0; i < frequencies.length; i++) {
+			int x = frequencies[i];
+			if (x < 0)
+				throw new IllegalArgumentException("Negative frequency");
+			total = Math.addExact(x, total);
+			tree[i + 1] += x;
+			// linear-time construction: push the partial sum to the parent
+			int parent = (i + 1) + ((i + 1) & -(i + 1));
+			if (parent < tree.length)
+				tree[parent] += tree[i + 1];
+		}
+		topStep = Integer.highestOneBit(frequencies.length);
+	}
+
+
+	/**
+	 * Constructs a frequency table by copying the specified frequency table.
+	 * @param freqs the frequency table to copy
+	 * @throws NullPointerException if {@code freqs} is {@code null}
+	 * @throws IllegalArgumentException if {@code freqs.getSymbolLimit()} &lt; 1
+	 * or any element {@code freqs.get(i)} &lt; 0
+	 * @throws ArithmeticException if the total of all {@code freqs} elements exceeds {@code Integer.MAX_VALUE}
+	 */
+	public FenwickFrequencyTable(FrequencyTable freqs) {
+		this(frequenciesOf(freqs));
+	}
+
+
+	private static int[] frequenciesOf(FrequencyTable freqs) {
+		Objects.requireNonNull(freqs);
+		int numSym = freqs.getSymbolLimit();
+		if (numSym < 1)
+			throw new IllegalArgumentException("At least 1 symbol needed");
+		int[] result = new int[numSym];
+		for (int i = 0; i < numSym; i++)
+			result[i] = freqs.get(i);
+		return result;
+	}
+
+
+
+	/*---- Methods ----*/
+
+	/**
+	 * Returns the number of symbols in this frequency table, which is at least 1.
+	 * @return the number of symbols in this frequency table
+	 */
+	public int getSymbolLimit() {
+		return frequencies.length;
+	}
+
+
+	/**
+	 * Returns the frequency of the specified symbol. The returned value is at least 0.
+	 * @param symbol the symbol to query
+	 * @return the frequency of the specified symbol
+	 * @throws IllegalArgumentException if {@code symbol} &lt; 0 or {@code symbol} &ge; {@code getSymbolLimit()}
+	 */
+	public int get(int symbol) {
+		checkSymbol(symbol);
+		return frequencies[symbol];
+	}
+
+
+	/**
+	 * Sets the frequency of the specified symbol to the specified value. The frequency value
+	 * must be at least 0. If an exception is thrown, then the state is left unchanged.
+	 * @param symbol the symbol to set
+	 * @param freq the frequency value to set
+	 * @throws IllegalArgumentException if {@code symbol} &lt; 0 or {@code symbol} &ge; {@code getSymbolLimit()}
+	 * @throws ArithmeticException if this set request would cause the total to exceed {@code Integer.MAX_VALUE}
+	 */
+	public void set(int symbol, int freq) {
+		checkSymbol(symbol);
+		if (freq < 0)
+			throw new IllegalArgumentException("Negative frequency");
+
+		int temp = total - frequencies[symbol];
+		if (temp < 0)
+			throw new AssertionError();
+		total = Math.addExact(temp, freq);
+		add(symbol, freq - frequencies[symbol]);
+	}
+
+
+	/**
+	 * Increments the frequency of the specified symbol.
+	 * @param symbol the symbol whose frequency to increment
+	 * @throws IllegalArgumentException if {@code symbol} &lt; 0 or {@code symbol} &ge; {@code getSymbolLimit()}
+	 * @throws ArithmeticException if an arithmetic overflow occurs
+	 */
+	public void increment(int symbol) {
+		checkSymbol(symbol);
+		total = Math.addExact(total, 1);
+		add(symbol, 1);
+	}
+
+
+	/**
+	 * Returns the total of all symbol frequencies. The returned value is at
+	 * least 0 and is always equal to {@code getHigh(getSymbolLimit() - 1)}.
+	 * @return the total of all symbol frequencies
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+
+	/**
+	 * Returns the sum of the frequencies of all the symbols strictly
+	 * below the specified symbol value. The returned value is at least 0.
+	 * @param symbol the symbol to query
+	 * @return the sum of the frequencies of all the symbols below {@code symbol}
+	 * @throws IllegalArgumentException if {@code symbol} &lt; 0 or {@code symbol} &ge; {@code getSymbolLimit()}
+	 */
+	public int getLow(int symbol) {
+		checkSymbol(symbol);
+		return prefixSum(symbol);
+	}
+
+
+	/**
+	 * Returns the sum of the frequencies of the specified symbol
+	 * and all the symbols below. The returned value is at least 0.
+	 * @param symbol the symbol to query
+	 * @return the sum of the frequencies of {@code symbol} and all symbols below
+	 * @throws IllegalArgumentException if {@code symbol} &lt; 0 or {@code symbol} &ge; {@code getSymbolLimit()}
+	 */
+	public int getHigh(int symbol) {
+		checkSymbol(symbol);
+		return prefixSum(symbol + 1);
+	}
+
+
+	/**
+	 * Returns the highest symbol whose low cumulative frequency is at most the specified value,
+	 * by descending the Fenwick tree in O(log k) steps.
+	 * @param value the cumulative frequency to look up, with 0 &le; {@code value} &lt; {@code getTotal()}
+	 * @return the symbol whose cumulative frequency range contains {@code value}
+	 * @throws IllegalArgumentException if {@code value} is out of range
+	 */
+	public int findSymbol(int value) {
+		if (!(0 <= value && value < total))
+			throw new IllegalArgumentException("Value out of range");
+		// Largest pos with prefixSum(pos) <= value; then getLow(pos) <= value < getHigh(pos).
+		int pos = 0;
+		int remaining = value;
+		for (int step = topStep; step > 0; step >>>= 1) {
+			int next = pos + step;
+			if (next < tree.length && tree[next] <= remaining) {
+				pos = next;
+				remaining -= tree[next];
+			}
+		}
+		return pos;
+	}
+
+
+	// Sum of frequencies[0 .. end - 1].
+	private int prefixSum(int end) {
+		int sum = 0;
+		for (int i = end; i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+
+	// Adds delta to the frequency of symbol; the total must already be updated and valid.
+	private void add(int symbol, int delta) {
+		frequencies[symbol] += delta;
+		for (int i = symbol + 1; i < tree.length; i += i & -i)
+			tree[i] += delta;
+	}
+
+
+	// Returns silently if 0 <= symbol < frequencies.length, otherwise throws an exception.
+	private void checkSymbol(int symbol) {
+		if (!(0 <= symbol && symbol < frequencies.length))
+			throw new IllegalArgumentException("Symbol out of range");
+	}
+
+
+	/**
+	 * Returns a string representation of this frequency table,
+	 * useful for debugging only, and the format is subject to change.
+	 * @return a string representation of this frequency table
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < frequencies.length; i++)
+			sb.append(String.format("%d\t%d%n", i, frequencies[i]));
+		return sb.toString();
+	}
+
+}
@@ -79,4 +79,28 @@ public interface FrequencyTable {
 	 */
 	public int getHigh(int symbol);
 	
+	
+	/**
+	 * Returns the highest symbol whose low cumulative frequency is at most the specified value,
+	 * i.e., the symbol whose range [getLow(symbol), getHigh(symbol)) contains {@code value}.
+	 * The default implementation uses binary search over {@link #getLow(int)}.
+	 * @param value the cumulative frequency to look up, with 0 &le; {@code value} &lt; {@code getTotal()}
+	 * @return the symbol whose cumulative frequency range contains {@code value}
+	 */
+	public default int findSymbol(int value) {
+		// A kind of binary search. Find highest symbol such that getLow(symbol) <= value.
+		int start = 0;
+		int end = getSymbolLimit();
+		while (end - start > 1) {
+			int middle = (start + end) >>> 1;
+			if (getLow(middle) > value)
+				end = middle;
+			else
+				start = middle;
+		}
+		if (start + 1 != end)
+			throw new AssertionError();
+		return start;
+	}
+	
 }
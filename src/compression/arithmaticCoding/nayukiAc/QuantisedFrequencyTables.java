@@ -0,0 +1,191 @@
+package compression.arithmaticCoding.nayukiAc;
+
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.grammar.NonTerminal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Integer frequency tables for lists of {@link Interval} options, as used by
+ * {@link NayukiArithmeticEncoderAdapter} and {@link NayukiArithmeticDecoderAdapter}.
+ * <p>
+ * Quantising the BigDecimal interval lengths to TOTAL_SCALE is expensive, but for a given
+ * nonterminal, models keep returning the same interval objects until its probabilities
+ * change. Tables are therefore cached per nonterminal (or, if no nonterminal is given,
+ * per first option) together with the option objects they were built from; a cached table
+ * is reused as long as the options are the identical objects, and rebuilt otherwise.
+ * <p>
+ * {@link #quantise(List)} is also used by the index-based rule probability models.
+ */
+public final class QuantisedFrequencyTables {
+
+    public static final int TOTAL_SCALE = 1 << 18;
+    static final MathContext MC = MathContext.DECIMAL128;
+
+    /** bound on entries without nonterminal; their keys are not reused once a model changes */
+    private static final int MAX_ANONYMOUS_ENTRIES = 4096;
+
+    /** A quantised frequency table for one list of options. */
+    static final class Entry {
+        final Interval[] options;
+        final FrequencyTable table;
+        private final Map<Interval, Integer> indexByIdentity;
+
+        private Entry(List<Interval> options) {
+            this.options = options.toArray(new Interval[0]);
+            this.table = new SimpleFrequencyTable(quantise(options));
+            this.indexByIdentity = new IdentityHashMap<>(this.options.length);
+            for (int i = 0; i < this.options.length; i++) indexByIdentity.put(this.options[i], i);
+        }
+
+        boolean isFor(List<Interval> options) {
+            if (options.size() != this.options.length) return false;
+            for (int i = 0; i < this.options.length; i++)
+                if (options.get(i) != this.options[i]) return false;
+            return true;
+        }
+
+        /** @return index of chosen among the options, or -1 */
+        int indexOf(Interval chosen) {
+            Integer i = indexByIdentity.get(chosen);
+            if (i != null) return i;
+            for (int j = 0; j < options.length; j++) {
+                Interval it = options[j];
+                if (it.getLowerBound().compareTo(chosen.getLowerBound()) == 0 &&
+                        it.getUpperBound().compareTo(chosen.getUpperBound()) == 0) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final Map<NonTerminal, Entry> byNonTerminal = new HashMap<>();
+    private final Map<Interval, Entry> byFirstOption = new IdentityHashMap<>();
+
+    QuantisedFrequencyTables() {}
+
+    Entry lookup(NonTerminal lhs, List<Interval> options) {
+        checkNotEmpty(options);
+        Entry entry = byNonTerminal.get(lhs);
+        if (entry == null || !entry.isFor(options)) {
+            entry = new Entry(options);
+            byNonTerminal.put(lhs, entry);
+        }
+        return entry;
+    }
+
+    Entry lookup(List<Interval> options) {
+        checkNotEmpty(options);
+        Entry entry = byFirstOption.get(options.get(0));
+        if (entry == null || !entry.isFor(options)) {
+            entry = new Entry(options);
+            if (byFirstOption.size() >= MAX_ANONYMOUS_ENTRIES) byFirstOption.clear();
+            byFirstOption.put(options.get(0), entry);
+        }
+        return entry;
+    }
+
+    private static void checkNotEmpty(List<Interval> options) {
+        if (options.isEmpty()) {
+            throw new IllegalArgumentException("Options list must not be empty");
+        }
+    }
+
+    /**
+     * Builds a deterministic, normalized frequency distribution
+     * with total TOTAL_SCALE.
+     */
+    public static int[] quantise(List<Interval> options) {
+        return quantise(options, TOTAL_SCALE);
+    }
+
+    /**
+     * Builds a deterministic, normalized frequency distribution
+     * with the given total, which must be at least the number of options.
+     */
+    public static int[] quantise(List<Interval> options, int total) {
+        if (total < options.size()) {
+            throw new IllegalArgumentException("Total " + total + " too small for " + options.size() + " options");
+        }
+        int[] freqs = quantiseDyadic(options, total);
+        if (freqs != null) return freqs;
+        freqs = new int[options.size()];
+
+        // 1) Compute raw weights from BigDecimal intervals
+        BigDecimal totalLength = BigDecimal.ZERO;
+        for (Interval it : options) {
+            totalLength = totalLength.add(it.getLength(), MC);
+        }
+
+        if (totalLength.signum() <= 0) {
+            throw new IllegalStateException("Total interval length must be positive");
+        }
+
+        int sum = 0, largest = 0;
+        for (int i = 0; i < options.size(); i++) {
+            BigDecimal len = options.get(i).getLength();
+
+            int w = len
+                    .multiply(BigDecimal.valueOf(total), MC)
+                    .divide(totalLength, MC)
+                    .intValue();
+
+            if (w <= 0) w = 1;   // ensure non-zero frequency
+            freqs[i] = w;
+            sum += w;
+            if (w > freqs[largest]) largest = i;
+        }
+
+        // 2) Normalize to fixed total; deterministic correction on the largest
+        // frequency, which is at least total / options.size() and so stays positive
+        freqs[largest] += (total - sum);
+        return freqs;
+    }
+
+    /**
+     * {@link #quantise(List, int)} in long arithmetic, for options that are all
+     * {@link DyadicInterval}s with the same denominator; null for other options or if
+     * the products overflow.
+     * <p>
+     * Computes the exact floor of length * total / totalLength. For denominators up to 2^32,
+     * the BigDecimal computation gives the same frequencies: the sum of lengths is exact in
+     * 34 digits, and the quotient is rounded to 34 digits before truncating, but it is either
+     * an integer or at least 1 / totalLength away from the next one.
+     */
+    private static int[] quantiseDyadic(List<Interval> options, int total) {
+        int bits = -1;
+        long totalLength = 0;
+        for (Interval it : options) {
+            if (!(it instanceof DyadicInterval)) return null;
+            DyadicInterval d = (DyadicInterval) it;
+            if (bits >= 0 && d.getDenominatorBits() != bits) return null;
+            bits = d.getDenominatorBits();
+            totalLength += d.getLengthNumerator();
+            if (totalLength < 0) return null;
+        }
+        if (totalLength <= 0) {
+            throw new IllegalStateException("Total interval length must be positive");
+        }
+
+        int[] freqs = new int[options.size()];
+        int sum = 0, largest = 0;
+        for (int i = 0; i < options.size(); i++) {
+            long len = ((DyadicInterval) options.get(i)).getLengthNumerator();
+            if (Math.multiplyHigh(len, total) != 0 || len * total < 0) return null;
+            int w = (int) (len * total / totalLength);
+            if (w <= 0) w = 1;   // ensure non-zero frequency
+            freqs[i] = w;
+            sum += w;
+            if (w > freqs[largest]) largest = i;
+        }
+        freqs[largest] += (total - sum);
+        return freqs;
+    }
+}
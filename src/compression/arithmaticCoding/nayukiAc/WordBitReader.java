@@ -0,0 +1,76 @@
+package compression.arithmaticCoding.nayukiAc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BitSource} that loads whole longs from a {@link ByteBuffer} into a 64-bit
+ * register, instead of reading every byte through an {@link java.io.InputStream} like
+ * {@link BitInputStream}. Mutable and not thread-safe.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see WordBitWriter
+ */
+public final class WordBitReader implements BitSource {
+
+	private final ByteBuffer buffer;
+
+	/** the first available bits of register (from the top) are unread */
+	private long register = 0;
+	private int available = 0;
+
+	public WordBitReader(byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	/** Reader of the bytes between position and limit of buffer */
+	public WordBitReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/** Loads the next bytes into the empty register */
+	private void refill() {
+		if (buffer.remaining() >= 8) {
+			register = buffer.getLong();
+			available = 64;
+		} else {
+			register = 0;
+			available = 0;
+			while (buffer.hasRemaining()) {
+				register |= (buffer.get() & 0xFFL) << (56 - available);
+				available += 8;
+			}
+		}
+	}
+
+	@Override
+	public int read() {
+		if (available == 0) {
+			refill();
+			if (available == 0) return -1;
+		}
+		int bit = (int) (register >>> 63);
+		register <<= 1;
+		--available;
+		return bit;
+	}
+
+	@Override
+	public long readBits(int count) {
+		if (count < 0 || count > 64)
+			throw new IllegalArgumentException("count must be between 0 and 64: " + count);
+		long value = 0;
+		while (count > 0) {
+			if (available == 0) {
+				refill();
+				if (available == 0) return count == 64 ? 0 : value << count; // trailing zeros
+			}
+			int t = Math.min(count, available);
+			value = (t == 64 ? 0 : value << t) | (register >>> (64 - t));
+			register = t == 64 ? 0 : register << t;
+			available -= t;
+			count -= t;
+		}
+		return value;
+	}
+
+}
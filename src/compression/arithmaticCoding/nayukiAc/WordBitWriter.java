@@ -0,0 +1,138 @@
+package compression.arithmaticCoding.nayukiAc;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link BitSink} that collects bits in a 64-bit register and stores whole longs
+ * into a {@link ByteBuffer}, instead of passing every bit and byte through an
+ * {@link java.io.OutputStream} like {@link BitOutputStream}.
+ * <p>
+ * The bytes are the same as with {@link BitOutputStream}: big endian, with the last
+ * byte padded with 0-bits by {@link #close()}. Mutable and not thread-safe.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ * @see WordBitReader
+ */
+public final class WordBitWriter implements BitSink, AutoCloseable {
+
+	private ByteBuffer buffer;
+	/** whether buffer is ours and may be replaced by a larger one */
+	private final boolean growable;
+
+	/** the last filled bits of register are pending, 0 &le; filled &lt; 64 */
+	private long register = 0;
+	private int filled = 0;
+	private boolean closed = false;
+
+	/** Writer into a growing byte array, see {@link #toByteArray()} */
+	public WordBitWriter() {
+		this(64);
+	}
+
+	public WordBitWriter(int initialCapacity) {
+		this.buffer = ByteBuffer.allocate(Math.max(8, initialCapacity));
+		this.growable = true;
+	}
+
+	/**
+	 * Writer into target, starting at its position;
+	 * throws {@link BufferOverflowException} if it is too small.
+	 */
+	public WordBitWriter(ByteBuffer target) {
+		this.buffer = target;
+		this.growable = false;
+	}
+
+	private void checkOpen() {
+		if (closed) throw new IllegalStateException("Writer already closed");
+	}
+
+	@Override
+	public void write(int b) {
+		checkOpen();
+		if ((b & ~1) != 0) // not b != 0 && b != 1, which branches on random bits
+			throw new IllegalArgumentException("Argument must be 0 or 1");
+		register = (register << 1) | b;
+		if (++filled == 64) flush();
+	}
+
+	@Override
+	public void writeBits(long value, int count) {
+		checkOpen();
+		if (count < 0 || count > 64)
+			throw new IllegalArgumentException("count must be between 0 and 64: " + count);
+		if (count == 0) return;
+		if (count < 64) value &= (1L << count) - 1;
+		int free = 64 - filled;
+		if (count < free) {
+			register = (register << count) | value;
+			filled += count;
+		} else {
+			// fill the register, store it and keep the rest
+			int rest = count - free;
+			register = free == 64 ? value >>> rest : (register << free) | (value >>> rest);
+			filled = 64;
+			flush();
+			register = rest == 0 ? 0 : value & ((1L << rest) - 1);
+			filled = rest;
+		}
+	}
+
+	@Override
+	public void writeRepeated(int bit, long count) {
+		checkOpen();
+		if ((bit & ~1) != 0)
+			throw new IllegalArgumentException("Argument must be 0 or 1");
+		long ones = bit == 0 ? 0 : -1L;
+		for (; count >= 64; count -= 64)
+			writeBits(ones, 64);
+		writeBits(ones, (int) count);
+	}
+
+	private void flush() {
+		ensureRemaining(8);
+		buffer.putLong(register);
+		register = 0;
+		filled = 0;
+	}
+
+	private void ensureRemaining(int bytes) {
+		if (buffer.remaining() >= bytes) return;
+		if (!growable) throw new BufferOverflowException();
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+		buffer.flip();
+		larger.put(buffer);
+		buffer = larger;
+	}
+
+	/** Number of bits written so far */
+	public long bitsWritten() {
+		return 8L * buffer.position() + filled;
+	}
+
+	/**
+	 * Writes the pending bits, padded with 0-bits to a whole byte.
+	 * Subsequent writes throw {@link IllegalStateException}; subsequent calls have no effect.
+	 */
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		int bytes = (filled + 7) >>> 3;
+		ensureRemaining(bytes);
+		long aligned = filled == 0 ? 0 : register << (64 - filled);
+		for (int i = 0; i < bytes; i++)
+			buffer.put((byte) (aligned >>> (56 - 8 * i)));
+		filled = 0;
+	}
+
+	/** Closes this writer and returns the written bytes (of a growing byte array). */
+	public byte[] toByteArray() {
+		if (!growable) throw new UnsupportedOperationException("Writer writes to a given buffer");
+		close();
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+}
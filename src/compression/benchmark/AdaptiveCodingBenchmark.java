@@ -0,0 +1,91 @@
+package compression.benchmark;
+
+import compression.GenericRNAEncoder;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.SampleGrammar;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.BoundedAdaptiveRuleProbModel;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.util.AllGrammars;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares adaptive Nayuki encoding and decoding with the BigDecimal intervals of
+ * {@link AdaptiveRuleProbModel}, quantised by the adapters, with its dyadic intervals, and with the counts of
+ * {@link AdaptiveRuleProbModel} and {@link BoundedAdaptiveRuleProbModel} used as frequency tables
+ * directly. Each RNA is coded with a fresh model,
+ * as in {@code Compressions}; derivations are computed up front and not included in the times.
+ * <p>
+ * Usage: {@code AdaptiveCodingBenchmark [dataset [grammars [maxLength [maxRNAs]]]]},
+ * where grammars is a comma-separated list of builtin grammars or {@code ALL}.
+ */
+public final class AdaptiveCodingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String datasetName = args.length > 0 ? args[0] : "friemel-modified";
+        String grammarNames = args.length > 1 ? args[1] : "G6B";
+        int maxLength = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        int maxRNAs = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        BenchmarkRNAs selected = BenchmarkRNAs.load(datasetName, 0, maxLength, maxRNAs);
+        List<RNAWithStructure> rnas = selected.rnas;
+        long bases = selected.bases;
+
+        for (SampleGrammar sampleGrammar : AllGrammars.getGrammarsFromCmdLine(grammarNames, true)) {
+            RNAGrammar grammar = sampleGrammar.getGrammar();
+            CachingEncoder encoder = new CachingEncoder(grammar);
+            for (RNAWithStructure rna : rnas) encoder.leftmostDerivationFor(rna);
+            System.out.println(sampleGrammar.getName() + ":");
+            report("BigDecimal intervals", true, encoder, grammar, rnas, bases, AdaptiveRuleProbModel::new);
+            report("dyadic intervals", true, encoder, grammar, rnas, bases, AdaptiveRuleProbModel::withDyadicIntervals);
+            report("adaptive indexed", false, encoder, grammar, rnas, bases, AdaptiveRuleProbModel::new);
+            report("count halving", false, encoder, grammar, rnas, bases, BoundedAdaptiveRuleProbModel::withCountHalving);
+            report("window", false, encoder, grammar, rnas, bases, BoundedAdaptiveRuleProbModel::withWindow);
+        }
+    }
+
+    private static void report(String label, boolean intervals, GenericRNAEncoder encoder, RNAGrammar grammar,
+                               List<RNAWithStructure> rnas, long bases,
+                               Function<RNAGrammar, RuleProbModel> newModel) throws Exception {
+        // warm-up
+        List<byte[]> encoded = encodeAll(intervals, encoder, rnas, grammar, newModel);
+        decodeAll(intervals, encoded, grammar, newModel);
+
+        long t0 = System.nanoTime();
+        encoded = encodeAll(intervals, encoder, rnas, grammar, newModel);
+        long t1 = System.nanoTime();
+        decodeAll(intervals, encoded, grammar, newModel);
+        long t2 = System.nanoTime();
+
+        long bytes = 0;
+        for (byte[] e : encoded) bytes += e.length;
+        System.out.printf("  %-20s: encode %10.1f ms   decode %10.1f ms   %10d bytes   %.4f bits per base%n",
+                label, (t1 - t0) / 1e6, (t2 - t1) / 1e6, bytes, 8.0 * bytes / bases);
+    }
+
+    private static List<byte[]> encodeAll(boolean intervals, GenericRNAEncoder encoder, List<RNAWithStructure> rnas, RNAGrammar grammar,
+                                          Function<RNAGrammar, RuleProbModel> newModel) throws Exception {
+        List<byte[]> encoded = new ArrayList<>(rnas.size());
+        for (RNAWithStructure rna : rnas) {
+            RuleProbModel model = newModel.apply(grammar);
+            encoded.add(intervals ? NayukiEncodeRunner.encodeIntervals(encoder, rna, model)
+                    : NayukiEncodeRunner.encode(encoder, rna, model));
+        }
+        return encoded;
+    }
+
+    private static void decodeAll(boolean intervals, List<byte[]> encoded, RNAGrammar grammar,
+                                  Function<RNAGrammar, RuleProbModel> newModel) throws Exception {
+        for (byte[] e : encoded) {
+            RuleProbModel model = newModel.apply(grammar);
+            if (intervals) NayukiDecodeRunner.decodeIntervals(e, model, grammar.startSymbol);
+            else NayukiDecodeRunner.decode(e, model, grammar.startSymbol);
+        }
+    }
+
+    private AdaptiveCodingBenchmark() {}
+}
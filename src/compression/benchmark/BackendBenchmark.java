@@ -0,0 +1,91 @@
+package compression.benchmark;
+
+import compression.GenericRNAEncoder;
+import compression.arithmaticCoding.ArithmeticCodingFactory.Backend;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.SampleGrammar;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import compression.util.AllGrammars;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Compares the stream backends of the interval path of {@link NayukiEncodeRunner} and
+ * {@link NayukiDecodeRunner}, with a static model (trained on the RNAs themselves, with
+ * LaPlace smoothing) and with a fresh {@link AdaptiveRuleProbModel} per RNA.
+ * Derivations are computed up front and not included in the times.
+ * <p>
+ * Usage: {@code BackendBenchmark [dataset [grammars [maxLength [maxRNAs]]]]},
+ * where grammars is a comma-separated list of builtin grammars or {@code ALL}.
+ */
+public final class BackendBenchmark {
+
+    private static final Backend[] BACKENDS = {Backend.NAYUKI, Backend.RANS};
+
+    public static void main(String[] args) throws Exception {
+        String datasetName = args.length > 0 ? args[0] : "friemel-modified";
+        String grammarNames = args.length > 1 ? args[1] : "G6B";
+        int maxLength = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        int maxRNAs = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        BenchmarkRNAs selected = BenchmarkRNAs.load(datasetName, 0, maxLength, maxRNAs);
+        List<RNAWithStructure> rnas = selected.rnas;
+        long bases = selected.bases;
+
+        for (SampleGrammar sampleGrammar : AllGrammars.getGrammarsFromCmdLine(grammarNames, true)) {
+            RNAGrammar grammar = sampleGrammar.getGrammar();
+            CachingEncoder encoder = new CachingEncoder(grammar);
+            StaticRuleProbModel staticModel = selected.laPlaceModel(grammar, encoder);
+
+            System.out.println(sampleGrammar.getName() + ":");
+            for (Backend backend : BACKENDS) {
+                report(backend + " static", backend, encoder, grammar, rnas, bases, () -> staticModel);
+                report(backend + " adaptive", backend, encoder, grammar, rnas, bases,
+                        () -> new AdaptiveRuleProbModel(grammar));
+            }
+        }
+    }
+
+    private static void report(String label, Backend backend, GenericRNAEncoder encoder, RNAGrammar grammar,
+                               List<RNAWithStructure> rnas, long bases,
+                               Supplier<RuleProbModel> newModel) throws Exception {
+        // warm-up
+        List<byte[]> encoded = encodeAll(backend, encoder, rnas, newModel);
+        decodeAll(backend, encoded, grammar, newModel);
+
+        long t0 = System.nanoTime();
+        encoded = encodeAll(backend, encoder, rnas, newModel);
+        long t1 = System.nanoTime();
+        decodeAll(backend, encoded, grammar, newModel);
+        long t2 = System.nanoTime();
+
+        long bytes = 0;
+        for (byte[] e : encoded) bytes += e.length;
+        System.out.printf("  %-16s: encode %8.1f ms (%6.2f MB/s)   decode %8.1f ms (%6.2f MB/s)   %8d bytes   %.4f bits per base%n",
+                label, (t1 - t0) / 1e6, bases / 1e6 / ((t1 - t0) / 1e9),
+                (t2 - t1) / 1e6, bases / 1e6 / ((t2 - t1) / 1e9), bytes, 8.0 * bytes / bases);
+    }
+
+    private static List<byte[]> encodeAll(Backend backend, GenericRNAEncoder encoder, List<RNAWithStructure> rnas,
+                                          Supplier<RuleProbModel> newModel) throws Exception {
+        List<byte[]> encoded = new ArrayList<>(rnas.size());
+        for (RNAWithStructure rna : rnas) {
+            encoded.add(NayukiEncodeRunner.encodeIntervals(encoder, rna, newModel.get(), backend));
+        }
+        return encoded;
+    }
+
+    private static void decodeAll(Backend backend, List<byte[]> encoded, RNAGrammar grammar,
+                                  Supplier<RuleProbModel> newModel) throws Exception {
+        for (byte[] e : encoded) {
+            NayukiDecodeRunner.decodeIntervals(e, newModel.get(), grammar.startSymbol, backend);
+        }
+    }
+
+    private BackendBenchmark() {}
+}
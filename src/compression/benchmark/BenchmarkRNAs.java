@@ -0,0 +1,52 @@
+package compression.benchmark;
+
+import compression.data.CachedDataset;
+import compression.data.FolderBasedDataset;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The RNAs of a dataset that a benchmark runs on, with their total number of bases. */
+final class BenchmarkRNAs {
+    final List<RNAWithStructure> rnas = new ArrayList<>();
+    long bases = 0;
+
+    /**
+     * The first maxRNAs RNAs of the dataset with minLength to maxLength bases; prints their
+     * number and total length.
+     */
+    static BenchmarkRNAs load(String datasetName, int minLength, int maxLength, int maxRNAs) {
+        BenchmarkRNAs selected = new BenchmarkRNAs();
+        for (RNAWithStructure rna : new CachedDataset(new FolderBasedDataset(datasetName))) {
+            if (selected.rnas.size() >= maxRNAs) break;
+            int length = rna.getNumberOfBases();
+            if (length < minLength || length > maxLength) continue;
+            selected.rnas.add(rna);
+            selected.bases += length;
+        }
+        System.out.println("Dataset " + datasetName + ": " + selected.rnas.size() + " RNAs, "
+                + selected.bases + " bases in total");
+        return selected;
+    }
+
+    /**
+     * A static model trained on these RNAs themselves, with LaPlace smoothing; the derivations
+     * are those of encoder, so it parses each RNA only once.
+     */
+    StaticRuleProbModel laPlaceModel(RNAGrammar grammar, CachingEncoder encoder) {
+        Map<Rule, Long> counts = new HashMap<>();
+        for (Rule rule : grammar.getAllRules()) counts.put(rule, 1L);
+        for (RNAWithStructure rna : rnas)
+            for (Rule rule : encoder.leftmostDerivationFor(rna)) counts.merge(rule, 1L, Long::sum);
+        return new StaticRuleProbModel(grammar, RuleProbModel.computeRuleProbs(grammar, counts));
+    }
+
+    private BenchmarkRNAs() {}
+}
@@ -0,0 +1,95 @@
+package compression.benchmark;
+
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.SampleGrammar;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.BinarisedRuleProbModel;
+import compression.util.AllGrammars;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the binarised models ({@link BinarisedRuleProbModel} with the binary range coder,
+ * for a few adaptation shifts) with {@link AdaptiveRuleProbModel} (integer path of
+ * {@link NayukiEncodeRunner}) in encoding and decoding speed and bits per base.
+ * Each RNA is coded with a fresh model; derivations are computed up front and not included
+ * in the times.
+ * <p>
+ * Usage: {@code BinaryCodingBenchmark [datasets [grammars [maxLength [maxRNAs [shifts]]]]]},
+ * where datasets is a comma-separated list of dataset folders, grammars is a comma-separated
+ * list of builtin grammars or {@code ALL}, and shifts a comma-separated list of adaptation shifts.
+ */
+public final class BinaryCodingBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        String datasetNames = args.length > 0 ? args[0] : "dowell-benchmark,friemel-modified";
+        String grammarNames = args.length > 1 ? args[1] : "G4B,G5B,G6B";
+        int maxLength = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        int maxRNAs = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        String shifts = args.length > 4 ? args[4] : "4,5,6";
+
+        for (String datasetName : datasetNames.split(",")) {
+            BenchmarkRNAs selected = BenchmarkRNAs.load(datasetName, 0, maxLength, maxRNAs);
+            List<RNAWithStructure> rnas = selected.rnas;
+            long bases = selected.bases;
+
+            for (SampleGrammar sampleGrammar : AllGrammars.getGrammarsFromCmdLine(grammarNames, true)) {
+                RNAGrammar grammar = sampleGrammar.getGrammar();
+                CachingEncoder encoder = new CachingEncoder(grammar);
+                for (RNAWithStructure rna : rnas) encoder.leftmostDerivationFor(rna);
+                System.out.println(sampleGrammar.getName() + ":");
+
+                report("adaptive (Nayuki)", rnas, bases,
+                        rna -> NayukiEncodeRunner.encode(encoder, rna, new AdaptiveRuleProbModel(grammar)),
+                        e -> NayukiDecodeRunner.decode(e, new AdaptiveRuleProbModel(grammar), grammar.startSymbol));
+                for (String s : shifts.split(",")) {
+                    int shift = Integer.parseInt(s);
+                    report("binarised, shift " + shift, rnas, bases,
+                            rna -> NayukiEncodeRunner.encodeBinarised(encoder, rna,
+                                    new BinarisedRuleProbModel(grammar, shift)),
+                            e -> NayukiDecodeRunner.decodeBinarised(e,
+                                    new BinarisedRuleProbModel(grammar, shift), grammar.startSymbol));
+                }
+            }
+        }
+    }
+
+    interface Encode {
+        byte[] encode(RNAWithStructure rna) throws Exception;
+    }
+
+    interface Decode {
+        void decode(byte[] encoded) throws Exception;
+    }
+
+    private static void report(String label, List<RNAWithStructure> rnas, long bases,
+                               Encode encode, Decode decode) throws Exception {
+        List<byte[]> encoded = new ArrayList<>(rnas.size());
+        // warm-up
+        for (int r = 0; r < RUNS; r++) {
+            encoded.clear();
+            for (RNAWithStructure rna : rnas) encoded.add(encode.encode(rna));
+            for (byte[] e : encoded) decode.decode(e);
+        }
+        long t0 = System.nanoTime();
+        for (int r = 0; r < RUNS; r++) {
+            encoded.clear();
+            for (RNAWithStructure rna : rnas) encoded.add(encode.encode(rna));
+        }
+        long t1 = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+            for (byte[] e : encoded) decode.decode(e);
+        long t2 = System.nanoTime();
+
+        long bytes = 0;
+        for (byte[] e : encoded) bytes += e.length;
+        System.out.printf("  %-20s: encode %10.2f ms   decode %10.2f ms   %10d bytes   %.4f bits per base%n",
+                label, (t1 - t0) / 1e6 / RUNS, (t2 - t1) / 1e6 / RUNS, bytes, 8.0 * bytes / bases);
+    }
+
+    private BinaryCodingBenchmark() {}
+}
@@ -0,0 +1,101 @@
+package compression.benchmark;
+
+import compression.arithmaticCoding.nayukiAc.BitInputStream;
+import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.arithmaticCoding.nayukiAc.BitSource;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Microbenchmark of {@link BitOutputStream}/{@link BitInputStream} against
+ * {@link WordBitWriter}/{@link WordBitReader}, with single bits (as in the shift loop of the
+ * Nayuki coder) and with chunks of k bits (as written by the tANS coder).
+ * <p>
+ * Usage: {@code BitIOBenchmark [megabits [k]]}
+ */
+public final class BitIOBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int bits = (args.length > 0 ? Integer.parseInt(args[0]) : 64) << 20;
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 11;
+
+        Random random = new Random(42);
+        int[] singles = new int[bits];
+        for (int i = 0; i < bits; i++) singles[i] = random.nextInt(2);
+        long[] chunks = new long[bits / k];
+        for (int i = 0; i < chunks.length; i++) chunks[i] = random.nextLong() & ((1L << k) - 1);
+
+        System.out.printf("%d Mbit, chunks of %d bits; ns per bit (best of %d)%n", bits >> 20, k, RUNS);
+        System.out.printf("  %-22s %10s %10s %10s %10s%n", "", "write 1", "write k", "read 1", "read k");
+        for (boolean words : new boolean[]{false, true}) {
+            double w1 = Double.MAX_VALUE, wk = Double.MAX_VALUE, r1 = Double.MAX_VALUE, rk = Double.MAX_VALUE;
+            byte[] single = null, chunked = null;
+            for (int run = 0; run < RUNS; run++) {
+                long t0 = System.nanoTime();
+                single = writeSingles(words, singles);
+                long t1 = System.nanoTime();
+                chunked = writeChunks(words, chunks, k);
+                long t2 = System.nanoTime();
+                long checksum = readSingles(words, single, bits);
+                long t3 = System.nanoTime();
+                checksum += readChunks(words, chunked, chunks.length, k);
+                long t4 = System.nanoTime();
+                if (checksum == 42) System.out.print(""); // keep results alive
+                w1 = Math.min(w1, (double) (t1 - t0) / bits);
+                wk = Math.min(wk, (double) (t2 - t1) / ((long) chunks.length * k));
+                r1 = Math.min(r1, (double) (t3 - t2) / bits);
+                rk = Math.min(rk, (double) (t4 - t3) / ((long) chunks.length * k));
+            }
+            System.out.printf("  %-22s %10.3f %10.3f %10.3f %10.3f%n",
+                    words ? "WordBitWriter/Reader" : "BitOutput/InputStream", w1, wk, r1, rk);
+        }
+    }
+
+    private static byte[] writeSingles(boolean words, int[] singles) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BitSink sink = words ? new WordBitWriter() : new BitOutputStream(bos);
+        for (int b : singles) sink.write(b);
+        return close(sink, bos);
+    }
+
+    private static byte[] writeChunks(boolean words, long[] chunks, int k) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BitSink sink = words ? new WordBitWriter() : new BitOutputStream(bos);
+        for (long c : chunks) sink.writeBits(c, k);
+        return close(sink, bos);
+    }
+
+    private static byte[] close(BitSink sink, ByteArrayOutputStream bos) throws IOException {
+        if (sink instanceof WordBitWriter) return ((WordBitWriter) sink).toByteArray();
+        ((BitOutputStream) sink).close();
+        return bos.toByteArray();
+    }
+
+    private static BitSource source(boolean words, byte[] bytes) {
+        return words ? new WordBitReader(bytes) : new BitInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static long readSingles(boolean words, byte[] bytes, int n) throws IOException {
+        BitSource source = source(words, bytes);
+        long sum = 0;
+        for (int i = 0; i < n; i++) sum += source.read();
+        return sum;
+    }
+
+    private static long readChunks(boolean words, byte[] bytes, int n, int k) throws IOException {
+        BitSource source = source(words, bytes);
+        long sum = 0;
+        for (int i = 0; i < n; i++) sum += source.readBits(k);
+        return sum;
+    }
+
+    private BitIOBenchmark() {}
+}
@@ -0,0 +1,26 @@
+package compression.benchmark;
+
+import compression.GenericRNAEncoder;
+import compression.arithmaticCoding.bigDecimalAc.ExactArithmeticEncoder;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.RuleProbModel;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Encoder that parses every RNA only once, so that timings measure coding only. */
+final class CachingEncoder extends GenericRNAEncoder {
+    private final Map<RNAWithStructure, List<Rule>> derivations = new IdentityHashMap<>();
+
+    CachingEncoder(RNAGrammar grammar) {
+        super(RuleProbModel.DONT_CARE, new ExactArithmeticEncoder(), grammar, grammar.startSymbol);
+    }
+
+    @Override
+    public List<Rule> leftmostDerivationFor(RNAWithStructure rna) {
+        return derivations.computeIfAbsent(rna, super::leftmostDerivationFor);
+    }
+}
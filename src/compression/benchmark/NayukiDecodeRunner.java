@@ -1,81 +1,155 @@
 package compression.benchmark;
 
+import compression.LeftmostDerivationStack;
+import compression.arithmaticCoding.ArithmeticCodingFactory;
+import compression.arithmaticCoding.ArithmeticDecodingEngine;
+import compression.arithmaticCoding.BypassDecodingEngine;
+import compression.arithmaticCoding.ans.TansDecoder;
+import compression.arithmaticCoding.ans.TansTable;
+import compression.arithmaticCoding.ans.TansTables;
 import compression.arithmaticCoding.bigDecimalAc.Interval;
-import compression.arithmaticCoding.nayukiAc.BitInputStream;
-import compression.arithmaticCoding.nayukiAc.NayukiArithmeticDecoderAdapter;
+import compression.arithmaticCoding.binary.BinaryRangeDecoder;
+import compression.arithmaticCoding.nayukiAc.ArithmeticDecoderNayuki;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
 import compression.grammar.*;
+import compression.samplegrammars.model.BinarisedRuleProbModel;
+import compression.samplegrammars.model.IndexedRuleProbModel;
 import compression.samplegrammars.model.RuleProbModel;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 
 public final class NayukiDecodeRunner {
 
+    private static final int STATE_BITS = 32;
+
+    /**
+     * Decodes with model; uses the integer path if model is an {@link IndexedRuleProbModel}.
+     */
     public static RNAWithStructure decode(
             byte[] encoded,
             RuleProbModel model,
             NonTerminal startSymbol
     ) throws IOException {
 
-        BitInputStream bitIn = new BitInputStream(new ByteArrayInputStream(encoded));
-        NayukiArithmeticDecoderAdapter dec = new NayukiArithmeticDecoderAdapter(bitIn);
+        if (model instanceof IndexedRuleProbModel)
+            return decode(encoded, (IndexedRuleProbModel) model, startSymbol);
+        return decodeIntervals(encoded, model, startSymbol);
+    }
+
+    /**
+     * Interval path corresponding to
+     * {@link NayukiEncodeRunner#encodeIntervals(compression.GenericRNAEncoder, RNAWithStructure, RuleProbModel)}.
+     */
+    public static RNAWithStructure decodeIntervals(
+            byte[] encoded,
+            RuleProbModel model,
+            NonTerminal startSymbol
+    ) throws IOException {
+        return decodeIntervals(encoded, model, startSymbol, ArithmeticCodingFactory.Backend.NAYUKI);
+    }
+
+    /** Interval path with the given stream backend (NAYUKI or RANS). */
+    public static RNAWithStructure decodeIntervals(
+            byte[] encoded,
+            RuleProbModel model,
+            NonTerminal startSymbol,
+            ArithmeticCodingFactory.Backend backend
+    ) throws IOException {
+
+        WordBitReader bitIn = new WordBitReader(encoded);
+        ArithmeticDecodingEngine dec = new BypassDecodingEngine(ArithmeticCodingFactory.createDecoder(backend, bitIn));
 
-        final List<Category> leftmostDerivation = new LinkedList<>();
-        NonTerminal leftmostNT = startSymbol;
-        leftmostDerivation.add(leftmostNT);
+        final LeftmostDerivationStack derivation = new LeftmostDerivationStack(startSymbol);
+        NonTerminal leftmostNT;
 
-        while (leftmostNT != null) {
+        while ((leftmostNT = derivation.nextNonTerminal()) != null) {
             final List<Interval> options = model.getIntervalList(leftmostNT);
-            Interval interval = dec.decodeNext(options);
+            Interval interval = dec.decodeNext(leftmostNT, options);
 
             List<Category> rhs = model.getRhsFor(interval, leftmostNT);
-            leftmostNT = replaceFirstNonterminal(leftmostDerivation, rhs);
+            derivation.expand(rhs);
         }
 
-        return getRNAString(decodeCategoryList(leftmostDerivation));
+        return derivation.toRNA();
     }
 
+    /**
+     * Integer-only path corresponding to
+     * {@link NayukiEncodeRunner#encode(compression.GenericRNAEncoder, RNAWithStructure, IndexedRuleProbModel)}.
+     */
+    public static RNAWithStructure decode(
+            byte[] encoded,
+            IndexedRuleProbModel model,
+            NonTerminal startSymbol
+    ) throws IOException {
+
+        WordBitReader bitIn = new WordBitReader(encoded);
+        ArithmeticDecoderNayuki dec = new ArithmeticDecoderNayuki(STATE_BITS, bitIn);
 
-    private static NonTerminal replaceFirstNonterminal(final List<Category> leftmostDerivation, List<Category> rhs) {
-        for (ListIterator<Category> iterator = leftmostDerivation.listIterator(); iterator.hasNext(); ) {
-            final Category cat = iterator.next();
-            if (Category.isNonTerminal(cat)) {
-                iterator.remove();
-                for (Category category : rhs) iterator.add(category);
-
-                for (Category category : rhs) iterator.previous();
-                while (iterator.hasNext()) {
-                    final Category nextCat = iterator.next();
-                    if (Category.isNonTerminal(nextCat)) {
-                        return (NonTerminal) nextCat;
-                    }
-                }
-            }
+        final LeftmostDerivationStack derivation = new LeftmostDerivationStack(startSymbol);
+        NonTerminal leftmostNT;
+
+        while ((leftmostNT = derivation.nextNonTerminal()) != null) {
+            FrequencyTable table = model.getFrequencyTable(leftmostNT);
+            int index = table.getSymbolLimit() > 1 ? dec.read(table) : 0;
+            model.update(leftmostNT, index);
+
+            derivation.expand(model.getRhs(leftmostNT, index));
         }
-        return null;
+
+        return derivation.toRNA();
     }
 
-    private static java.util.ArrayList<PairOfChar> decodeCategoryList(List<Category> catList) {
-        java.util.ArrayList<PairOfChar> pairOfCharList = new java.util.ArrayList<>();
-        for (Category cat : catList) {
-            if (!Category.isTerminal(cat))
-                throw new IllegalArgumentException("only terminals allowed here");
-            pairOfCharList.add(((PairOfCharTerminal) cat).getChars());
+
+    /**
+     * Table-driven path corresponding to
+     * {@link NayukiEncodeRunner#encodeTans(compression.GenericRNAEncoder, RNAWithStructure, TansTables)}.
+     */
+    public static RNAWithStructure decodeTans(
+            byte[] encoded,
+            TansTables tables,
+            NonTerminal startSymbol
+    ) throws IOException {
+
+        WordBitReader bitIn = new WordBitReader(encoded);
+        TansDecoder dec = new TansDecoder(tables.getTableLog(), bitIn);
+        IndexedRuleProbModel model = tables.getModel();
+
+        final LeftmostDerivationStack derivation = new LeftmostDerivationStack(startSymbol);
+        NonTerminal leftmostNT;
+
+        while ((leftmostNT = derivation.nextNonTerminal()) != null) {
+            TansTable table = tables.get(leftmostNT);
+            int index = table.getSymbolLimit() > 1 ? dec.read(table) : 0;
+            derivation.expand(model.getRhs(leftmostNT, index));
         }
-        return pairOfCharList;
+
+        return derivation.toRNA();
     }
 
-    private static RNAWithStructure getRNAString(java.util.ArrayList<PairOfChar> POCList) {
-        StringBuilder primary = new StringBuilder(POCList.size()),
-                secondary = new StringBuilder(POCList.size());
-        for (PairOfChar POC : POCList) {
-            primary.append(POC.getPry());
-            secondary.append(POC.getSec());
+    /**
+     * Binarised path corresponding to
+     * {@link NayukiEncodeRunner#encodeBinarised(compression.GenericRNAEncoder, RNAWithStructure, BinarisedRuleProbModel)}.
+     */
+    public static RNAWithStructure decodeBinarised(
+            byte[] encoded,
+            BinarisedRuleProbModel model,
+            NonTerminal startSymbol
+    ) throws IOException {
+
+        WordBitReader bitIn = new WordBitReader(encoded);
+        BinaryRangeDecoder dec = new BinaryRangeDecoder(bitIn);
+
+        final LeftmostDerivationStack derivation = new LeftmostDerivationStack(startSymbol);
+        NonTerminal leftmostNT;
+
+        while ((leftmostNT = derivation.nextNonTerminal()) != null) {
+            derivation.expand(model.getRhs(leftmostNT, model.decode(dec, leftmostNT)));
         }
-        return new RNAWithStructure(primary.toString(), secondary.toString());
+
+        return derivation.toRNA();
     }
 
     private NayukiDecodeRunner() {}
@@ -5,42 +5,186 @@ import compression.grammar.RNAWithStructure;
 import compression.grammar.Rule;
 import compression.arithmaticCoding.ArithmeticCodingEngine;
 import compression.arithmaticCoding.ArithmeticCodingFactory;
+import compression.arithmaticCoding.BypassCodingEngine;
+import compression.arithmaticCoding.ans.TansEncoder;
+import compression.arithmaticCoding.ans.TansTable;
+import compression.arithmaticCoding.ans.TansTables;
 import compression.arithmaticCoding.bigDecimalAc.Interval;
-import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.binary.BinaryRangeEncoder;
+import compression.arithmaticCoding.nayukiAc.ArithmeticEncoderNayuki;
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.arithmaticCoding.nayukiAc.CountingBitSink;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.samplegrammars.model.BinarisedRuleProbModel;
+import compression.samplegrammars.model.IndexedRuleProbModel;
 import compression.samplegrammars.model.RuleProbModel;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
 
 public final class NayukiEncodeRunner {
 
+    private static final int STATE_BITS = 32;
+
+    /**
+     * Encodes rna with model; uses the integer path if model is an {@link IndexedRuleProbModel}.
+     */
     public static byte[] encode(
             GenericRNAEncoder encoder,
             RNAWithStructure rna,
             RuleProbModel model
     ) throws IOException {
 
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        BitOutputStream bitOut = new BitOutputStream(bos);
+        if (model instanceof IndexedRuleProbModel)
+            return encode(encoder, rna, (IndexedRuleProbModel) model);
+        return encodeIntervals(encoder, rna, model);
+    }
+
+    /**
+     * Interval path: the model's intervals are quantised to frequency tables
+     * by the Nayuki adapter.
+     */
+    public static byte[] encodeIntervals(
+            GenericRNAEncoder encoder,
+            RNAWithStructure rna,
+            RuleProbModel model
+    ) throws IOException {
+        return encodeIntervals(encoder, rna, model, ArithmeticCodingFactory.Backend.NAYUKI);
+    }
+
+    /**
+     * Interval path with the given stream backend (NAYUKI or RANS); single options are
+     * skipped and uniform choices bypass the frequency tables, see {@link BypassCodingEngine}.
+     */
+    public static byte[] encodeIntervals(
+            GenericRNAEncoder encoder,
+            RNAWithStructure rna,
+            RuleProbModel model,
+            ArithmeticCodingFactory.Backend backend
+    ) throws IOException {
+
+        WordBitWriter bitOut = new WordBitWriter();
+        writeIntervals(encoder.leftmostDerivationFor(rna), model, backend, bitOut);
+        return bitOut.toByteArray();
+    }
+
+    private static void writeIntervals(
+            List<Rule> derivation,
+            RuleProbModel model,
+            ArithmeticCodingFactory.Backend backend,
+            BitSink bitOut
+    ) throws IOException {
 
-        ArithmeticCodingEngine engine =
+        ArithmeticCodingEngine engine = new BypassCodingEngine(
                 ArithmeticCodingFactory.createEncoder(
-                        ArithmeticCodingFactory.Backend.NAYUKI,
+                        backend,
                         bitOut
-                );
+                ));
 
-        for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+        for (Rule rule : derivation) {
             List<Interval> options = model.getIntervalList(rule.left);
             Interval chosen = model.getIntervalFor(rule);
 
-            engine.encodeNext(options, chosen);
+            engine.encodeNext(rule.left, options, chosen);
         }
 
         engine.finish();
-        bitOut.close();
+    }
+
+    /**
+     * Integer-only path: the frequency tables of the model are used by the
+     * Nayuki coder directly, without any intervals. Nonterminals with a single rule are
+     * not coded.
+     */
+    public static byte[] encode(
+            GenericRNAEncoder encoder,
+            RNAWithStructure rna,
+            IndexedRuleProbModel model
+    ) throws IOException {
+
+        WordBitWriter bitOut = new WordBitWriter();
+        writeIndexed(encoder.leftmostDerivationFor(rna), model, bitOut);
+        return bitOut.toByteArray();
+    }
+
+    static void writeIndexed(
+            List<Rule> derivation,
+            IndexedRuleProbModel model,
+            BitSink bitOut
+    ) throws IOException {
+
+        ArithmeticEncoderNayuki enc = new ArithmeticEncoderNayuki(STATE_BITS, bitOut);
+
+        for (Rule rule : derivation) {
+            int index = model.getRuleIndex(rule);
+            FrequencyTable table = model.getFrequencyTable(rule.left);
+            if (table.getSymbolLimit() > 1) enc.write(table, index);
+            model.update(rule.left, index);
+        }
+
+        enc.finish();
+    }
+
+    /**
+     * Size-only mode: the number of bits that {@link #encode(GenericRNAEncoder, RNAWithStructure, RuleProbModel)}
+     * writes for the given derivation, computed by the same coder, but without storing any output.
+     */
+    public static long encodedBits(
+            List<Rule> derivation,
+            RuleProbModel model
+    ) throws IOException {
+
+        CountingBitSink bitOut = new CountingBitSink();
+        if (model instanceof IndexedRuleProbModel)
+            writeIndexed(derivation, (IndexedRuleProbModel) model, bitOut);
+        else
+            writeIntervals(derivation, model, ArithmeticCodingFactory.Backend.NAYUKI, bitOut);
+        return bitOut.bitsWritten();
+    }
+
+    /**
+     * Table-driven path for static models: each rule is coded with the precompiled
+     * tANS table of its left-hand side; nonterminals with a single rule are not coded.
+     */
+    public static byte[] encodeTans(
+            GenericRNAEncoder encoder,
+            RNAWithStructure rna,
+            TansTables tables
+    ) throws IOException {
+
+        WordBitWriter bitOut = new WordBitWriter();
+        TansEncoder enc = new TansEncoder(tables.getTableLog(), bitOut);
+        IndexedRuleProbModel model = tables.getModel();
+
+        for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+            TansTable table = tables.get(rule.left);
+            if (table.getSymbolLimit() > 1) enc.write(table, model.getRuleIndex(rule));
+        }
+
+        enc.finish();
+        return bitOut.toByteArray();
+    }
+
+    /**
+     * Binarised path: each rule index is coded bit by bit with the adaptive bit
+     * probabilities of model, by the binary range coder.
+     */
+    public static byte[] encodeBinarised(
+            GenericRNAEncoder encoder,
+            RNAWithStructure rna,
+            BinarisedRuleProbModel model
+    ) throws IOException {
+
+        WordBitWriter bitOut = new WordBitWriter();
+        BinaryRangeEncoder enc = new BinaryRangeEncoder(bitOut);
+
+        for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+            model.encode(enc, rule.left, model.getRuleIndex(rule));
+        }
 
-        return bos.toByteArray();
+        enc.finish();
+        return bitOut.toByteArray();
     }
 
     private NayukiEncodeRunner() {}
@@ -0,0 +1,117 @@
+package compression.benchmark;
+
+import compression.data.CachedDataset;
+import compression.data.Dataset;
+import compression.data.FolderBasedDataset;
+import compression.grammar.PairOfChar;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.grammar.Terminal;
+import compression.parser.CompiledSRFParser;
+import compression.parser.SRFParser;
+import compression.parser.StochasticParser;
+import compression.samplegrammars.SampleGrammar;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.util.AllGrammars;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares parse throughput of the interpreted {@link SRFParser} and the
+ * {@link CompiledSRFParser} on the builtin grammars, and checks that both
+ * produce identical derivations. Also reports the time of the reduced-precision
+ * {@link CompiledSRFParser.ScoreMode score modes} and how many of their derivations
+ * differ from those of the {@code double} scores.
+ * <p>
+ * Usage: {@code ParserBenchmark [dataset [maxLength [maxSpan]]]}
+ */
+public final class ParserBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String datasetName = args.length > 0 ? args[0] : "dowell-benchmark";
+        int maxLength = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int maxSpan = args.length > 2 ? Integer.parseInt(args[2]) : CompiledSRFParser.UNBOUNDED_SPAN;
+
+        Dataset dataset = new CachedDataset(new FolderBasedDataset(datasetName));
+        List<List<Terminal<PairOfChar>>> words = new ArrayList<>();
+        long bases = 0;
+        for (RNAWithStructure rna : dataset) {
+            if (rna.getNumberOfBases() > maxLength) continue;
+            words.add(rna.asTerminals());
+            bases += rna.getNumberOfBases();
+        }
+        System.out.println("Dataset " + datasetName + ": " + words.size() + " RNAs with at most "
+                + maxLength + " bases, " + bases + " bases in total");
+
+        for (Map.Entry<String, SampleGrammar> entry : AllGrammars.allGrammars(true).entrySet()) {
+            RNAGrammar grammar = entry.getValue().getGrammar();
+            SRFParser<PairOfChar> interpreted = new SRFParser<>(grammar);
+            CompiledSRFParser<PairOfChar> compiled = new CompiledSRFParser<>(grammar);
+
+            for (List<Terminal<PairOfChar>> word : words) {
+                if (!interpreted.leftmostDerivationFor(word).equals(compiled.leftmostDerivationFor(word)))
+                    throw new AssertionError("Derivations differ for " + entry.getKey() + " on " + word);
+            }
+
+            double interpretedMs = timeParses(interpreted, words);
+            double compiledMs = timeParses(compiled, words);
+            System.out.printf("%-14s interpreted: %10.1f ms   compiled: %10.1f ms   speedup: %5.2f%n",
+                    entry.getKey(), interpretedMs, compiledMs, interpretedMs / compiledMs);
+
+            for (CompiledSRFParser.ScoreMode mode : CompiledSRFParser.ScoreMode.values()) {
+                if (mode == CompiledSRFParser.ScoreMode.DOUBLE) continue;
+                CompiledSRFParser<PairOfChar> reduced = new CompiledSRFParser<>(grammar, RuleProbModel.DONT_CARE, mode);
+                int differing = 0;
+                for (List<Terminal<PairOfChar>> word : words) {
+                    if (!compiled.leftmostDerivationFor(word).equals(reduced.leftmostDerivationFor(word)))
+                        ++differing;
+                }
+                double reducedMs = timeParses(reduced, words);
+                System.out.printf("%-14s %-11s: %10.1f ms   derivations differing from DOUBLE: %d%n",
+                        "", mode, reducedMs, differing);
+            }
+
+            if (maxSpan != CompiledSRFParser.UNBOUNDED_SPAN) {
+                CompiledSRFParser<PairOfChar> banded = new CompiledSRFParser<>(grammar, RuleProbModel.DONT_CARE,
+                        CompiledSRFParser.ScoreMode.DOUBLE, maxSpan);
+                List<List<Terminal<PairOfChar>>> local = new ArrayList<>();
+                for (List<Terminal<PairOfChar>> word : words) {
+                    if (banded.parsable(word)) local.add(word);
+                }
+                double unbandedMs = timeParses(compiled, local);
+                double bandedMs = timeParses(banded, local);
+                System.out.printf("%-14s %-11s: %10.1f ms   unbanded: %10.1f ms on %d RNAs parsable with max span %d%n",
+                        "", "BANDED", bandedMs, unbandedMs, local.size(), maxSpan);
+            }
+        }
+    }
+
+    private static double timeParses(StochasticParser<PairOfChar> parser,
+                                     List<List<Terminal<PairOfChar>>> words) throws Exception {
+        int warmup = 2;
+        int runs = 5;
+        for (int i = 0; i < warmup; i++) parseAll(parser, words);
+        long total = 0;
+        for (int i = 0; i < runs; i++) {
+            long t0 = System.nanoTime();
+            parseAll(parser, words);
+            total += System.nanoTime() - t0;
+        }
+        return total / 1e6 / runs;
+    }
+
+    private static int parseAll(StochasticParser<PairOfChar> parser,
+                                List<List<Terminal<PairOfChar>>> words) throws Exception {
+        int nRules = 0;
+        for (List<Terminal<PairOfChar>> word : words) {
+            List<Rule> derivation = parser.mostLikelyLeftmostDerivationFor(word);
+            nRules += derivation.size();
+        }
+        return nRules;
+    }
+
+    private ParserBenchmark() {}
+}
@@ -0,0 +1,174 @@
+package compression.benchmark;
+
+import compression.GenericRNAEncoder;
+import compression.LeftmostDerivationStack;
+import compression.arithmaticCoding.nayukiAc.ArithmeticDecoderNayuki;
+import compression.arithmaticCoding.nayukiAc.ArithmeticEncoderNayuki;
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.arithmaticCoding.nayukiAc.BitSource;
+import compression.arithmaticCoding.nayukiAc.CountingBitSink;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.grammar.NonTerminal;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.RuleProbsForGrammarSemiAdaptive;
+import compression.samplegrammars.model.SemiAdaptiveRuleProbModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A self-contained semi-adaptive format: the rule counts of the RNA, followed by its
+ * derivation coded with these counts as frequencies ({@link SemiAdaptiveRuleProbModel#fromCounts}),
+ * by the Nayuki coder. The RNA is parsed only once.
+ * <p>
+ * The header lists, for every nonterminal with more than one rule in the order of their names,
+ * the total count n of its rules as Elias gamma code of n + 1. If n &gt; 0, the counts of all but
+ * its last rule follow (in the order of {@link compression.grammar.Grammar#getRules(NonTerminal)});
+ * the last count is implied. The counts are either all Elias gamma codes of count + 1, which is
+ * short for the many rules used rarely or not at all, or all written in binary with as many bits
+ * as the sum of the remaining counts needs, whichever is shorter; one bit tells which.
+ * Nonterminals with a single rule are neither in the header nor coded.
+ */
+public final class SemiAdaptiveArchive {
+
+    private static final int STATE_BITS = 32;
+
+    /** The rules of the nonterminals in the header, in header order */
+    private static List<List<Rule>> headerRules(final RNAGrammar grammar) {
+        List<NonTerminal> nonTerminals = new ArrayList<>(grammar.getNonTerminals());
+        nonTerminals.sort(Comparator.comparing(NonTerminal::toString));
+        List<List<Rule>> res = new ArrayList<>();
+        for (NonTerminal nonTerminal : nonTerminals) {
+            List<Rule> rules = new ArrayList<>(grammar.getRules(nonTerminal));
+            if (rules.size() > 1) res.add(rules);
+        }
+        return res;
+    }
+
+    private static int bitLength(final long x) {
+        return 64 - Long.numberOfLeadingZeros(x);
+    }
+
+    /** Writes x &ge; 1 as Elias gamma code: floor(log2 x) zeros, then x in binary */
+    static void writeEliasGamma(final BitSink out, final long x) throws IOException {
+        if (x < 1) throw new IllegalArgumentException("Elias gamma code needs x >= 1: " + x);
+        int n = bitLength(x);
+        out.writeBits(0, n - 1);
+        out.writeBits(x, n);
+    }
+
+    static long readEliasGamma(final BitSource in) throws IOException {
+        int zeros = 0;
+        int bit;
+        while ((bit = in.read()) == 0) {
+            if (++zeros == 64) throw new IOException("Invalid Elias gamma code");
+        }
+        if (bit < 0) throw new IOException("Unexpected end of header");
+        return (1L << zeros) | in.readBits(zeros);
+    }
+
+    /** Size of the counts of rules (but the last) with Elias gamma codes, resp. in binary */
+    private static long[] countsBits(final List<Rule> rules, final Map<Rule, Long> ruleCounts, long remaining) {
+        long gamma = 0, binary = 0;
+        for (Rule rule : rules.subList(0, rules.size() - 1)) {
+            long count = ruleCounts.getOrDefault(rule, 0L);
+            gamma += 2L * bitLength(count + 1) - 1;
+            binary += bitLength(remaining);
+            remaining -= count;
+        }
+        return new long[] {gamma, binary};
+    }
+
+    /** Writes the header for the given rule counts; returns the number of bits written. */
+    public static long writeHeader(final RNAGrammar grammar, final Map<Rule, Long> ruleCounts,
+                                   final BitSink out) throws IOException {
+        long bits = 0;
+        for (List<Rule> rules : headerRules(grammar)) {
+            long remaining = 0;
+            for (Rule rule : rules) remaining += ruleCounts.getOrDefault(rule, 0L);
+            writeEliasGamma(out, remaining + 1);
+            bits += 2L * bitLength(remaining + 1) - 1;
+            if (remaining == 0) continue;
+            long[] sizes = countsBits(rules, ruleCounts, remaining);
+            boolean gamma = sizes[0] <= sizes[1];
+            out.write(gamma ? 0 : 1);
+            bits += 1 + (gamma ? sizes[0] : sizes[1]);
+            for (Rule rule : rules.subList(0, rules.size() - 1)) {
+                long count = ruleCounts.getOrDefault(rule, 0L);
+                if (gamma) writeEliasGamma(out, count + 1);
+                else out.writeBits(count, bitLength(remaining));
+                remaining -= count;
+            }
+        }
+        return bits;
+    }
+
+    /** Reads the rule counts written by {@link #writeHeader(RNAGrammar, Map, BitSink)}. */
+    public static Map<Rule, Long> readHeader(final RNAGrammar grammar, final BitSource in) throws IOException {
+        Map<Rule, Long> ruleCounts = new HashMap<>();
+        for (Rule rule : grammar.getAllRules()) ruleCounts.put(rule, 0L);
+        for (List<Rule> rules : headerRules(grammar)) {
+            long remaining = readEliasGamma(in) - 1;
+            if (remaining == 0) continue;
+            boolean gamma = in.read() == 0;
+            for (Rule rule : rules.subList(0, rules.size() - 1)) {
+                long count = gamma ? readEliasGamma(in) - 1 : in.readBits(bitLength(remaining));
+                if (count > remaining) throw new IOException("Invalid rule count in header");
+                ruleCounts.put(rule, count);
+                remaining -= count;
+            }
+            ruleCounts.put(rules.get(rules.size() - 1), remaining);
+        }
+        return ruleCounts;
+    }
+
+    /** Size of the header for the given derivation, in bits; nothing is stored */
+    public static long headerBits(final RNAGrammar grammar, final List<Rule> derivation) throws IOException {
+        CountingBitSink bits = new CountingBitSink();
+        writeHeader(grammar, new RuleProbsForGrammarSemiAdaptive(grammar, derivation).ruleCounts(), bits);
+        return bits.bitsWritten();
+    }
+
+    public static byte[] encode(final GenericRNAEncoder encoder, final RNAWithStructure rna,
+                                final RNAGrammar grammar) throws IOException {
+        List<Rule> derivation = encoder.leftmostDerivationFor(rna);
+        Map<Rule, Long> ruleCounts = new RuleProbsForGrammarSemiAdaptive(grammar, derivation).ruleCounts();
+
+        WordBitWriter bitOut = new WordBitWriter();
+        writeHeader(grammar, ruleCounts, bitOut);
+
+        SemiAdaptiveRuleProbModel model = SemiAdaptiveRuleProbModel.fromCounts(grammar, ruleCounts);
+        ArithmeticEncoderNayuki enc = new ArithmeticEncoderNayuki(STATE_BITS, bitOut);
+        for (Rule rule : derivation) {
+            FrequencyTable table = model.getFrequencyTable(rule.left);
+            if (table.getSymbolLimit() > 1) enc.write(table, model.getRuleIndex(rule));
+        }
+        enc.finish();
+        return bitOut.toByteArray();
+    }
+
+    public static RNAWithStructure decode(final byte[] encoded, final RNAGrammar grammar) throws IOException {
+        WordBitReader bitIn = new WordBitReader(encoded);
+        SemiAdaptiveRuleProbModel model = SemiAdaptiveRuleProbModel.fromCounts(grammar, readHeader(grammar, bitIn));
+        ArithmeticDecoderNayuki dec = new ArithmeticDecoderNayuki(STATE_BITS, bitIn);
+
+        final LeftmostDerivationStack derivation = new LeftmostDerivationStack(grammar.startSymbol);
+        NonTerminal leftmostNT;
+        while ((leftmostNT = derivation.nextNonTerminal()) != null) {
+            FrequencyTable table = model.getFrequencyTable(leftmostNT);
+            int index = table.getSymbolLimit() > 1 ? dec.read(table) : 0;
+            derivation.expand(model.getRhs(leftmostNT, index));
+        }
+        return derivation.toRNA();
+    }
+
+    private SemiAdaptiveArchive() {}
+}
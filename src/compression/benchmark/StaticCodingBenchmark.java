@@ -0,0 +1,77 @@
+package compression.benchmark;
+
+import compression.arithmaticCoding.ans.TansTables;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.SampleGrammar;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import compression.util.AllGrammars;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares decoding speed and compressed size of static models with the Nayuki arithmetic
+ * coder (integer path of {@link NayukiEncodeRunner}) and with precompiled tANS tables.
+ * The static model is trained on the RNAs themselves, with LaPlace smoothing;
+ * derivations are computed up front and not included in the times.
+ * <p>
+ * Usage: {@code StaticCodingBenchmark [datasets [grammars [maxLength [maxRNAs [tableLog]]]]]},
+ * where datasets is a comma-separated list of dataset folders and
+ * grammars is a comma-separated list of builtin grammars or {@code ALL}.
+ */
+public final class StaticCodingBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        String datasetNames = args.length > 0 ? args[0] : "dowell-benchmark,friemel-modified";
+        String grammarNames = args.length > 1 ? args[1] : "G6B";
+        int maxLength = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        int maxRNAs = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int tableLog = args.length > 4 ? Integer.parseInt(args[4]) : 12;
+
+        for (String datasetName : datasetNames.split(",")) {
+            BenchmarkRNAs selected = BenchmarkRNAs.load(datasetName, 0, maxLength, maxRNAs);
+            List<RNAWithStructure> rnas = selected.rnas;
+            long bases = selected.bases;
+
+            for (SampleGrammar sampleGrammar : AllGrammars.getGrammarsFromCmdLine(grammarNames, true)) {
+                RNAGrammar grammar = sampleGrammar.getGrammar();
+                CachingEncoder encoder = new CachingEncoder(grammar);
+                StaticRuleProbModel model = selected.laPlaceModel(grammar, encoder);
+                TansTables tables = new TansTables(model, tableLog);
+
+                List<byte[]> nayuki = new ArrayList<>(), tans = new ArrayList<>();
+                for (RNAWithStructure rna : rnas) {
+                    nayuki.add(NayukiEncodeRunner.encode(encoder, rna, model));
+                    tans.add(NayukiEncodeRunner.encodeTans(encoder, rna, tables));
+                }
+                // warm-up
+                for (int r = 0; r < RUNS; r++) {
+                    for (byte[] e : nayuki) NayukiDecodeRunner.decode(e, model, grammar.startSymbol);
+                    for (byte[] e : tans) NayukiDecodeRunner.decodeTans(e, tables, grammar.startSymbol);
+                }
+                long t0 = System.nanoTime();
+                for (int r = 0; r < RUNS; r++)
+                    for (byte[] e : nayuki) NayukiDecodeRunner.decode(e, model, grammar.startSymbol);
+                long t1 = System.nanoTime();
+                for (int r = 0; r < RUNS; r++)
+                    for (byte[] e : tans) NayukiDecodeRunner.decodeTans(e, tables, grammar.startSymbol);
+                long t2 = System.nanoTime();
+
+                long nayukiBytes = 0, tansBytes = 0;
+                for (byte[] e : nayuki) nayukiBytes += e.length;
+                for (byte[] e : tans) tansBytes += e.length;
+                System.out.println(sampleGrammar.getName() + ":");
+                System.out.printf("  %-6s: decode %8.1f ms   %8d bytes   %.4f bits per base%n",
+                        "Nayuki", (t1 - t0) / 1e6 / RUNS, nayukiBytes, 8.0 * nayukiBytes / bases);
+                System.out.printf("  %-6s: decode %8.1f ms   %8d bytes   %.4f bits per base   (%+.2f%% size)%n",
+                        "tANS", (t2 - t1) / 1e6 / RUNS, tansBytes, 8.0 * tansBytes / bases,
+                        100.0 * (tansBytes - nayukiBytes) / nayukiBytes);
+            }
+        }
+    }
+
+    private StaticCodingBenchmark() {}
+}
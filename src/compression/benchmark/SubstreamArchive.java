@@ -0,0 +1,272 @@
+package compression.benchmark;
+
+import compression.GenericRNAEncoder;
+import compression.LeftmostDerivationStack;
+import compression.arithmaticCoding.nayukiAc.ArithmeticDecoderNayuki;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.grammar.Category;
+import compression.grammar.NonTerminal;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.IndexedRuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * A format that codes the derivation of one RNA in independent substreams, so that long RNAs
+ * can be decoded on several threads.
+ * <p>
+ * Subtrees of the derivation tree are cut off: going through the derivation in leftmost order,
+ * the first subtree with at most n / parts of the n rules is cut, unless it has fewer than
+ * minRules rules; larger subtrees are searched for smaller ones. For the Dowell grammars, these
+ * are branches of multiloops and segments of the exterior loop. The rest of the derivation (the
+ * main stream) and every cut subtree are coded by their own Nayuki coder with their own model, so
+ * all streams can be decoded at the same time; the strings derived by the subtrees are inserted
+ * into that of the main stream at the end.
+ * <p>
+ * The header holds the number k of substreams as Elias gamma code of k + 1, then for each
+ * substream the number of main stream rules before it, as gamma code of the difference to the
+ * previous one plus 1, and its nonterminal, as index among all nonterminals sorted by name, in
+ * fixed width. The byte lengths of all streams but the last follow, as gamma codes of length + 1,
+ * and the streams, from the next byte boundary on, main stream first.
+ * <p>
+ * The split costs the header, k more coder terminations and, with adaptive models, k more models
+ * to learn; see {@link SubstreamBenchmark}.
+ */
+public final class SubstreamArchive {
+
+    public static final int DEFAULT_PARTS = 4;
+    public static final int DEFAULT_MIN_SUBSTREAM_RULES = 1 << 8;
+
+    private static final int STATE_BITS = 32;
+
+    private static List<NonTerminal> sortedNonTerminals(final RNAGrammar grammar) {
+        List<NonTerminal> nonTerminals = new ArrayList<>(grammar.getNonTerminals());
+        nonTerminals.sort(Comparator.comparing(NonTerminal::toString));
+        return nonTerminals;
+    }
+
+    private static int bitLength(final long x) {
+        return 64 - Long.numberOfLeadingZeros(x);
+    }
+
+    private static long gammaBits(final long x) {
+        return 2L * bitLength(x) - 1;
+    }
+
+    /** For each rule of the derivation, the index after the last rule of its subtree */
+    static int[] subtreeEnds(final List<Rule> derivation) {
+        int[] ends = new int[derivation.size()];
+        // rules whose subtree is not complete yet, with the number of their missing children
+        int[] open = new int[derivation.size()], missing = new int[derivation.size()];
+        int depth = 0;
+        for (int i = 0; i < derivation.size(); i++) {
+            int children = 0;
+            for (Category category : derivation.get(i).getRight())
+                if (Category.isNonTerminal(category)) children++;
+            open[depth] = i;
+            missing[depth++] = children;
+            while (depth > 0 && missing[depth - 1] == 0) {
+                ends[open[--depth]] = i + 1;
+                if (depth > 0) missing[depth - 1]--;
+            }
+        }
+        if (depth > 0) throw new IllegalArgumentException("Incomplete derivation");
+        return ends;
+    }
+
+    /**
+     * The first rules of the subtrees that are cut off the derivation, in leftmost order;
+     * see the class comment.
+     */
+    public static int[] substreamStarts(final List<Rule> derivation, final int parts, final int minRules) {
+        if (parts < 1) throw new IllegalArgumentException("parts must be positive: " + parts);
+        if (minRules < 1) throw new IllegalArgumentException("minRules must be positive: " + minRules);
+        if (parts == 1) return new int[0];
+        int[] ends = subtreeEnds(derivation);
+        int maxRules = derivation.size() / parts;
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < derivation.size(); ) {
+            int size = ends[i] - i;
+            if (size < minRules) {
+                i = ends[i];
+            } else if (size <= maxRules) {
+                starts.add(i);
+                i = ends[i];
+            } else {
+                i++;
+            }
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static byte[] stream(final List<Rule> derivation, final IndexedRuleProbModel model) throws IOException {
+        WordBitWriter bitOut = new WordBitWriter();
+        NayukiEncodeRunner.writeIndexed(derivation, model, bitOut);
+        return bitOut.toByteArray();
+    }
+
+    /**
+     * @param newModel gives the model of each stream, in its initial state; adaptive models must be
+     *                 new each time, while a {@link StaticRuleProbModel} is immutable and can be shared
+     */
+    public static byte[] encode(final GenericRNAEncoder encoder, final RNAWithStructure rna,
+                                final RNAGrammar grammar, final Supplier<? extends IndexedRuleProbModel> newModel,
+                                final int parts, final int minRules) throws IOException {
+        List<Rule> derivation = encoder.leftmostDerivationFor(rna);
+        int[] ends = subtreeEnds(derivation);
+        List<NonTerminal> nonTerminals = sortedNonTerminals(grammar);
+        int nonTerminalBits = bitLength(nonTerminals.size() - 1);
+
+        WordBitWriter header = new WordBitWriter();
+        int[] starts = substreamStarts(derivation, parts, minRules);
+        SemiAdaptiveArchive.writeEliasGamma(header, starts.length + 1);
+
+        List<Rule> main = new ArrayList<>(derivation.size());
+        List<byte[]> streams = new ArrayList<>(starts.length + 1);
+        streams.add(null); // the main stream, once complete
+        int from = 0, previous = 0;
+        for (int start : starts) {
+            main.addAll(derivation.subList(from, start));
+            SemiAdaptiveArchive.writeEliasGamma(header, main.size() - previous + 1);
+            header.writeBits(nonTerminals.indexOf(derivation.get(start).left), nonTerminalBits);
+            previous = main.size();
+            streams.add(stream(derivation.subList(start, ends[start]), newModel.get()));
+            from = ends[start];
+        }
+        main.addAll(derivation.subList(from, derivation.size()));
+        streams.set(0, stream(main, newModel.get()));
+
+        for (byte[] s : streams.subList(0, streams.size() - 1))
+            SemiAdaptiveArchive.writeEliasGamma(header, s.length + 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(header.toByteArray());
+        for (byte[] s : streams) out.write(s);
+        return out.toByteArray();
+    }
+
+    public static byte[] encode(final GenericRNAEncoder encoder, final RNAWithStructure rna,
+                                final RNAGrammar grammar,
+                                final Supplier<? extends IndexedRuleProbModel> newModel) throws IOException {
+        return encode(encoder, rna, grammar, newModel, DEFAULT_PARTS, DEFAULT_MIN_SUBSTREAM_RULES);
+    }
+
+    /** Decodes the main stream; the positions of the substreams in its output go to insertAt. */
+    private static RNAWithStructure decodeMain(final byte[] encoded, final int offset, final int length,
+                                               final IndexedRuleProbModel model, final NonTerminal startSymbol,
+                                               final long[] positions, final NonTerminal[] substreamNonTerminals,
+                                               final int[] insertAt) throws IOException {
+        WordBitReader bitIn = new WordBitReader(Arrays.copyOfRange(encoded, offset, offset + length));
+        ArithmeticDecoderNayuki dec = new ArithmeticDecoderNayuki(STATE_BITS, bitIn);
+
+        final LeftmostDerivationStack derivation = new LeftmostDerivationStack(startSymbol);
+        NonTerminal leftmostNT;
+        long rules = 0;
+        int next = 0;
+        while ((leftmostNT = derivation.nextNonTerminal()) != null) {
+            if (next < positions.length && positions[next] == rules) {
+                if (!leftmostNT.equals(substreamNonTerminals[next]))
+                    throw new IOException("Substream " + next + " is for " + substreamNonTerminals[next]
+                            + ", not " + leftmostNT);
+                insertAt[next++] = derivation.outputLength();
+                continue;
+            }
+            FrequencyTable table = model.getFrequencyTable(leftmostNT);
+            int index = table.getSymbolLimit() > 1 ? dec.read(table) : 0;
+            model.update(leftmostNT, index);
+            derivation.expand(model.getRhs(leftmostNT, index));
+            rules++;
+        }
+        if (next < positions.length) throw new IOException("Substream position after the end of the main stream");
+        return derivation.toRNA();
+    }
+
+    /**
+     * @param newModel as for encoding; with parallel, it is called from several threads and its
+     *                 models are used at the same time, so only immutable models can be shared
+     * @param parallel whether to decode the streams in parallel
+     */
+    public static RNAWithStructure decode(final byte[] encoded, final RNAGrammar grammar,
+                                          final Supplier<? extends IndexedRuleProbModel> newModel,
+                                          final boolean parallel) throws IOException {
+        List<NonTerminal> nonTerminals = sortedNonTerminals(grammar);
+        int nonTerminalBits = bitLength(nonTerminals.size() - 1);
+
+        WordBitReader in = new WordBitReader(encoded);
+        long k = SemiAdaptiveArchive.readEliasGamma(in) - 1;
+        if (k > encoded.length) throw new IOException("Invalid number of substreams: " + k);
+        long headerBits = gammaBits(k + 1);
+        long[] positions = new long[(int) k];
+        NonTerminal[] substreamNonTerminals = new NonTerminal[(int) k];
+        long position = 0;
+        for (int j = 0; j < k; j++) {
+            long delta = SemiAdaptiveArchive.readEliasGamma(in);
+            int index = (int) in.readBits(nonTerminalBits);
+            if (index >= nonTerminals.size()) throw new IOException("Invalid substream nonterminal: " + index);
+            headerBits += gammaBits(delta) + nonTerminalBits;
+            position += delta - 1;
+            positions[j] = position;
+            substreamNonTerminals[j] = nonTerminals.get(index);
+        }
+        int[] offsets = new int[(int) k + 2];
+        long[] lengths = new long[(int) k];
+        for (int j = 0; j < k; j++) {
+            lengths[j] = SemiAdaptiveArchive.readEliasGamma(in) - 1;
+            headerBits += gammaBits(lengths[j] + 1);
+        }
+        long offset = (headerBits + 7) >>> 3;
+        for (int j = 0; j <= k; j++) {
+            if (offset > encoded.length) throw new IOException("Substreams beyond the end of the input");
+            offsets[j] = (int) offset;
+            if (j < k) offset += lengths[j];
+        }
+        offsets[(int) k + 1] = encoded.length;
+
+        RNAWithStructure[] decoded = new RNAWithStructure[(int) k + 1];
+        int[] insertAt = new int[(int) k];
+        IntStream streams = IntStream.rangeClosed(0, (int) k);
+        if (parallel) streams = streams.parallel();
+        try {
+            streams.forEach(j -> {
+                try {
+                    int length = offsets[j + 1] - offsets[j];
+                    decoded[j] = j == 0
+                            ? decodeMain(encoded, offsets[0], length, newModel.get(), grammar.startSymbol,
+                                positions, substreamNonTerminals, insertAt)
+                            : NayukiDecodeRunner.decode(Arrays.copyOfRange(encoded, offsets[j], offsets[j] + length),
+                                newModel.get(), substreamNonTerminals[j - 1]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        RNAWithStructure main = decoded[0];
+        StringBuilder primary = new StringBuilder(), secondary = new StringBuilder();
+        int from = 0;
+        for (int j = 0; j < k; j++) {
+            primary.append(main.primaryStructure, from, insertAt[j]).append(decoded[j + 1].primaryStructure);
+            secondary.append(main.secondaryStructure, from, insertAt[j]).append(decoded[j + 1].secondaryStructure);
+            from = insertAt[j];
+        }
+        primary.append(main.primaryStructure, from, main.primaryStructure.length());
+        secondary.append(main.secondaryStructure, from, main.secondaryStructure.length());
+        return new RNAWithStructure(primary.toString(), secondary.toString());
+    }
+
+    private SubstreamArchive() {}
+}
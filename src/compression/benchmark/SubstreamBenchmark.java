@@ -0,0 +1,94 @@
+package compression.benchmark;
+
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.SampleGrammar;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.IndexedRuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import compression.util.AllGrammars;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Reports the compression cost of {@link SubstreamArchive} and its decoding times, sequential and
+ * parallel, compared with a single stream of the integer path of {@link NayukiEncodeRunner}.
+ * The static model is trained on the RNAs themselves, with LaPlace smoothing, as in
+ * {@link StaticCodingBenchmark}; the adaptive one is {@link AdaptiveRuleProbModel}.
+ * Derivations are computed up front and not included in the times.
+ * <p>
+ * Usage: {@code SubstreamBenchmark [dataset [grammars [minLength [maxRNAs [parts [minRules]]]]]]},
+ * where grammars is a comma-separated list of builtin grammars or {@code ALL}.
+ */
+public final class SubstreamBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        String datasetName = args.length > 0 ? args[0] : "friemel-modified";
+        String grammarNames = args.length > 1 ? args[1] : "G6B";
+        int minLength = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int maxRNAs = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int parts = args.length > 4 ? Integer.parseInt(args[4]) : SubstreamArchive.DEFAULT_PARTS;
+        int minRules = args.length > 5 ? Integer.parseInt(args[5]) : SubstreamArchive.DEFAULT_MIN_SUBSTREAM_RULES;
+
+        BenchmarkRNAs selected = BenchmarkRNAs.load(datasetName, minLength, Integer.MAX_VALUE, maxRNAs);
+        List<RNAWithStructure> rnas = selected.rnas;
+        long bases = selected.bases;
+        System.out.println(parts + " parts, at least " + minRules + " rules per substream");
+
+        for (SampleGrammar sampleGrammar : AllGrammars.getGrammarsFromCmdLine(grammarNames, true)) {
+            RNAGrammar grammar = sampleGrammar.getGrammar();
+            CachingEncoder encoder = new CachingEncoder(grammar);
+            StaticRuleProbModel model = selected.laPlaceModel(grammar, encoder);
+
+            System.out.println(sampleGrammar.getName() + ":");
+            report("static", encoder, grammar, rnas, bases, () -> model, parts, minRules);
+            report("adaptive", encoder, grammar, rnas, bases,
+                    () -> new AdaptiveRuleProbModel(grammar), parts, minRules);
+        }
+    }
+
+    private static void report(String label, CachingEncoder encoder, RNAGrammar grammar,
+                               List<RNAWithStructure> rnas, long bases,
+                               Supplier<? extends IndexedRuleProbModel> newModel,
+                               int parts, int minRules) throws Exception {
+        List<byte[]> single = new ArrayList<>(), split = new ArrayList<>();
+        long singleBytes = 0, splitBytes = 0, substreams = 0;
+        for (RNAWithStructure rna : rnas) {
+            byte[] e = NayukiEncodeRunner.encode(encoder, rna, newModel.get());
+            single.add(e);
+            singleBytes += e.length;
+            e = SubstreamArchive.encode(encoder, rna, grammar, newModel, parts, minRules);
+            split.add(e);
+            splitBytes += e.length;
+            substreams += SubstreamArchive.substreamStarts(encoder.leftmostDerivationFor(rna), parts, minRules).length;
+        }
+
+        // warm-up
+        for (int r = 0; r < RUNS; r++) {
+            for (byte[] e : single) NayukiDecodeRunner.decode(e, newModel.get(), grammar.startSymbol);
+            for (byte[] e : split) SubstreamArchive.decode(e, grammar, newModel, r % 2 == 0);
+        }
+        long t0 = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+            for (byte[] e : single) NayukiDecodeRunner.decode(e, newModel.get(), grammar.startSymbol);
+        long t1 = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+            for (byte[] e : split) SubstreamArchive.decode(e, grammar, newModel, false);
+        long t2 = System.nanoTime();
+        for (int r = 0; r < RUNS; r++)
+            for (byte[] e : split) SubstreamArchive.decode(e, grammar, newModel, true);
+        long t3 = System.nanoTime();
+
+        System.out.printf("  %-16s: %d substreams; %d -> %d bytes (%+.2f%%), %.4f -> %.4f bits per base%n",
+                label, substreams, singleBytes, splitBytes, 100.0 * (splitBytes - singleBytes) / singleBytes,
+                8.0 * singleBytes / bases, 8.0 * splitBytes / bases);
+        System.out.printf("  %-16s  decode single %8.1f ms   split %8.1f ms   split parallel %8.1f ms%n",
+                "", (t1 - t0) / 1e6 / RUNS, (t2 - t1) / 1e6 / RUNS, (t3 - t2) / 1e6 / RUNS);
+    }
+
+    private SubstreamBenchmark() {}
+}
@@ -7,7 +7,7 @@ import compression.data.Dataset;
 import compression.data.FolderBasedDataset;
 import compression.grammar.*;
 import compression.parser.GrammarReaderNWriter;
-import compression.parser.SRFParser;
+import compression.parser.CompiledSRFParser;
 import compression.util.MyMultimap;
 
 import java.io.BufferedWriter;
@@ -106,11 +106,8 @@ public class ExhaustiveGrammarExplorer extends AbstractGrammarExplorer {
 			try {
 				ssg = grammarFor(SSI.next(), name);
 				// Level 1 check: parses minimal-parsable?
-				SRFParser<Character> ssParser = new SRFParser<>(ssg);
-				for (List<Terminal<Character>> word : parsableDatasetWords) {
-					if (!ssParser.parsable(word))
-						continue next_grammar; // ignore this grammar
-				}
+				if (!new CompiledSRFParser<>(ssg).parsableAll(parsableDatasetWords))
+					continue next_grammar; // ignore this grammar
 				// Passed level 1
 				System.out.println("Grammar passed level 1 (" + (System.currentTimeMillis() - startTime) + " ms)");
 				System.out.println("grammar = " + ssg);
@@ -2,17 +2,14 @@ package compression.grammargenerator;
 
 import compression.data.CachedDataset;
 import compression.data.FolderBasedDataset;
-import compression.GenericRNAEncoderForPrecision;
 import compression.LocalConfig;
-import compression.arithmaticCoding.bigDecimalAc.ArithmeticEncoder;
-import compression.arithmaticCoding.bigDecimalAc.BitSizeOnlyArithmeticEncoder;
 import compression.data.Dataset;
 import compression.grammar.*;
 import compression.parser.CYKParser;
 import compression.parser.GrammarReaderNWriter;
 import compression.parser.SRFParser;
-import compression.samplegrammars.model.AdaptiveRuleProbModel;
-import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.LeftmostDerivation;
+import compression.samplegrammars.model.CodeLengthOracle;
 
 import java.io.*;
 import java.nio.channels.FileChannel;
@@ -259,12 +256,9 @@ public class ExhaustiveGrammarGenerator {
 
             for (RNAWithStructure RNAWS : dataset) {
                 ///////////*************compression using adaptive model
-                ArithmeticEncoder AE2 = new BitSizeOnlyArithmeticEncoder();
-                RuleProbModel RPMAdaptive = new AdaptiveRuleProbModel(g);
-                // GenericRNAEncoder GRAdaptive = new GenericRNAEncoder(RPMAdaptive, AE2, G.getGrammar(), G.getStartSymbol());
-                GenericRNAEncoderForPrecision GRAdaptive = new GenericRNAEncoderForPrecision(RPMAdaptive, AE2, g, g.startSymbol);
-                //String encodedStringAdaptive = GRAdaptive.encodeRNA(RNAWS);
-                 encodedLength = GRAdaptive.getPrecisionForRNACode(RNAWS);
+                // closed-form code length of the adaptive model, no need to simulate coding
+                encodedLength = CodeLengthOracle.encodedLength(
+                        CodeLengthOracle.adaptiveBits(g, LeftmostDerivation.rules(g, RNAWS)));
                 compression_ratio=(double)encodedLength/(double)RNAWS.getNumberOfBases();
                 System.out.println(compression_ratio+" "+g.name);
                 //System.exit(0);
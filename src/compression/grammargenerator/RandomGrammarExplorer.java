@@ -9,7 +9,7 @@ import compression.grammar.RNAWithStructure;
 import compression.grammar.Rule;
 import compression.grammar.SecondaryStructureGrammar;
 import compression.grammar.Terminal;
-import compression.parser.SRFParser;
+import compression.parser.CompiledSRFParser;
 import compression.util.MyMultimap;
 
 import java.io.BufferedWriter;
@@ -165,11 +165,8 @@ public class RandomGrammarExplorer extends AbstractGrammarExplorer {
 			System.out.println("\tgrammar " + (nGrammars) + " generated (" + (System.currentTimeMillis() - startTime) + " ms)");
 			try {
 				// Level 1 check: parses minimal-parsable?
-				SRFParser<Character> ssParser = new SRFParser<>(grammar);
-				for (List<Terminal<Character>> word : parsableDatasetWords) {
-					if (!ssParser.parsable(word))
-						continue next_grammar; // ignore this grammar
-				}
+				if (!new CompiledSRFParser<>(grammar).parsableAll(parsableDatasetWords))
+					continue next_grammar; // ignore this grammar
 				// Passed level 1
 				System.out.println("Grammar passed level 1 (" + (System.currentTimeMillis() - startTime) + " ms)");
 				System.out.println("grammar = " + grammar);
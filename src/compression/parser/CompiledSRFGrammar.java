@@ -0,0 +1,203 @@
+package compression.parser;
+
+import compression.grammar.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A grammar in SRF normal form compiled into flat, immutable rule tables.
+ * <p>
+ * All nonterminals, terminals and rules are replaced by dense indices, and the rules of
+ * each SRF type are stored as parallel {@code int} arrays, so that a parser's fill loop
+ * only touches primitive arrays and never hashes a {@link Rule} or {@link NonTerminal}.
+ * <p>
+ * Compiling is done once per grammar: instances are cached by the start symbol and the rules
+ * in iteration order, compared with equals, see {@link #of(Grammar)}; terminals that only
+ * print the same do not share tables.
+ * The rule order within each type is the same as in {@link SRFParser}, so that parsers
+ * using these tables break ties exactly as {@link SRFParser} does.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class CompiledSRFGrammar {
+
+	private static final Map<List<Object>, CompiledSRFGrammar> CACHE = new ConcurrentHashMap<>();
+
+	/** Upper bound on the number of cached grammars; the explorers compile millions of grammars. */
+	private static final int MAX_CACHE_SIZE = 1024;
+
+	/** All rules of the grammar; a rule's index into this array is used throughout. */
+	public final Rule[] rules;
+	/** Nonterminals by index; the start symbol has index {@link #startSymbol}. */
+	public final NonTerminal[] nonTerminals;
+	/** Terminals by index. */
+	public final Terminal<?>[] terminals;
+	public final int startSymbol;
+
+	/** type 1 Ai→ Aj Al */
+	final int[] type1Lhs, type1Rhs1, type1Rhs2, type1Rule;
+	/** type2 Ai → . */
+	final int[] type2Lhs, type2Terminal, type2Rule;
+	/** type 3 Ai →(Aj) */
+	final int[] type3Lhs, type3Inner, type3Open, type3Close, type3Rule;
+	/** type4 Ai→ Aj    j<i ; sorted by lhs so that chains are resolved in one pass */
+	final int[] type4Lhs, type4Rhs, type4Rule;
+
+	/** SRF type of each rule, by rule index */
+	final SRFNormalForm.RuleType[] ruleTypes;
+	/** position of each rule in the table of its type, by rule index */
+	final int[] positionInType;
+
+	/**
+	 * @return the compiled tables for the given grammar, from the cache if a grammar
+	 * with identical rules has been compiled before.
+	 * @throws IllegalArgumentException if the grammar is not in SRF normal form
+	 */
+	public static CompiledSRFGrammar of(final Grammar<?> grammar) {
+		final List<Object> key = keyOf(grammar);
+		CompiledSRFGrammar compiled = CACHE.get(key);
+		if (compiled == null) {
+			compiled = new CompiledSRFGrammar(grammar);
+			if (CACHE.size() >= MAX_CACHE_SIZE) CACHE.clear();
+			CACHE.putIfAbsent(key, compiled);
+		}
+		return compiled;
+	}
+
+	/** The start symbol followed by the rules in iteration order, which fixes the rule indices */
+	static List<Object> keyOf(final Grammar<?> grammar) {
+		List<Object> key = new ArrayList<>(grammar.getAllRules().size() + 1);
+		key.add(grammar.getStartSymbol());
+		key.addAll(grammar.getAllRules());
+		return key;
+	}
+
+	private CompiledSRFGrammar(final Grammar<?> grammar) {
+		this.rules = grammar.getAllRules().toArray(new Rule[0]);
+
+		// nonterminal indices: start symbol first, as in SRFParser
+		Map<NonTerminal, Integer> ntIndex = new HashMap<>();
+		List<NonTerminal> nts = new ArrayList<>();
+		nts.add(grammar.getStartSymbol());
+		for (NonTerminal nt : grammar.getNonTerminals())
+			if (!nt.equals(grammar.getStartSymbol())) nts.add(nt);
+		for (int i = 0; i < nts.size(); i++) ntIndex.put(nts.get(i), i);
+		this.nonTerminals = nts.toArray(new NonTerminal[0]);
+		this.startSymbol = 0;
+
+		List<Terminal<?>> ts = new ArrayList<>();
+		this.ruleTypes = new SRFNormalForm.RuleType[rules.length];
+		this.positionInType = new int[rules.length];
+		List<Integer> type1 = new ArrayList<>(), type2 = new ArrayList<>(),
+				type3 = new ArrayList<>(), type4 = new ArrayList<>();
+		for (int r = 0; r < rules.length; r++) {
+			Rule rule = rules[r];
+			ruleTypes[r] = typeOf(rule);
+			switch (ruleTypes[r]) {
+				case TYPE_I: type1.add(r); break;
+				case TYPE_II: type2.add(r); break;
+				case TYPE_III: type3.add(r); break;
+				case TYPE_IV: type4.add(r); break;
+			}
+			for (Category c : rule.right)
+				if (Category.isTerminal(c) && !ts.contains(c)) ts.add((Terminal<?>) c);
+		}
+		this.terminals = ts.toArray(new Terminal<?>[0]);
+
+		// Sort type 4 rules in order of the LHS (stable, as in SRFParser)
+		List<String> sortedNonTerminals = new ArrayList<>();
+		for (Rule rule : rules) sortedNonTerminals.add(rule.left.toString());
+		Collections.sort(sortedNonTerminals);
+		type4.sort(Comparator.comparingInt(r -> sortedNonTerminals.indexOf(rules[r].left.toString())));
+		for (int r : type4) {
+			if (sortedNonTerminals.indexOf(rules[r].left.toString()) <= sortedNonTerminals.indexOf(rules[r].right[0].toString()))
+				throw new IllegalArgumentException("Error found in type 4 rule: " + rules[r] + " rule is not in SRF form");
+		}
+
+		type1Lhs = new int[type1.size()];
+		type1Rhs1 = new int[type1.size()];
+		type1Rhs2 = new int[type1.size()];
+		type1Rule = new int[type1.size()];
+		for (int i = 0; i < type1.size(); i++) {
+			Rule rule = rules[type1.get(i)];
+			type1Lhs[i] = ntIndex.get(rule.left);
+			type1Rhs1[i] = ntIndex.get((NonTerminal) rule.right[0]);
+			type1Rhs2[i] = ntIndex.get((NonTerminal) rule.right[1]);
+			type1Rule[i] = type1.get(i);
+			positionInType[type1.get(i)] = i;
+		}
+		type2Lhs = new int[type2.size()];
+		type2Terminal = new int[type2.size()];
+		type2Rule = new int[type2.size()];
+		for (int i = 0; i < type2.size(); i++) {
+			Rule rule = rules[type2.get(i)];
+			type2Lhs[i] = ntIndex.get(rule.left);
+			type2Terminal[i] = ts.indexOf(rule.right[0]);
+			type2Rule[i] = type2.get(i);
+			positionInType[type2.get(i)] = i;
+		}
+		type3Lhs = new int[type3.size()];
+		type3Inner = new int[type3.size()];
+		type3Open = new int[type3.size()];
+		type3Close = new int[type3.size()];
+		type3Rule = new int[type3.size()];
+		for (int i = 0; i < type3.size(); i++) {
+			Rule rule = rules[type3.get(i)];
+			type3Lhs[i] = ntIndex.get(rule.left);
+			type3Inner[i] = ntIndex.get((NonTerminal) rule.right[1]);
+			type3Open[i] = ts.indexOf(rule.right[0]);
+			type3Close[i] = ts.indexOf(rule.right[2]);
+			type3Rule[i] = type3.get(i);
+			positionInType[type3.get(i)] = i;
+		}
+		type4Lhs = new int[type4.size()];
+		type4Rhs = new int[type4.size()];
+		type4Rule = new int[type4.size()];
+		for (int i = 0; i < type4.size(); i++) {
+			Rule rule = rules[type4.get(i)];
+			type4Lhs[i] = ntIndex.get(rule.left);
+			type4Rhs[i] = ntIndex.get((NonTerminal) rule.right[0]);
+			type4Rule[i] = type4.get(i);
+			positionInType[type4.get(i)] = i;
+		}
+	}
+
+	/** Rule types as checked by {@link SRFParser}, i.e., without the alphabetic check of type 4 rules. */
+	private static SRFNormalForm.RuleType typeOf(final Rule rule) {
+		if (rule.right.length == 1) {
+			return Category.isTerminal(rule.right[0]) ? SRFNormalForm.RuleType.TYPE_II : SRFNormalForm.RuleType.TYPE_IV;
+		} else if (rule.right.length == 2) {
+			if (!Category.isTerminal(rule.right[0]) && !Category.isTerminal(rule.right[1]))
+				return SRFNormalForm.RuleType.TYPE_I;
+		} else if (rule.right.length == 3) {
+			if (Category.isTerminal(rule.right[0]) && !Category.isTerminal(rule.right[1]) && Category.isTerminal(rule.right[2]))
+				return SRFNormalForm.RuleType.TYPE_III;
+		}
+		throw new IllegalArgumentException("Error found in rule: " + rule + " rule is not in SRF form");
+	}
+
+	public int nNonTerminals() {
+		return nonTerminals.length;
+	}
+
+	/**
+	 * @return index of the terminal equal to c, or -1 if c does not occur in the grammar.
+	 * Uses {@link Object#equals(Object)} (and not hashing), since terminals such as
+	 * {@link PairOfCharTerminal} compare bases case-insensitively.
+	 */
+	public int terminalIndexOf(final Terminal<?> c) {
+		for (int i = 0; i < terminals.length; i++)
+			if (terminals[i].equals(c)) return i;
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledSRFGrammar(" +
+				"nRules=" + rules.length +
+				", nNonTerminals=" + nonTerminals.length +
+				", nTerminals=" + terminals.length +
+				')';
+	}
+}
@@ -0,0 +1,565 @@
+package compression.parser;
+
+import compression.grammar.*;
+import compression.grammargenerator.UnparsableException;
+import compression.samplegrammars.model.RuleProbModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Viterbi parser for grammars in SRF normal form that works on the
+ * {@link CompiledSRFGrammar compiled rule tables} of its grammar.
+ * <p>
+ * Computes the same derivations as {@link SRFParser} (including the way ties are broken),
+ * but the fill loop only works on primitive arrays: rule probabilities are looked up once
+ * at construction, the chart only stores the (n+1 choose 2) cells for spans that fit into
+ * the word, and the compiled tables are shared by all parsers for the same grammar.
+ * <p>
+ * The rule probability model is queried once per rule at construction; it must therefore
+ * be a static model.
+ * <p>
+ * Scores can be kept in reduced precision, see {@link ScoreMode}, when only the
+ * derivation and not its exact probability is needed.
+ * <p>
+ * For long RNAs, the parser can be restricted to local structure by a maximal span W:
+ * pairs then span at most W bases, and above the band of spans of length at most W,
+ * only prefixes and suffixes of the word are derived, i.e., the exterior level is a
+ * chain of segments of length at most W. The chart then has O(nW) cells,
+ * and filling it takes O(nW<sup>2</sup>) time.
+ * <p>
+ * The chart arrays are reused for the next word when they are large enough;
+ * {@link #parsableAll(List)} and {@link #leftmostDerivationsFor(List)} parse many words
+ * grouped by length to make the most of this.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class CompiledSRFParser<T> implements StochasticParser<T> {
+
+	public static final int NO_RULE = -1;
+
+	/**
+	 * How scores of chart cells are stored.
+	 * All modes compute a most likely derivation; they differ only in how near-ties are resolved.
+	 */
+	public enum ScoreMode {
+		/** ln-probabilities as {@code double}, exactly as {@link SRFParser} */
+		DOUBLE,
+		/** ln-probabilities as {@code float}; half the memory of {@link #DOUBLE} */
+		FLOAT,
+		/**
+		 * costs -ln(p) as fixed-point {@code int} with {@link #FIXED_POINT_FRACTION_BITS} fractional bits,
+		 * combined by integer min-plus.
+		 * Supports derivations with ln-probability down to about -2^(31-FIXED_POINT_FRACTION_BITS).
+		 */
+		FIXED_POINT
+	}
+
+	public static final int FIXED_POINT_FRACTION_BITS = 12;
+
+	/** maxSpan value to parse without banding */
+	public static final int UNBOUNDED_SPAN = 0;
+	/** cost of rules with probability 0 */
+	public static final int INFINITE_COST = Integer.MAX_VALUE;
+
+	private final Grammar<T> grammar;
+	private final CompiledSRFGrammar tables;
+
+	private final ScoreMode scoreMode;
+	/** maximal span of type 3 pairs and of non-exterior subtrees, or {@link #UNBOUNDED_SPAN} */
+	private final int maxSpan;
+
+	/** ln(p) for the probability p of each rule, by rule index */
+	private final double[] ruleLogProbs;
+	/** ruleLogProbs as float, or null */
+	private final float[] ruleLogProbsF;
+	/** ruleLogProbs as fixed-point costs, or null */
+	private final int[] ruleCosts;
+
+	/** length of the word in the current chart */
+	private int n;
+	/** spans of length at most band are stored for all starts; longer spans only as prefix or suffix */
+	private int band;
+	/** rowStart[l] is the number of the first cell (l,1) for spans of length l */
+	private int[] rowStart;
+	/** terminal index of each position in the current word, 1-based */
+	private int[] word;
+
+	/** cell scores; only the array for the score mode is used */
+	private double[] logProb;
+	private float[] logProbF;
+	private int[] cost;
+	private int[] backRule;
+	private int[] backSplit;
+
+	public CompiledSRFParser(final Grammar<T> grammar) {
+		this(grammar, RuleProbModel.DONT_CARE);
+	}
+
+	public CompiledSRFParser(final Grammar<T> grammar, final RuleProbModel ruleProbModel) {
+		this(grammar, ruleProbModel, ScoreMode.DOUBLE);
+	}
+
+	public CompiledSRFParser(final Grammar<T> grammar, final RuleProbModel ruleProbModel, final ScoreMode scoreMode) {
+		this(grammar, ruleProbModel, scoreMode, UNBOUNDED_SPAN);
+	}
+
+	/**
+	 * @param maxSpan if not {@link #UNBOUNDED_SPAN}, only derivations are considered where every
+	 *                subtree spanning more than maxSpan terminals derives a prefix or a suffix
+	 *                of the word, and type 3 rules (pairs) span at most maxSpan terminals.
+	 */
+	public CompiledSRFParser(final Grammar<T> grammar, final RuleProbModel ruleProbModel, final ScoreMode scoreMode,
+							 final int maxSpan) {
+		Objects.requireNonNull(grammar);
+		Objects.requireNonNull(ruleProbModel);
+		Objects.requireNonNull(scoreMode);
+		if (maxSpan < 0) throw new IllegalArgumentException("maxSpan must not be negative: " + maxSpan);
+		this.grammar = grammar;
+		this.scoreMode = scoreMode;
+		this.maxSpan = maxSpan;
+		this.tables = CompiledSRFGrammar.of(grammar);
+		this.ruleLogProbs = new double[tables.rules.length];
+		for (int r = 0; r < tables.rules.length; r++) {
+			double lnP;
+			try {
+				lnP = ruleProbModel.getIntervalFor(tables.rules[r]).getLnLength();
+			} catch (IllegalArgumentException e) {
+				// rule without probability in model, e.g. never seen in training; cannot be used
+				lnP = Double.NEGATIVE_INFINITY;
+			}
+			ruleLogProbs[r] = lnP;
+		}
+		this.ruleLogProbsF = scoreMode == ScoreMode.FLOAT ? new float[ruleLogProbs.length] : null;
+		this.ruleCosts = scoreMode == ScoreMode.FIXED_POINT ? new int[ruleLogProbs.length] : null;
+		for (int r = 0; r < ruleLogProbs.length; r++) {
+			if (ruleLogProbsF != null) ruleLogProbsF[r] = (float) ruleLogProbs[r];
+			if (ruleCosts != null) ruleCosts[r] = toCost(ruleLogProbs[r]);
+		}
+	}
+
+	static int toCost(final double lnP) {
+		if (lnP == Double.NEGATIVE_INFINITY) return INFINITE_COST;
+		return (int) Math.round(-lnP * (1 << FIXED_POINT_FRACTION_BITS));
+	}
+
+	@Override
+	public Grammar<T> getGrammar() {
+		return grammar;
+	}
+
+	public CompiledSRFGrammar getCompiledGrammar() {
+		return tables;
+	}
+
+	public ScoreMode getScoreMode() {
+		return scoreMode;
+	}
+
+	public int getMaxSpan() {
+		return maxSpan;
+	}
+
+	@Override
+	public boolean parsable(final List<Terminal<T>> word) {
+		if (word.isEmpty()) return false;
+		fillTable(word);
+		return backRule[index(n, 1, tables.startSymbol)] != NO_RULE;
+	}
+
+	@Override
+	public List<Rule> leftmostDerivationFor(final List<Terminal<T>> word) throws UnparsableException {
+		return mostLikelyLeftmostDerivationFor(word);
+	}
+
+	@Override
+	public List<Rule> mostLikelyLeftmostDerivationFor(final List<Terminal<T>> word) throws UnparsableException {
+		if (word.isEmpty()) throw new UnparsableException();
+		fillTable(word);
+		return backtraceDerivation();
+	}
+
+	/**
+	 * Checks whether all given words are parsable.
+	 * Words are parsed grouped by length, shortest first, in one chart;
+	 * parsing stops at the first word that is not parsable.
+	 */
+	public boolean parsableAll(final List<? extends List<Terminal<T>>> words) {
+		for (int i : indicesByLength(words))
+			if (!parsable(words.get(i))) return false;
+		return true;
+	}
+
+	/**
+	 * Computes the most likely leftmost derivations for all given words.
+	 * Words are parsed grouped by length in one chart.
+	 *
+	 * @return the derivations, in the order of words
+	 * @throws UnparsableException if any of the words is not parsable; its message gives the
+	 *                              index of the first such word found
+	 */
+	public List<List<Rule>> leftmostDerivationsFor(final List<? extends List<Terminal<T>>> words)
+			throws UnparsableException {
+		List<List<Rule>> result = new ArrayList<>(Collections.nCopies(words.size(), null));
+		for (int i : indicesByLength(words)) {
+			try {
+				result.set(i, mostLikelyLeftmostDerivationFor(words.get(i)));
+			} catch (UnparsableException e) {
+				throw new UnparsableException("Word " + i + " is not parsable", e);
+			}
+		}
+		return result;
+	}
+
+	private static int[] indicesByLength(final List<? extends List<?>> words) {
+		return IntStream.range(0, words.size()).boxed()
+				.sorted(Comparator.comparingInt(i -> words.get(i).size()))
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	@Override
+	public double logProbabilityOf(final List<Terminal<T>> word) {
+		if (word.isEmpty()) return Double.NEGATIVE_INFINITY;
+		fillTable(word);
+		int start = index(n, 1, tables.startSymbol);
+		if (backRule[start] == NO_RULE) return Double.NEGATIVE_INFINITY;
+		switch (scoreMode) {
+			case FLOAT: return logProbF[start];
+			case FIXED_POINT: return -cost[start] / (double) (1 << FIXED_POINT_FRACTION_BITS);
+			default: return logProb[start];
+		}
+	}
+
+	private int index(int l, int s, int nt) {
+		return cellIndex(l, s) * tables.nNonTerminals() + nt;
+	}
+
+	/**
+	 * @return number of the chart cell for the span of length l starting at s,
+	 * or -1 if the cell lies outside the band and is not stored.
+	 */
+	private int cellIndex(int l, int s) {
+		if (l <= band) return rowStart[l] + s - 1;
+		if (s == 1) return rowStart[l];
+		if (s + l - 1 == n) return rowStart[l] + 1;
+		return -1;
+	}
+
+	/** next start position after s of a stored cell for spans of length l */
+	private int nextStart(int l, int s) {
+		if (l <= band) return s + 1;
+		if (s == 1 && l < n) return n - l + 1;
+		return n + 1;
+	}
+
+	/**
+	 * Smallest split p for span (l,s), such that both parts are stored.
+	 * A prefix outside the band only combines with a right part inside the band.
+	 */
+	private int firstSplit(int l, int s) {
+		if (l <= band || l == n || s != 1) return 1;
+		return Math.max(1, l - band);
+	}
+
+	/**
+	 * Largest split p for span (l,s), such that both parts are stored.
+	 * A suffix outside the band only combines with a left part inside the band.
+	 */
+	private int lastSplit(int l, int s) {
+		if (l <= band || l == n || s == 1) return l - 1;
+		return Math.min(l - 1, band);
+	}
+
+	/**
+	 * Prepares the chart for a word of length n.
+	 * The arrays of the previous word are reused if they are large enough,
+	 * and the row layout is kept if n is the same as before.
+	 */
+	private void allocate(final int n) {
+		if (rowStart == null || n != this.n) {
+			this.n = n;
+			this.band = maxSpan == UNBOUNDED_SPAN ? n : Math.min(maxSpan, n);
+			rowStart = new int[n + 2];
+			for (int l = 1; l <= n; l++)
+				rowStart[l + 1] = rowStart[l] + (l <= band ? n - l + 1 : l == n ? 1 : 2);
+		}
+		int size = rowStart[n + 1] * tables.nNonTerminals();
+		if (backRule == null || backRule.length < size) {
+			switch (scoreMode) {
+				case DOUBLE: logProb = new double[size]; break;
+				case FLOAT: logProbF = new float[size]; break;
+				case FIXED_POINT: cost = new int[size]; break;
+			}
+			backRule = new int[size];
+			backSplit = new int[size];
+		}
+		switch (scoreMode) {
+			case DOUBLE: Arrays.fill(logProb, 0, size, Double.NEGATIVE_INFINITY); break; // log(0)
+			case FLOAT: Arrays.fill(logProbF, 0, size, Float.NEGATIVE_INFINITY); break;
+			case FIXED_POINT: Arrays.fill(cost, 0, size, INFINITE_COST); break;
+		}
+		Arrays.fill(backRule, 0, size, NO_RULE);
+		Arrays.fill(backSplit, 0, size, SRFParser.INVALID_SPLIT);
+		if (word == null || word.length < n + 1) word = new int[n + 1];
+	}
+
+	private void fillTable(final List<Terminal<T>> w) {
+		allocate(w.size());
+		for (int i = 1; i <= n; i++) word[i] = tables.terminalIndexOf(w.get(i - 1));
+
+		// substrings of length 1; as in SRFParser, a later rule A->a overwrites an earlier one.
+		// Rules with probability 0 are skipped, so that their cells stay unparsable.
+		for (int s = 1; s <= n; s++) {
+			int base = index(1, s, 0);
+			for (int i = 0; i < tables.type2Rule.length; i++) {
+				int r = tables.type2Rule[i];
+				if (tables.type2Terminal[i] == word[s] && ruleLogProbs[r] != Double.NEGATIVE_INFINITY) {
+					int a = base + tables.type2Lhs[i];
+					switch (scoreMode) {
+						case DOUBLE: logProb[a] = ruleLogProbs[r]; break;
+						case FLOAT: logProbF[a] = ruleLogProbsF[r]; break;
+						case FIXED_POINT: cost[a] = ruleCosts[r]; break;
+					}
+					backRule[a] = r;
+					backSplit[a] = SRFParser.INVALID_SPLIT;
+				}
+			}
+		}
+
+		switch (scoreMode) {
+			case DOUBLE: fillDouble(); break;
+			case FLOAT: fillFloat(); break;
+			case FIXED_POINT: fillFixedPoint(); break;
+		}
+	}
+
+	// The three fill methods below are identical up to the type of the scores;
+	// they are kept separate so that the inner loops only touch primitive arrays of one type.
+
+	private void fillDouble() {
+		final int[] t1Lhs = tables.type1Lhs, t1Rhs1 = tables.type1Rhs1, t1Rhs2 = tables.type1Rhs2, t1Rule = tables.type1Rule;
+		final int[] t3Lhs = tables.type3Lhs, t3Inner = tables.type3Inner, t3Open = tables.type3Open,
+				t3Close = tables.type3Close, t3Rule = tables.type3Rule;
+		final int[] t4Lhs = tables.type4Lhs, t4Rhs = tables.type4Rhs, t4Rule = tables.type4Rule;
+		final double[] ruleScore = ruleLogProbs, score = logProb;
+
+		for (int l = 1; l <= n; l++) {//l is the span
+			for (int s = 1; s <= n - l + 1; s = nextStart(l, s)) {//s is the start of span
+				final int cell = index(l, s, 0);
+				for (int p = firstSplit(l, s), last = lastSplit(l, s); p <= last; p++) {//p is the partitions of the span
+					final int left = index(p, s, 0), right = index(l - p, s + p, 0);
+					// type 1 Ai→ Aj Al
+					for (int i = 0; i < t1Rule.length; i++) {
+						int b = left + t1Rhs1[i], c = right + t1Rhs2[i];
+						if (backRule[b] != NO_RULE && backRule[c] != NO_RULE) {
+							int a = cell + t1Lhs[i];
+							double prob = ruleScore[t1Rule[i]] + score[b] + score[c];
+							if (prob > score[a]) {
+								backRule[a] = t1Rule[i];
+								backSplit[a] = p;
+								score[a] = prob;
+							}
+						}
+					}
+				}
+				// type 3 Ai →(Aj)
+				if (l > 2 && l <= band && t3Rule.length > 0) {
+					final int inner = index(l - 2, s + 1, 0);
+					final int open = word[s], close = word[s + l - 1];
+					for (int i = 0; i < t3Rule.length; i++) {
+						int b = inner + t3Inner[i];
+						if (backRule[b] != NO_RULE && t3Open[i] == open && t3Close[i] == close) {
+							int a = cell + t3Lhs[i];
+							double prob = ruleScore[t3Rule[i]] + score[b];
+							if (prob > score[a]) {
+								backRule[a] = t3Rule[i];
+								backSplit[a] = 1;
+								score[a] = prob;
+							}
+						}
+					}
+				}
+				// type4 Ai→ Aj    j<i
+				for (int i = 0; i < t4Rule.length; i++) {
+					int b = cell + t4Rhs[i];
+					if (backRule[b] != NO_RULE) {
+						int a = cell + t4Lhs[i];
+						double prob = ruleScore[t4Rule[i]] + score[b];
+						if (prob > score[a]) {
+							backRule[a] = t4Rule[i];
+							backSplit[a] = 1;
+							score[a] = prob;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void fillFloat() {
+		final int[] t1Lhs = tables.type1Lhs, t1Rhs1 = tables.type1Rhs1, t1Rhs2 = tables.type1Rhs2, t1Rule = tables.type1Rule;
+		final int[] t3Lhs = tables.type3Lhs, t3Inner = tables.type3Inner, t3Open = tables.type3Open,
+				t3Close = tables.type3Close, t3Rule = tables.type3Rule;
+		final int[] t4Lhs = tables.type4Lhs, t4Rhs = tables.type4Rhs, t4Rule = tables.type4Rule;
+		final float[] ruleScore = ruleLogProbsF, score = logProbF;
+
+		for (int l = 1; l <= n; l++) {
+			for (int s = 1; s <= n - l + 1; s = nextStart(l, s)) {
+				final int cell = index(l, s, 0);
+				for (int p = firstSplit(l, s), last = lastSplit(l, s); p <= last; p++) {
+					final int left = index(p, s, 0), right = index(l - p, s + p, 0);
+					for (int i = 0; i < t1Rule.length; i++) {
+						int b = left + t1Rhs1[i], c = right + t1Rhs2[i];
+						if (backRule[b] != NO_RULE && backRule[c] != NO_RULE) {
+							int a = cell + t1Lhs[i];
+							float prob = ruleScore[t1Rule[i]] + score[b] + score[c];
+							if (prob > score[a]) {
+								backRule[a] = t1Rule[i];
+								backSplit[a] = p;
+								score[a] = prob;
+							}
+						}
+					}
+				}
+				if (l > 2 && l <= band && t3Rule.length > 0) {
+					final int inner = index(l - 2, s + 1, 0);
+					final int open = word[s], close = word[s + l - 1];
+					for (int i = 0; i < t3Rule.length; i++) {
+						int b = inner + t3Inner[i];
+						if (backRule[b] != NO_RULE && t3Open[i] == open && t3Close[i] == close) {
+							int a = cell + t3Lhs[i];
+							float prob = ruleScore[t3Rule[i]] + score[b];
+							if (prob > score[a]) {
+								backRule[a] = t3Rule[i];
+								backSplit[a] = 1;
+								score[a] = prob;
+							}
+						}
+					}
+				}
+				for (int i = 0; i < t4Rule.length; i++) {
+					int b = cell + t4Rhs[i];
+					if (backRule[b] != NO_RULE) {
+						int a = cell + t4Lhs[i];
+						float prob = ruleScore[t4Rule[i]] + score[b];
+						if (prob > score[a]) {
+							backRule[a] = t4Rule[i];
+							backSplit[a] = 1;
+							score[a] = prob;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/** min-plus over costs; rules and cells with cost {@link #INFINITE_COST} are never used */
+	private void fillFixedPoint() {
+		final int[] t1Lhs = tables.type1Lhs, t1Rhs1 = tables.type1Rhs1, t1Rhs2 = tables.type1Rhs2, t1Rule = tables.type1Rule;
+		final int[] t3Lhs = tables.type3Lhs, t3Inner = tables.type3Inner, t3Open = tables.type3Open,
+				t3Close = tables.type3Close, t3Rule = tables.type3Rule;
+		final int[] t4Lhs = tables.type4Lhs, t4Rhs = tables.type4Rhs, t4Rule = tables.type4Rule;
+		final int[] ruleCost = ruleCosts, cost = this.cost;
+
+		for (int l = 1; l <= n; l++) {
+			for (int s = 1; s <= n - l + 1; s = nextStart(l, s)) {
+				final int cell = index(l, s, 0);
+				for (int p = firstSplit(l, s), last = lastSplit(l, s); p <= last; p++) {
+					final int left = index(p, s, 0), right = index(l - p, s + p, 0);
+					for (int i = 0; i < t1Rule.length; i++) {
+						int b = left + t1Rhs1[i], c = right + t1Rhs2[i];
+						if (backRule[b] != NO_RULE && backRule[c] != NO_RULE && ruleCost[t1Rule[i]] != INFINITE_COST
+								&& cost[b] != INFINITE_COST && cost[c] != INFINITE_COST) {
+							int a = cell + t1Lhs[i];
+							int k = ruleCost[t1Rule[i]] + cost[b] + cost[c];
+							if (k < cost[a]) {
+								backRule[a] = t1Rule[i];
+								backSplit[a] = p;
+								cost[a] = k;
+							}
+						}
+					}
+				}
+				if (l > 2 && l <= band && t3Rule.length > 0) {
+					final int inner = index(l - 2, s + 1, 0);
+					final int open = word[s], close = word[s + l - 1];
+					for (int i = 0; i < t3Rule.length; i++) {
+						int b = inner + t3Inner[i];
+						if (backRule[b] != NO_RULE && t3Open[i] == open && t3Close[i] == close
+								&& ruleCost[t3Rule[i]] != INFINITE_COST && cost[b] != INFINITE_COST) {
+							int a = cell + t3Lhs[i];
+							int k = ruleCost[t3Rule[i]] + cost[b];
+							if (k < cost[a]) {
+								backRule[a] = t3Rule[i];
+								backSplit[a] = 1;
+								cost[a] = k;
+							}
+						}
+					}
+				}
+				for (int i = 0; i < t4Rule.length; i++) {
+					int b = cell + t4Rhs[i];
+					if (backRule[b] != NO_RULE && ruleCost[t4Rule[i]] != INFINITE_COST && cost[b] != INFINITE_COST) {
+						int a = cell + t4Lhs[i];
+						int k = ruleCost[t4Rule[i]] + cost[b];
+						if (k < cost[a]) {
+							backRule[a] = t4Rule[i];
+							backSplit[a] = 1;
+							cost[a] = k;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private List<Rule> backtraceDerivation() throws UnparsableException {
+		List<Rule> result = new ArrayList<>();
+		// explicit stack of (l, s, nt) triples; children are pushed right to left
+		int[] stack = new int[3 * (2 * n + 2)];
+		int top = 0;
+		stack[top++] = n;
+		stack[top++] = 1;
+		stack[top++] = tables.startSymbol;
+		while (top > 0) {
+			int nt = stack[--top], s = stack[--top], l = stack[--top];
+			int idx = index(l, s, nt);
+			int r = backRule[idx];
+			if (r == NO_RULE) throw new UnparsableException();
+			Rule rule = tables.rules[r];
+			result.add(rule);
+			if (top + 6 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+			switch (tables.ruleTypes[r]) {
+				case TYPE_I: { // A -> B C
+					int p = backSplit[idx];
+					int b = tables.type1Rhs1[tables.positionInType[r]];
+					int c = tables.type1Rhs2[tables.positionInType[r]];
+					stack[top++] = l - p; stack[top++] = s + p; stack[top++] = c;
+					stack[top++] = p; stack[top++] = s; stack[top++] = b;
+					break;
+				}
+				case TYPE_II: // A -> a
+					break;
+				case TYPE_III: // A -> (B)
+					stack[top++] = l - 2; stack[top++] = s + 1;
+					stack[top++] = tables.type3Inner[tables.positionInType[r]];
+					break;
+				case TYPE_IV: // A -> B
+					stack[top++] = l; stack[top++] = s;
+					stack[top++] = tables.type4Rhs[tables.positionInType[r]];
+					break;
+				default:
+					throw new IllegalStateException("Unknown rule type: " + rule);
+			}
+		}
+		return result;
+	}
+
+}
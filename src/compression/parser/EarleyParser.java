@@ -0,0 +1,219 @@
+package compression.parser;
+
+import compression.grammar.*;
+import compression.grammargenerator.UnparsableException;
+import compression.samplegrammars.model.RuleProbModel;
+
+import java.util.*;
+
+/**
+ * Viterbi variant of Earley's parser for arbitrary context-free grammars without
+ * epsilon rules; {@link Rule} does not allow empty right-hand sides anyway.
+ * <p>
+ * Unlike {@link SRFParser}, the grammar does not have to be in SRF normal form: right-hand
+ * sides can have any length and mix terminals and nonterminals. Hence grammars with long
+ * right-hand sides can be parsed directly, without the auxiliary nonterminals that
+ * {@link SecondaryStructureGrammar#splitLongRightHandSides(Collection)} introduces, and
+ * derivations are reported in the original rules.
+ * The item sets only contain dotted rules of the original grammar.
+ * <p>
+ * Each item stores the ln-probability of its best partial derivation and back pointers to it;
+ * when a completed item improves, it is propagated again, so that unit rules and ambiguous
+ * derivations get the most likely parse. As in {@link SRFParser}, ties are broken in favor of
+ * the derivation found first.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class EarleyParser<T> implements StochasticParser<T> {
+
+	private final Grammar<T> grammar;
+
+	private final Rule[] rules;
+	/** ln(p) for the probability p of each rule, by rule index */
+	private final double[] ruleLogProbs;
+	/** indices of the rules for each nonterminal */
+	private final Map<NonTerminal, int[]> rulesFor = new HashMap<>();
+	/** dottedRuleOffset[r] + dot is the id of the dotted rule r with dot before position dot */
+	private final int[] dottedRuleOffset;
+
+	/** item sets of the last parse; itemSets[j] contains the items ending at position j */
+	private List<ItemSet> itemSets;
+
+	public EarleyParser(final Grammar<T> grammar) {
+		this(grammar, RuleProbModel.DONT_CARE);
+	}
+
+	public EarleyParser(final Grammar<T> grammar, final RuleProbModel ruleProbModel) {
+		Objects.requireNonNull(grammar);
+		Objects.requireNonNull(ruleProbModel);
+		this.grammar = grammar;
+		this.rules = grammar.getAllRules().toArray(new Rule[0]);
+		this.ruleLogProbs = new double[rules.length];
+		this.dottedRuleOffset = new int[rules.length];
+		Map<NonTerminal, List<Integer>> byLhs = new HashMap<>();
+		int offset = 0;
+		for (int r = 0; r < rules.length; r++) {
+			double lnP;
+			try {
+				lnP = ruleProbModel.getIntervalFor(rules[r]).getLnLength();
+			} catch (IllegalArgumentException e) {
+				// rule without probability in model, e.g. never seen in training; cannot be used
+				lnP = Double.NEGATIVE_INFINITY;
+			}
+			ruleLogProbs[r] = lnP;
+			dottedRuleOffset[r] = offset;
+			offset += rules[r].right.length + 1;
+			byLhs.computeIfAbsent(rules[r].left, k -> new ArrayList<>()).add(r);
+		}
+		for (Map.Entry<NonTerminal, List<Integer>> e : byLhs.entrySet())
+			rulesFor.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	@Override
+	public Grammar<T> getGrammar() {
+		return grammar;
+	}
+
+	@Override
+	public boolean parsable(final List<Terminal<T>> word) {
+		return bestCompleteItem(word) != null;
+	}
+
+	@Override
+	public List<Rule> leftmostDerivationFor(final List<Terminal<T>> word) throws UnparsableException {
+		return mostLikelyLeftmostDerivationFor(word);
+	}
+
+	@Override
+	public List<Rule> mostLikelyLeftmostDerivationFor(final List<Terminal<T>> word) throws UnparsableException {
+		Item root = bestCompleteItem(word);
+		if (root == null) throw new UnparsableException();
+		return backtraceDerivation(root);
+	}
+
+	@Override
+	public double logProbabilityOf(final List<Terminal<T>> word) {
+		Item root = bestCompleteItem(word);
+		return root == null ? Double.NEGATIVE_INFINITY : root.logProb;
+	}
+
+	/** A dotted rule with its origin, and the best partial derivation found for it. */
+	private static final class Item {
+		final int rule, dot, origin;
+		double logProb;
+		/** item for the same rule with the dot one position to the left, or null if dot == 0 */
+		Item previous;
+		/** completed item for the nonterminal left of the dot, or null for terminals and dot == 0 */
+		Item child;
+
+		Item(final int rule, final int dot, final int origin) {
+			this.rule = rule;
+			this.dot = dot;
+			this.origin = origin;
+		}
+	}
+
+	private final class ItemSet {
+		final Map<Long, Item> items = new HashMap<>();
+		/** items waiting for a nonterminal, i.e., with that nonterminal right of the dot */
+		final Map<NonTerminal, List<Item>> waitingFor = new HashMap<>();
+		final ArrayDeque<Item> agenda = new ArrayDeque<>();
+
+		/**
+		 * Adds the item, or updates it if it exists with a smaller probability.
+		 * Changed items are put on the agenda.
+		 */
+		void relax(int rule, int dot, int origin, double logProb, Item previous, Item child) {
+			long key = (long) (dottedRuleOffset[rule] + dot) * (itemSets.size() + 1) + origin;
+			Item item = items.get(key);
+			if (item == null) {
+				item = new Item(rule, dot, origin);
+				items.put(key, item);
+				if (dot < rules[rule].right.length && Category.isNonTerminal(rules[rule].right[dot]))
+					waitingFor.computeIfAbsent((NonTerminal) rules[rule].right[dot], k -> new ArrayList<>()).add(item);
+			} else if (!(logProb > item.logProb)) {
+				return;
+			}
+			item.logProb = logProb;
+			item.previous = previous;
+			item.child = child;
+			agenda.add(item);
+		}
+	}
+
+	private Item bestCompleteItem(final List<Terminal<T>> word) {
+		if (word.isEmpty()) return null;
+		fillItemSets(word);
+		Item best = null;
+		for (Item item : itemSets.get(word.size()).items.values()) {
+			if (item.origin == 0 && item.dot == rules[item.rule].right.length
+					&& rules[item.rule].left.equals(grammar.getStartSymbol())
+					&& (best == null || item.logProb > best.logProb
+					|| item.logProb == best.logProb && item.rule < best.rule))
+				best = item;
+		}
+		return best;
+	}
+
+	private void fillItemSets(final List<Terminal<T>> word) {
+		final int n = word.size();
+		itemSets = new ArrayList<>(n + 1);
+		for (int j = 0; j <= n; j++) itemSets.add(new ItemSet());
+		predict(grammar.getStartSymbol(), 0);
+		for (int j = 0; j <= n; j++) {
+			ItemSet set = itemSets.get(j);
+			while (!set.agenda.isEmpty()) {
+				Item item = set.agenda.poll();
+				Category[] rhs = rules[item.rule].right;
+				if (item.dot == rhs.length) {
+					// complete
+					List<Item> waiting = itemSets.get(item.origin).waitingFor.get(rules[item.rule].left);
+					if (waiting == null) continue;
+					for (Item parent : waiting)
+						set.relax(parent.rule, parent.dot + 1, parent.origin,
+								parent.logProb + item.logProb, parent, item);
+				} else if (Category.isNonTerminal(rhs[item.dot])) {
+					predict((NonTerminal) rhs[item.dot], j);
+				}
+			}
+			if (j == n) break;
+			// scan; items of set j are final now
+			ItemSet next = itemSets.get(j + 1);
+			Terminal<T> a = word.get(j);
+			for (Item item : set.items.values()) {
+				Category[] rhs = rules[item.rule].right;
+				// Terminal.equals, not hashing; see PairOfCharTerminal
+				if (item.dot < rhs.length && Category.isTerminal(rhs[item.dot]) && rhs[item.dot].equals(a))
+					next.relax(item.rule, item.dot + 1, item.origin, item.logProb, item, null);
+			}
+		}
+	}
+
+	private void predict(final NonTerminal A, final int j) {
+		int[] rs = rulesFor.get(A);
+		if (rs == null) return;
+		ItemSet set = itemSets.get(j);
+		for (int r : rs) {
+			if (ruleLogProbs[r] == Double.NEGATIVE_INFINITY) continue;
+			long key = (long) dottedRuleOffset[r] * (itemSets.size() + 1) + j;
+			if (!set.items.containsKey(key)) set.relax(r, 0, j, ruleLogProbs[r], null, null);
+		}
+	}
+
+	private List<Rule> backtraceDerivation(final Item root) {
+		List<Rule> result = new ArrayList<>();
+		// explicit stack of completed items; children are pushed right to left
+		Deque<Item> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Item item = stack.pop();
+			result.add(rules[item.rule]);
+			for (Item i = item; i != null && i.dot > 0; i = i.previous)
+				if (i.child != null) stack.push(i.child);
+		}
+		return result;
+	}
+
+}
@@ -4,7 +4,7 @@ import compression.grammar.*;
 import compression.grammargenerator.UnparsableException;
 import compression.parser.CYKParser;
 import compression.parser.Parser;
-import compression.parser.SRFParser;
+import compression.parser.CompiledSRFParser;
 import compression.samplegrammars.model.RuleProbModel;
 
 import java.util.List;
@@ -34,7 +34,7 @@ public class LeftmostDerivation {
      * Convenience method that creates a throw-away parser for the given grammar and model.
      */
     public static List<Rule> rules(RNAGrammar grammar, RNAWithStructure RNA) {
-        return rules(new SRFParser<>(grammar, RuleProbModel.DONT_CARE), RNA);
+        return rules(new CompiledSRFParser<>(grammar, RuleProbModel.DONT_CARE), RNA);
     }
 
 
@@ -6,43 +6,107 @@
 package compression.samplegrammars;
 
 import compression.data.Dataset;
+import compression.grammar.PairOfChar;
 import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
 import compression.grammar.Rule;
+import compression.grammargenerator.UnparsableException;
+import compression.parser.CompiledSRFParser;
+import compression.samplegrammars.model.RuleContext;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collector;
 import java.util.stream.StreamSupport;
 
 /**
  * Compute the frequency of each rule in a grammar for a given dataset, starting with 1
  * (LaPlace smoothing).
  * For ambiguous grammars, no guarantee is made as to which derivation is counted.
+ * On request, the counts of the rules in each {@link RuleContext} are also collected,
+ * without smoothing.
+ * <p>
+ * The dataset is streamed in parallel; each part of the stream is parsed with its own parser
+ * and counted on its own, and the counts are merged once the parts are done.
  */
 public final class RuleCountsForGrammarLaPlace {
 
 	private final Map<Rule, Long> rulesToFrequency = new HashMap<>();
+	/** counts per context, or null if not collected */
+	private final Map<RuleContext, Map<Rule, Long>> contextsToFrequency;
 	private final RNAGrammar grammar;
 
 	public RuleCountsForGrammarLaPlace(RNAGrammar grammar, Dataset dataset) {
+		this(grammar, dataset, false);
+	}
+
+	/**
+	 * @param countContexts whether to collect the counts per context for {@link #contextCounts()}
+	 */
+	public RuleCountsForGrammarLaPlace(RNAGrammar grammar, Dataset dataset, boolean countContexts) {
 		this.grammar = grammar;
+		this.contextsToFrequency = countContexts ? new HashMap<>() : null;
 		initializeMap(this.grammar.getAllRules());
-		StreamSupport.stream(dataset.spliterator(), true).unordered().forEach((RNAWS) -> {
+		// RNAs are read and parsed one at a time, as the stream delivers them
+		Chunk all = StreamSupport.stream(dataset.spliterator(), true).unordered()
+				.collect(Collector.of(Chunk::new, Chunk::add, Chunk::addAll, Collector.Characteristics.UNORDERED));
+		merge(all.counts, all.contextCounts);
+	}
+
+	/** The counts of the RNAs of one part of the stream, with one parser (and chart) for all of them */
+	private final class Chunk {
+		private final CompiledSRFParser<PairOfChar> parser = new CompiledSRFParser<>(grammar);
+		private final Map<Rule, Long> counts = new HashMap<>();
+		private final Map<RuleContext, Map<Rule, Long>> contextCounts =
+				contextsToFrequency != null ? new HashMap<>() : null;
+
+		void add(RNAWithStructure RNAWS) {
+			List<Rule> derivation;
 			try {
-				List<Rule> rules = LeftmostDerivation.rules(this.grammar, RNAWS);
-				incrementMap(rules);
-			} catch (RuntimeException e) {
-				throw new RuntimeException(RNAWS.name + " HAS PARSING ISSUE with grammar: " + this.grammar, e);
+				derivation = parser.mostLikelyLeftmostDerivationFor(RNAWS.asTerminals());
+			} catch (UnparsableException | RuntimeException e) {
+				throw new RuntimeException(RNAWS.name + " HAS PARSING ISSUE with grammar: " + grammar, e);
 			}
-		});
+			for (Rule rule : derivation) counts.merge(rule, 1L, Long::sum);
+			if (contextCounts != null) countContexts(derivation, contextCounts);
+		}
+
+		Chunk addAll(Chunk other) {
+			other.counts.forEach((rule, count) -> counts.merge(rule, count, Long::sum));
+			if (contextCounts != null) mergeContextCounts(other.contextCounts, contextCounts);
+			return this;
+		}
 	}
 
 	public synchronized void incrementMap(List<Rule> listOfRules) {
 		listOfRules.forEach((rule) -> {
 			rulesToFrequency.replace(rule, rulesToFrequency.get(rule) + 1);
 		});
+		if (contextsToFrequency != null) countContexts(listOfRules, contextsToFrequency);
+	}
+
+	private static void countContexts(List<Rule> derivation, Map<RuleContext, Map<Rule, Long>> contextCounts) {
+		List<RuleContext> contexts = RuleContext.contextsOf(derivation);
+		for (int i = 0; i < derivation.size(); i++)
+			contextCounts.computeIfAbsent(contexts.get(i), c -> new HashMap<>())
+					.merge(derivation.get(i), 1L, Long::sum);
+	}
+
+	private static void mergeContextCounts(Map<RuleContext, Map<Rule, Long>> from,
+										   Map<RuleContext, Map<Rule, Long>> into) {
+		from.forEach((context, ruleCounts) -> {
+			Map<Rule, Long> total = into.computeIfAbsent(context, c -> new HashMap<>());
+			ruleCounts.forEach((rule, count) -> total.merge(rule, count, Long::sum));
+		});
+	}
+
+	/** Adds the counts of the whole dataset */
+	private synchronized void merge(Map<Rule, Long> counts, Map<RuleContext, Map<Rule, Long>> contextCounts) {
+		counts.forEach((rule, count) -> rulesToFrequency.merge(rule, count, Long::sum));
+		if (contextCounts != null) mergeContextCounts(contextCounts, contextsToFrequency);
 	}
 
 	public void initializeMap(Collection<Rule> rules) {
@@ -55,5 +119,14 @@ public final class RuleCountsForGrammarLaPlace {
 		return Collections.unmodifiableMap(rulesToFrequency);
 	}
 
+	/**
+	 * The counts of the rules in each context that occurs in the dataset;
+	 * only if created with countContexts.
+	 */
+	public Map<RuleContext, Map<Rule, Long>> contextCounts() {
+		if (contextsToFrequency == null) throw new IllegalStateException("Context counts were not collected");
+		return Collections.unmodifiableMap(contextsToFrequency);
+	}
+
 
 }
@@ -22,16 +22,20 @@ import java.util.Map;
  */
 public final class RuleProbsForGrammarSemiAdaptive {
 
+	private final Map<Rule, Long> rulesToFrequency = new HashMap<>();
 	private final Map<Rule, Double> rulesToProbs;
 
 	public RuleProbsForGrammarSemiAdaptive(RNAGrammar grammar, RNAWithStructure rna) {
-		Map<Rule, Long> rulesToFrequency = new HashMap<>();
+		// compute derivation
+		this(grammar, LeftmostDerivation.rules(grammar, rna));
+	}
+
+	/** For the given leftmost derivation, so that the RNA need not be parsed again */
+	public RuleProbsForGrammarSemiAdaptive(RNAGrammar grammar, List<Rule> derivation) {
 		// initizlize map to all 0
 		grammar.getAllRules().forEach(r -> rulesToFrequency.put(r, 0L));
-		// compute derivation
-		List<Rule> rules = LeftmostDerivation.rules(grammar, rna);
 		// count rules
-		rules.forEach((rule) -> {
+		derivation.forEach((rule) -> {
 			rulesToFrequency.replace(rule, rulesToFrequency.get(rule) + 1);
 		});
 		this.rulesToProbs = RuleProbModel.computeRuleProbs(grammar, rulesToFrequency);
@@ -42,5 +46,9 @@ public final class RuleProbsForGrammarSemiAdaptive {
 		return Collections.unmodifiableMap(rulesToProbs);
 	}
 
+	public Map<Rule, Long> ruleCounts() {
+		return Collections.unmodifiableMap(rulesToFrequency);
+	}
+
 
 }
@@ -6,8 +6,10 @@
 package compression.samplegrammars.model;
 
 import compression.arithmaticCoding.bigDecimalAc.BigDecimalInterval;
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
 import compression.arithmaticCoding.bigDecimalAc.Interval;
-import compression.grammar.PairOfChar;
+import compression.arithmaticCoding.nayukiAc.FenwickFrequencyTable;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
 import compression.grammar.Category;
 import compression.grammar.NonTerminal;
 import compression.grammar.Grammar;
@@ -18,8 +20,10 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A rule probability model that uses adaptive counts to estimate the probability of a
@@ -32,109 +36,147 @@ import java.util.Map;
  * rule is used.
  * <p>
  * The probability of a rule is updated every time the rule is used.
+ * Only the intervals of the rule's left-hand side change; they are marked dirty and
+ * recomputed the next time they are needed.
  * <p>
  * When turning counts into probabilities, we use a given precision, i.e., the number of
  * decimal digits in the probability.
+ * {@link #withDyadicIntervals(Grammar)} instead creates {@link DyadicInterval}s directly
+ * from the counts, with a binary precision.
+ * <p>
+ * The counts of each nonterminal are kept in a {@link FenwickFrequencyTable} indexed by
+ * rule index; {@link IndexedRuleProbModel} feeds these exact counts to the Nayuki coder as
+ * frequencies, so an update costs O(log k). Intervals are computed only when asked for, so
+ * on that path no BigDecimal is ever computed.
  *
  * @author Eva
  */
-public class AdaptiveRuleProbModel implements RuleProbModel {
+public class AdaptiveRuleProbModel implements IndexedRuleProbModel {
 
-    private Map<NonTerminal, Map<List<Category>, Interval>> ruleProbs;
-    private final Grammar<?> grammar;
+    private final Map<NonTerminal, Map<List<Category>, Interval>> ruleProbs = new HashMap<>();
+    /** nonterminals whose intervals in ruleProbs are outdated */
+    private final Set<NonTerminal> dirty = new HashSet<>();
+    private final RuleIndex ruleIndex;
 
-    private final Map<NonTerminal, Map<List<Category>, Long>> ruleFreq = new HashMap<>();
+    /** rule counts of each nonterminal, indexed by rule index */
+    private final Map<NonTerminal, FenwickFrequencyTable> ruleFreq = new HashMap<>();
 
     /**
      * precision is the scale used for BigDecimalIntervals, i.e., the number of decimal digits in the probability
      */
     private final int precision;
+    /** denominator bits of the DyadicIntervals, or 0 for BigDecimalIntervals */
+    private final int dyadicBits;
 
     int counter=0;
-    private Map<NonTerminal, Map<List<Category>, Interval>> getRuleProbs() {
-        if (ruleProbs == null) {
-            fillRuleProbs();
-
+    private Map<List<Category>, Interval> getRuleProbs(NonTerminal lhs) {
+        if (dirty.remove(lhs)) {
+            fillRuleProbs(lhs);
         }
-        return ruleProbs;
+        return ruleProbs.get(lhs);
     }
 
     public AdaptiveRuleProbModel(final Grammar<?> G, final int precision) {
-        this.grammar = G;
+        this(G, precision, 0);
+    }
+
+    private AdaptiveRuleProbModel(final Grammar<?> G, final int precision, final int dyadicBits) {
+        this.ruleIndex = new RuleIndex(G);
         this.precision = precision;
-        for (NonTerminal nonTerminal : G.getNonTerminals()) {
-            ruleFreq.put(nonTerminal, new HashMap<>());
-            for (Rule rule : G.getRules(nonTerminal)) {
-                // adaptive count 1 for all frequency at initialisation
-                ruleFreq.get(nonTerminal).put(rhsOf(rule), 1L);
-            }
+        this.dyadicBits = dyadicBits;
+        for (NonTerminal nonTerminal : ruleIndex.nonTerminals()) {
+            int[] ones = new int[ruleIndex.numberOfRules(nonTerminal)];
+            // adaptive count 1 for all frequency at initialisation
+            Arrays.fill(ones, 1);
+            ruleFreq.put(nonTerminal, new FenwickFrequencyTable(ones));
         }
-        fillRuleProbs();
+        // intervals are computed on first use
+        dirty.addAll(G.getNonTerminals());
         //System.out.println(ruleProbs);
         //System.out.println("\n\n");
 
     }
 
-    public AdaptiveRuleProbModel(Grammar<PairOfChar> G) {
+    public AdaptiveRuleProbModel(final Grammar<?> G) {
         this(G, 10);
     }
 
     /**
-     * update the Map for non terminals to the Map of rules to
+     * An adaptive model whose intervals are {@link DyadicInterval}s with denominator
+     * 2^{@value DyadicInterval#DEFAULT_DENOMINATOR_BITS}.
      */
-    private void updateRuleFrequency(Rule rule) {
-        if (rule.getLeft().toString().compareTo("<start>") == 0)
-            return;
-        else
-            updateRuleFrequency(rule.getLeft(), rhsOf(rule));
+    public static AdaptiveRuleProbModel withDyadicIntervals(final Grammar<?> G) {
+        return withDyadicIntervals(G, DyadicInterval.DEFAULT_DENOMINATOR_BITS);
     }
 
-    private void updateRuleFrequency(NonTerminal lhs, List<Category> rhs) {
-        this.ruleProbs = null; // invalidate old probabilities
-        // increment count
-        ruleFreq.get(lhs).merge(rhs, 1L, Long::sum);
-
-
+    public static AdaptiveRuleProbModel withDyadicIntervals(final Grammar<?> G, final int denominatorBits) {
+        if (denominatorBits <= 0 || denominatorBits > DyadicInterval.MAX_DENOMINATOR_BITS)
+            throw new IllegalArgumentException("denominatorBits must be in [1.." + DyadicInterval.MAX_DENOMINATOR_BITS + "]");
+        return new AdaptiveRuleProbModel(G, 0, denominatorBits);
     }
 
-    private void fillRuleProbs() {
-        ruleProbs = new HashMap<>();
-        for (NonTerminal lhs : ruleFreq.keySet()) {
-            ruleProbs.put(lhs, new HashMap<>());
-
-            Map<List<Category>, Long> rhsFreqsForNT = ruleFreq.get(lhs);
-            long leftNumerator = 0;
+    /**
+     * update the Map for non terminals to the Map of rules to
+     */
+    @Override
+    public void update(NonTerminal lhs, int index) {
+        if (lhs.toString().compareTo("<start>") == 0)
+            return;
+        dirty.add(lhs); // invalidate old probabilities
+        // increment count
+        ruleFreq.get(lhs).increment(index);
+    }
 
-            // Step 1: sum up all occurrences of a particular nonterminal on the LHS of a production rule
-            long totalFreq = 0;
-            for (Rule rule : grammar.getRules(lhs)) {
-                totalFreq += rhsFreqsForNT.get(rhsOf(rule));
-            }
-            // Step 2: Compute rule probabilities
-            final BigDecimal denominator = BigDecimal.valueOf(totalFreq);
-            for (Rule rule : grammar.getRules(lhs)) {
-                List<Category> rhs = rhsOf(rule);
-//                double p = ((double) rhsFreqsForNT.get(rhs)) / (double) totalFreq;
-                long numerator = rhsFreqsForNT.get(rhs);
-                BigDecimal p = BigDecimal.valueOf(numerator).divide(denominator, precision, RoundingMode.DOWN);
-                BigDecimal left = BigDecimal.valueOf(leftNumerator).divide(denominator, precision, RoundingMode.DOWN);
-                ruleProbs.get(lhs).put(rhs, new BigDecimalInterval(left, p));
+    private void fillRuleProbs(NonTerminal lhs) {
+        ruleProbs.put(lhs, new HashMap<>());
+
+        FenwickFrequencyTable rhsFreqsForNT = ruleFreq.get(lhs);
+        if (rhsFreqsForNT == null) return; // no rules
+
+        // Compute rule probabilities; intervals are consecutive in rule index order
+        long total = rhsFreqsForNT.getTotal();
+        final BigDecimal denominator = BigDecimal.valueOf(total);
+        long leftNumerator = 0;
+        for (int i = 0; i < rhsFreqsForNT.getSymbolLimit(); i++) {
+            long numerator = rhsFreqsForNT.get(i);
+            if (dyadicBits > 0) {
+                ruleProbs.get(lhs).put(ruleIndex.rhs(lhs, i),
+                        DyadicInterval.ofCounts(leftNumerator, numerator, total, dyadicBits));
                 leftNumerator += numerator;
+                continue;
             }
+            BigDecimal p = BigDecimal.valueOf(numerator).divide(denominator, precision, RoundingMode.DOWN);
+            BigDecimal left = BigDecimal.valueOf(leftNumerator).divide(denominator, precision, RoundingMode.DOWN);
+            ruleProbs.get(lhs).put(ruleIndex.rhs(lhs, i), new BigDecimalInterval(left, p));
+            leftNumerator += numerator;
         }
     }
 
-    private static List<Category> rhsOf(final Rule rule) {
-        return Arrays.asList(rule.getRight());
+    @Override
+    public int getRuleIndex(final Rule rule) {
+        return ruleIndex.indexOf(rule);
+    }
+
+    @Override
+    public List<Category> getRhs(final NonTerminal lhs, final int index) {
+        return ruleIndex.rhs(lhs, index);
+    }
+
+    /** The current rule counts for lhs; updated in place by {@link #update(NonTerminal, int)}. */
+    @Override
+    public FrequencyTable getFrequencyTable(final NonTerminal lhs) {
+        FenwickFrequencyTable table = ruleFreq.get(lhs);
+        if (table == null) throw new IllegalArgumentException("No rules for " + lhs);
+        return table;
     }
 
     @Override
     public Interval getIntervalFor(final Rule rule) {
 
         // Step 1: Compute the interval using old probs
-        final Interval res = getRuleProbs().get(rule.getLeft()).get(rhsOf(rule));
+        final Interval res = getRuleProbs(rule.getLeft()).get(Arrays.asList(rule.getRight()));
         // Step 2: Update counters
-        updateRuleFrequency(rule);
+        update(rule.getLeft(), getRuleIndex(rule));
         // Step 3: return computed interval
         return res;
 
@@ -143,22 +185,22 @@ public class AdaptiveRuleProbModel implements RuleProbModel {
     @Override
     public List<Interval> getIntervalList(NonTerminal lhs) {
 
-        return new ArrayList<>(getRuleProbs().get(lhs).values());
+        return new ArrayList<>(getRuleProbs(lhs).values());
     }
 
     @Override
     public List<Category> getRhsFor(Interval intvl, NonTerminal lhs) {
         // Step 1: find rule for given intvl
         List<Category> res = null;
-        for (List<Category> rhs : getRuleProbs().get(lhs).keySet()) {
-            if (intvl.equals(getRuleProbs().get(lhs).get(rhs))) {
-                res = rhs;
+        for (Map.Entry<List<Category>, Interval> entry : getRuleProbs(lhs).entrySet()) {
+            if (intvl.equals(entry.getValue())) {
+                res = entry.getKey();
                 break;
             }
         }
         if (res == null) throw new IllegalArgumentException("Did not find any rhs for given lhs and interval");
         // Step 2: Update rule counters
-        updateRuleFrequency(lhs, res);
+        update(lhs, ruleIndex.indexOf(lhs, res));
         // Step 3: return rhs
         return res;
     }
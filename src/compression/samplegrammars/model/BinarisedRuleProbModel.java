@@ -0,0 +1,212 @@
+package compression.samplegrammars.model;
+
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.binary.BinaryRangeDecoder;
+import compression.arithmaticCoding.binary.BinaryRangeEncoder;
+import compression.grammar.Category;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An adaptive rule probability model for the {@link BinaryRangeEncoder}, in the style of CABAC:
+ * the choice among the k rules of a nonterminal is binarised into the bits of the rule index,
+ * and each bit is coded with its own adaptive probability.
+ * <p>
+ * The bits of index i are coded most significant first, with b = ceil(log2 k) bits; the
+ * probability used for a bit is that of its node in the binary tree of the bits before it
+ * (node 1 is the root, node 2v + bit the child of node v). A bit is not coded if it must be 0
+ * because no index with a 1 at this position is less than k, so the tree has k leaves and
+ * k - 1 coded nodes. Nonterminals with a single rule cost nothing.
+ * <p>
+ * All probabilities start at 1/2. After each coded bit, the probability of its node moves
+ * towards the bit by a fraction 2^-s, see {@link BinaryRangeEncoder#adapt(int, int, int)};
+ * s grows with the number of bits coded with the node, up to the adaptation shift, so that the
+ * first bits count about as much as with rule counts, and later ones as in a fixed-rate
+ * estimator. This state-machine update needs no division.
+ * <p>
+ * The {@link RuleProbModel} methods are supported for compatibility; the intervals of a
+ * nonterminal are the products of the current bit probabilities of the rules, as
+ * {@link DyadicInterval}s, and are recomputed on every call.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class BinarisedRuleProbModel implements RuleProbModel {
+
+	public static final int DEFAULT_ADAPTATION_SHIFT = 5;
+	private static final int PROB_MASK = 0xFFFF;
+
+	private final Grammar<?> grammar;
+	private final RuleIndex ruleIndex;
+	private final int shift;
+
+	/**
+	 * state of each tree node, per nonterminal: the probability of a 0-bit and the number of
+	 * bits coded with it, see {@link #adapt(int, int)}; index 0 is unused
+	 */
+	private final Map<NonTerminal, int[]> probs = new HashMap<>();
+
+	public BinarisedRuleProbModel(final Grammar<?> grammar, final int adaptationShift) {
+		if (adaptationShift < 1 || adaptationShift >= BinaryRangeEncoder.PROB_BITS)
+			throw new IllegalArgumentException("adaptationShift must be in [1.." + (BinaryRangeEncoder.PROB_BITS - 1) + "]");
+		this.grammar = grammar;
+		this.ruleIndex = new RuleIndex(grammar);
+		this.shift = adaptationShift;
+		for (NonTerminal nonTerminal : ruleIndex.nonTerminals()) {
+			int[] tree = new int[1 << bits(ruleIndex.numberOfRules(nonTerminal))];
+			Arrays.fill(tree, BinaryRangeEncoder.PROB_INIT);
+			probs.put(nonTerminal, tree);
+		}
+	}
+
+	public BinarisedRuleProbModel(final Grammar<?> grammar) {
+		this(grammar, DEFAULT_ADAPTATION_SHIFT);
+	}
+
+	public Grammar<?> getGrammar() {
+		return grammar;
+	}
+
+	public int getAdaptationShift() {
+		return shift;
+	}
+
+	/** number of bits of the rule indices of a nonterminal with k rules */
+	private static int bits(final int k) {
+		return 32 - Integer.numberOfLeadingZeros(k - 1);
+	}
+
+	private int[] tree(final NonTerminal lhs) {
+		int[] tree = probs.get(lhs);
+		if (tree == null) throw new IllegalArgumentException("No rules for " + lhs);
+		return tree;
+	}
+
+	public int getRuleIndex(final Rule rule) {
+		return ruleIndex.indexOf(rule);
+	}
+
+	public List<Category> getRhs(final NonTerminal lhs, final int index) {
+		return ruleIndex.rhs(lhs, index);
+	}
+
+	/** Encodes the rule with the given index for lhs, and adapts the probabilities. */
+	public void encode(final BinaryRangeEncoder encoder, final NonTerminal lhs, final int index) throws IOException {
+		final int[] tree = tree(lhs);
+		final int k = ruleIndex.numberOfRules(lhs);
+		if (index < 0 || index >= k) throw new IllegalArgumentException("No rule " + index + " for " + lhs);
+		int node = 1;
+		for (int level = bits(k) - 1; level >= 0; --level) {
+			if ((((node << 1) | 1) << level) - tree.length >= k) { // bit must be 0
+				node <<= 1;
+				continue;
+			}
+			int bit = (index >>> level) & 1;
+			encoder.encodeBit(tree[node] & PROB_MASK, bit);
+			tree[node] = adapt(tree[node], bit);
+			node = (node << 1) | bit;
+		}
+	}
+
+	/** Decodes the index of a rule for lhs, and adapts the probabilities. */
+	public int decode(final BinaryRangeDecoder decoder, final NonTerminal lhs) throws IOException {
+		final int[] tree = tree(lhs);
+		final int k = ruleIndex.numberOfRules(lhs);
+		int node = 1;
+		for (int level = bits(k) - 1; level >= 0; --level) {
+			if ((((node << 1) | 1) << level) - tree.length >= k) {
+				node <<= 1;
+				continue;
+			}
+			int bit = decoder.decodeBit(tree[node] & PROB_MASK);
+			tree[node] = adapt(tree[node], bit);
+			node = (node << 1) | bit;
+		}
+		return node - tree.length;
+	}
+
+	/** Adapts the probabilities as {@link #encode(BinaryRangeEncoder, NonTerminal, int)} does. */
+	public void update(final NonTerminal lhs, final int index) {
+		final int[] tree = tree(lhs);
+		final int k = ruleIndex.numberOfRules(lhs);
+		int node = 1;
+		for (int level = bits(k) - 1; level >= 0; --level) {
+			int bit = (index >>> level) & 1;
+			if ((((node << 1) | 1) << level) - tree.length < k)
+				tree[node] = adapt(tree[node], bit);
+			node = (node << 1) | bit;
+		}
+	}
+
+	/**
+	 * The state of a node after coding bit: the probability (low 16 bits) moves by 2^-s towards
+	 * bit, where s = min(floor(log2(n + 2)), shift) for the number n of bits coded so far with this
+	 * node (high bits); so the first bits have about the weight they have with counts.
+	 */
+	private int adapt(final int state, final int bit) {
+		int n = state >>> 16;
+		int s = Math.min(31 - Integer.numberOfLeadingZeros(n + 2), shift);
+		int prob = BinaryRangeEncoder.adapt(state & PROB_MASK, bit, s);
+		return s < shift ? (n + 1) << 16 | prob : state & ~PROB_MASK | prob;
+	}
+
+	/** Probability of the rule with the given index for lhs, under the current bit probabilities */
+	private double probability(final int[] tree, final int k, final int index) {
+		double p = 1;
+		int node = 1;
+		for (int level = bits(k) - 1; level >= 0; --level) {
+			int bit = (index >>> level) & 1;
+			if ((((node << 1) | 1) << level) - tree.length < k) {
+				double p0 = (double) (tree[node] & PROB_MASK) / BinaryRangeEncoder.PROB_SCALE;
+				p *= bit == 0 ? p0 : 1 - p0;
+			}
+			node = (node << 1) | bit;
+		}
+		return p;
+	}
+
+	private List<Interval> intervals(final NonTerminal lhs) {
+		final int[] tree = tree(lhs);
+		final int k = ruleIndex.numberOfRules(lhs);
+		List<Interval> res = new ArrayList<>(k);
+		long left = 0;
+		for (int i = 0; i < k; i++) {
+			DyadicInterval interval = DyadicInterval.ofProbability(left, probability(tree, k, i),
+					DyadicInterval.DEFAULT_DENOMINATOR_BITS);
+			res.add(interval);
+			left += interval.getLengthNumerator();
+		}
+		return res;
+	}
+
+	@Override
+	public Interval getIntervalFor(final Rule rule) {
+		int index = getRuleIndex(rule);
+		Interval res = intervals(rule.getLeft()).get(index);
+		update(rule.getLeft(), index);
+		return res;
+	}
+
+	/** The intervals of the rules of lhs, in rule index order */
+	@Override
+	public List<Interval> getIntervalList(final NonTerminal lhs) {
+		return intervals(lhs);
+	}
+
+	@Override
+	public List<Category> getRhsFor(final Interval interval, final NonTerminal lhs) {
+		int index = intervals(lhs).indexOf(interval);
+		if (index < 0) throw new IllegalArgumentException("Did not find any rhs for given lhs and interval");
+		update(lhs, index);
+		return getRhs(lhs, index);
+	}
+
+}
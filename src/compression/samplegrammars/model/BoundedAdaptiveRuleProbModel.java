@@ -0,0 +1,182 @@
+package compression.samplegrammars.model;
+
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.FenwickFrequencyTable;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.grammar.Category;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An adaptive rule probability model like {@link AdaptiveRuleProbModel}, whose counts
+ * are bounded, so that it keeps adapting on long RNAs and on many RNAs coded with one model.
+ * <ul>
+ *     <li>{@link #withCountHalving(Grammar, int)}: once the total count of a nonterminal
+ *     exceeds the count limit, all its counts are halved (rounding up, so they stay positive).
+ *     Older rules thus weigh exponentially less.</li>
+ *     <li>{@link #withWindow(Grammar, int)}: the count of a rule is 1 plus the number of its
+ *     uses among the last window size rules of its nonterminal, kept in a ring buffer of shorts.</li>
+ * </ul>
+ * In both cases, the total count of a nonterminal with k rules is at most
+ * the limit + k, resp. the window size + k, so the state is a fixed number of ints per
+ * nonterminal and the frequencies always fit the Nayuki coder.
+ * <p>
+ * The {@link RuleProbModel} methods are supported for compatibility; they give the
+ * {@link DyadicInterval}s of the current counts.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class BoundedAdaptiveRuleProbModel implements IndexedRuleProbModel {
+
+    public static final int DEFAULT_COUNT_LIMIT = 1 << 10;
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 12;
+
+    /** largest count limit or window size; keeps totals far below the Nayuki maximum */
+    public static final int MAX_BOUND = 1 << 24;
+
+    private final Grammar<?> grammar;
+    private final RuleIndex ruleIndex;
+    private final Map<NonTerminal, FenwickFrequencyTable> frequencies = new HashMap<>();
+
+    /** count limit for halving, or 0 */
+    private final int countLimit;
+    /** last used rule indices of each nonterminal, for the window variant; null otherwise */
+    private final Map<NonTerminal, Window> windows;
+
+    /** ring buffer of the last rule indices of one nonterminal */
+    private static final class Window {
+        final short[] indices;
+        int next = 0, size = 0;
+
+        Window(final int windowSize) {
+            this.indices = new short[windowSize];
+        }
+    }
+
+    private BoundedAdaptiveRuleProbModel(final Grammar<?> G, final int countLimit, final int windowSize) {
+        this.grammar = G;
+        this.ruleIndex = new RuleIndex(G);
+        this.countLimit = countLimit;
+        this.windows = windowSize > 0 ? new HashMap<>() : null;
+        for (NonTerminal nonTerminal : ruleIndex.nonTerminals()) {
+            int[] ones = new int[ruleIndex.numberOfRules(nonTerminal)];
+            if (windowSize > 0 && ones.length > Short.MAX_VALUE)
+                throw new IllegalArgumentException("Too many rules for " + nonTerminal);
+            Arrays.fill(ones, 1);
+            frequencies.put(nonTerminal, new FenwickFrequencyTable(ones));
+            if (windows != null) windows.put(nonTerminal, new Window(windowSize));
+        }
+    }
+
+    private static void checkBound(final String name, final int bound) {
+        if (bound < 1 || bound > MAX_BOUND)
+            throw new IllegalArgumentException(name + " must be in [1.." + MAX_BOUND + "]");
+    }
+
+    /** Counts of each nonterminal are halved when their total exceeds countLimit */
+    public static BoundedAdaptiveRuleProbModel withCountHalving(final Grammar<?> G, final int countLimit) {
+        checkBound("countLimit", countLimit);
+        return new BoundedAdaptiveRuleProbModel(G, countLimit, 0);
+    }
+
+    public static BoundedAdaptiveRuleProbModel withCountHalving(final Grammar<?> G) {
+        return withCountHalving(G, DEFAULT_COUNT_LIMIT);
+    }
+
+    /** Counts of each nonterminal are those of its last windowSize rules */
+    public static BoundedAdaptiveRuleProbModel withWindow(final Grammar<?> G, final int windowSize) {
+        checkBound("windowSize", windowSize);
+        return new BoundedAdaptiveRuleProbModel(G, 0, windowSize);
+    }
+
+    public static BoundedAdaptiveRuleProbModel withWindow(final Grammar<?> G) {
+        return withWindow(G, DEFAULT_WINDOW_SIZE);
+    }
+
+    public Grammar<?> getGrammar() {
+        return grammar;
+    }
+
+    /** The current rule counts for lhs; updated in place by {@link #update(NonTerminal, int)}. */
+    @Override
+    public FrequencyTable getFrequencyTable(final NonTerminal lhs) {
+        FenwickFrequencyTable table = frequencies.get(lhs);
+        if (table == null) throw new IllegalArgumentException("No rules for " + lhs);
+        return table;
+    }
+
+    @Override
+    public int getRuleIndex(final Rule rule) {
+        return ruleIndex.indexOf(rule);
+    }
+
+    @Override
+    public List<Category> getRhs(final NonTerminal lhs, final int index) {
+        return ruleIndex.rhs(lhs, index);
+    }
+
+    /** Counts one more use of the rule with the given index for lhs, and forgets old ones. */
+    @Override
+    public void update(final NonTerminal lhs, final int index) {
+        // as in AdaptiveRuleProbModel, the artificial start rule is not counted
+        if (lhs.toString().compareTo("<start>") == 0) return;
+        FenwickFrequencyTable table = frequencies.get(lhs);
+        table.increment(index);
+        if (windows != null) {
+            Window window = windows.get(lhs);
+            if (window.size == window.indices.length) {
+                int oldest = window.indices[window.next];
+                table.set(oldest, table.get(oldest) - 1);
+            } else {
+                window.size++;
+            }
+            window.indices[window.next] = (short) index;
+            if (++window.next == window.indices.length) window.next = 0;
+        } else if (table.getTotal() > countLimit) {
+            for (int i = 0; i < table.getSymbolLimit(); i++) table.set(i, (table.get(i) + 1) >>> 1);
+        }
+    }
+
+    private Interval intervalFor(final NonTerminal lhs, final int index) {
+        FrequencyTable table = getFrequencyTable(lhs);
+        return DyadicInterval.ofCounts(table.getLow(index), table.get(index), table.getTotal(),
+                DyadicInterval.DEFAULT_DENOMINATOR_BITS);
+    }
+
+    @Override
+    public Interval getIntervalFor(final Rule rule) {
+        int index = getRuleIndex(rule);
+        Interval res = intervalFor(rule.getLeft(), index);
+        update(rule.getLeft(), index);
+        return res;
+    }
+
+    @Override
+    public List<Interval> getIntervalList(final NonTerminal lhs) {
+        int k = getFrequencyTable(lhs).getSymbolLimit();
+        List<Interval> res = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) res.add(intervalFor(lhs, i));
+        return res;
+    }
+
+    @Override
+    public List<Category> getRhsFor(final Interval interval, final NonTerminal lhs) {
+        int k = getFrequencyTable(lhs).getSymbolLimit();
+        for (int i = 0; i < k; i++) {
+            if (interval.equals(intervalFor(lhs, i))) {
+                update(lhs, i);
+                return getRhs(lhs, i);
+            }
+        }
+        throw new IllegalArgumentException("Did not find any rhs for given lhs and interval");
+    }
+
+}
@@ -0,0 +1,97 @@
+package compression.samplegrammars.model;
+
+import compression.arithmaticCoding.bigDecimalAc.BitSizeOnlyArithmeticEncoder;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Closed-form code lengths of a derivation under the adaptive and semi-adaptive models,
+ * computed from the rule counts of the derivation instead of simulating the coding process.
+ * <p>
+ * With {@link AdaptiveRuleProbModel}, each rule of a nonterminal A with k rules starts with
+ * count 1, and the i-th use of A chooses a rule with probability (its count) / (k + i - 1).
+ * The product over all uses of A only depends on the final counts c_1,...,c_k, with n = sum c_j:
+ * it is the Dirichlet-multinomial likelihood Gamma(k) prod c_j! / Gamma(n + k).
+ * With {@link SemiAdaptiveRuleProbModel}, each rule has probability c_j / n, so the code length is
+ * n log2 n - sum c_j log2 c_j.
+ * <p>
+ * Both ignore the rounding of probabilities in the models, which changes the code length by far
+ * less than a bit.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class CodeLengthOracle {
+
+	private static final double LN2 = Math.log(2);
+
+	private CodeLengthOracle() {}
+
+	/** Code length in bits of derivation with a fresh {@link AdaptiveRuleProbModel} */
+	public static double adaptiveBits(final Grammar<?> grammar, final List<Rule> derivation) {
+		double lnP = 0;
+		for (Map.Entry<NonTerminal, Map<Rule, Long>> e : countsByLhs(derivation).entrySet()) {
+			NonTerminal lhs = e.getKey();
+			int k = grammar.getRules(lhs).size();
+			long n = 0;
+			for (long c : e.getValue().values()) n += c;
+			if (lhs.toString().compareTo("<start>") == 0) {
+				// AdaptiveRuleProbModel does not update the counts of the start rule
+				lnP -= n * Math.log(k);
+				continue;
+			}
+			for (long c : e.getValue().values()) lnP += lnGamma(c + 1);
+			lnP += lnGamma(k) - lnGamma(n + k);
+		}
+		return -lnP / LN2;
+	}
+
+	/** Code length in bits of derivation with the {@link SemiAdaptiveRuleProbModel} for the same RNA */
+	public static double semiAdaptiveBits(final Grammar<?> grammar, final List<Rule> derivation) {
+		double bits = 0;
+		for (Map<Rule, Long> counts : countsByLhs(derivation).values()) {
+			long n = 0;
+			for (long c : counts.values()) {
+				n += c;
+				bits -= c * Math.log(c);
+			}
+			bits += n * Math.log(n);
+		}
+		return bits / LN2;
+	}
+
+	/**
+	 * The encoded length for the given code length in bits, rounded up as in
+	 * {@link BitSizeOnlyArithmeticEncoder#getFinalPrecision()}.
+	 */
+	public static int encodedLength(final double bits) {
+		return (int) (bits + 4);
+	}
+
+	private static Map<NonTerminal, Map<Rule, Long>> countsByLhs(final List<Rule> derivation) {
+		Map<NonTerminal, Map<Rule, Long>> counts = new HashMap<>();
+		for (Rule rule : derivation)
+			counts.computeIfAbsent(rule.getLeft(), lhs -> new HashMap<>()).merge(rule, 1L, Long::sum);
+		return counts;
+	}
+
+	private static final double[] LANCZOS = {
+			0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+			771.32342877765313, -176.61502916214059, 12.507343278686905,
+			-0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7};
+
+	/** ln(Gamma(x)) for x &ge; 1, by the Lanczos approximation (g = 7) */
+	static double lnGamma(final double x) {
+		if (x < 1) throw new IllegalArgumentException("x must be at least 1: " + x);
+		double z = x - 1;
+		double sum = LANCZOS[0];
+		for (int i = 1; i < LANCZOS.length; i++) sum += LANCZOS[i] / (z + i);
+		double t = z + 7.5;
+		return 0.5 * Math.log(2 * Math.PI) + (z + 0.5) * Math.log(t) - t + Math.log(sum);
+	}
+
+}
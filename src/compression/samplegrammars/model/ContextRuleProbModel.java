@@ -0,0 +1,139 @@
+package compression.samplegrammars.model;
+
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.grammar.Category;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A static rule probability model that conditions each rule choice on its {@link RuleContext},
+ * i.e., on the parent rule and the position of the nonterminal in the parent's right-hand side,
+ * instead of only on the nonterminal.
+ * <p>
+ * For a context c of nonterminal A with n_c observed rules, of which n_c(r) used rule r,
+ * the probability of r is (n_c(r) + w p(r|A)) / (n_c + w), where p(r|A) is the probability of
+ * the plain static model, and w the weight of the backoff to it. Sparse contexts thus get
+ * about the plain distribution, frequent ones their own; contexts not seen in training
+ * use the plain distribution.
+ * <p>
+ * The model follows the leftmost derivation that is coded to know the context of the next
+ * rule, so it must see every rule of the derivation in order, through
+ * {@link #getIntervalFor(Rule)} when encoding or {@link #getRhsFor(Interval, NonTerminal)}
+ * when decoding, and one model can only be used for one derivation at a time; use
+ * {@link #ContextRuleProbModel(ContextRuleProbModel)} for more. The intervals are
+ * {@link DyadicInterval}s.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class ContextRuleProbModel implements RuleProbModel {
+
+	public static final double DEFAULT_BACKOFF_WEIGHT = 8;
+
+	private final StaticRuleProbModel baseModel;
+	private final Map<NonTerminal, Map<List<Category>, Interval>> baseIntervals;
+	private final Map<RuleContext, Map<List<Category>, Interval>> contextIntervals;
+	/** the rules of the grammar, by left- and right-hand side */
+	private final Map<NonTerminal, Map<List<Category>, Rule>> rules;
+
+	private final RuleContext.Tracker tracker = new RuleContext.Tracker();
+
+	/**
+	 * @param ruleCounts the rule counts for the plain static model; must be positive
+	 * @param contextCounts the counts of the rules in each context
+	 * @param backoffWeight the weight w of the plain distribution in each context
+	 */
+	public ContextRuleProbModel(final Grammar<?> grammar, final Map<Rule, Long> ruleCounts,
+			final Map<RuleContext, Map<Rule, Long>> contextCounts, final double backoffWeight) {
+		if (!(backoffWeight > 0)) throw new IllegalArgumentException("backoffWeight must be positive");
+		Map<Rule, Double> probs = RuleProbModel.computeRuleProbs(grammar, ruleCounts);
+		this.baseModel = StaticRuleProbModel.withDyadicIntervals(grammar, probs);
+		this.baseIntervals = StaticRuleProbModel.computeDyadicRuleIntervalMap(grammar, probs,
+				DyadicInterval.DEFAULT_DENOMINATOR_BITS);
+		this.rules = new HashMap<>();
+		for (Rule rule : grammar.getAllRules())
+			rules.computeIfAbsent(rule.getLeft(), lhs -> new HashMap<>()).put(Arrays.asList(rule.getRight()), rule);
+
+		this.contextIntervals = new HashMap<>();
+		for (Map.Entry<RuleContext, Map<Rule, Long>> e : contextCounts.entrySet()) {
+			NonTerminal lhs = e.getKey().getNonTerminal();
+			if (lhs == null) continue; // the start symbol has no alternatives to condition
+			long n = 0;
+			for (long c : e.getValue().values()) n += c;
+			Map<List<Category>, Interval> intervals = new LinkedHashMap<>();
+			long left = 0;
+			for (Rule rule : grammar.getRules(lhs)) {
+				if (Double.isNaN(probs.get(rule))) continue; // as in the static model
+				double p = (e.getValue().getOrDefault(rule, 0L) + backoffWeight * probs.get(rule)) / (n + backoffWeight);
+				DyadicInterval interval = DyadicInterval.ofProbability(left, p, DyadicInterval.DEFAULT_DENOMINATOR_BITS);
+				intervals.put(Arrays.asList(rule.getRight()), interval);
+				left += interval.getLengthNumerator();
+			}
+			contextIntervals.put(e.getKey(), intervals);
+		}
+	}
+
+	/**
+	 * The model for the counts of the given training data, which must include the context counts,
+	 * with the default backoff weight
+	 */
+	public ContextRuleProbModel(final Grammar<?> grammar, final RuleCountsForGrammarLaPlace counts) {
+		this(grammar, counts.ruleCounts(), counts.contextCounts(), DEFAULT_BACKOFF_WEIGHT);
+	}
+
+	/** A model with the same probabilities as model, for a new derivation */
+	public ContextRuleProbModel(final ContextRuleProbModel model) {
+		this.baseModel = model.baseModel;
+		this.baseIntervals = model.baseIntervals;
+		this.contextIntervals = model.contextIntervals;
+		this.rules = model.rules;
+	}
+
+	/** The plain static model, i.e., the probabilities without context */
+	public StaticRuleProbModel getBaseModel() {
+		return baseModel;
+	}
+
+	private Map<List<Category>, Interval> intervals(final NonTerminal lhs) {
+		RuleContext context = tracker.current();
+		NonTerminal expected = context.getNonTerminal();
+		if (expected != null && !expected.equals(lhs))
+			throw new IllegalStateException("Next rule must be for " + expected + ", not " + lhs);
+		Map<List<Category>, Interval> res = contextIntervals.get(context);
+		if (res == null) res = baseIntervals.get(lhs);
+		return res;
+	}
+
+	@Override
+	public Interval getIntervalFor(final Rule rule) {
+		Interval res = intervals(rule.getLeft()).get(Arrays.asList(rule.getRight()));
+		if (res == null) throw new IllegalArgumentException("rule not found: " + rule);
+		tracker.expand(rule);
+		return res;
+	}
+
+	@Override
+	public List<Interval> getIntervalList(final NonTerminal lhs) {
+		return List.copyOf(intervals(lhs).values());
+	}
+
+	@Override
+	public List<Category> getRhsFor(final Interval interval, final NonTerminal lhs) {
+		for (Map.Entry<List<Category>, Interval> e : intervals(lhs).entrySet()) {
+			if (interval.equals(e.getValue())) {
+				tracker.expand(rules.get(lhs).get(e.getKey()));
+				return e.getKey();
+			}
+		}
+		throw new IllegalArgumentException("Did not find any rhs for given lhs and interval");
+	}
+
+}
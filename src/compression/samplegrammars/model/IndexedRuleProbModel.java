@@ -0,0 +1,49 @@
+package compression.samplegrammars.model;
+
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.grammar.Category;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+
+import java.util.List;
+
+/**
+ * A rule probability model that can also be used with dense rule indices and integer
+ * frequencies, so that integer arithmetic coders never touch intervals or rules.
+ * <p>
+ * The rules of each nonterminal are numbered 0,...,k-1 in the order of
+ * {@link Grammar#getRules(NonTerminal)}. {@link #getFrequencyTable(NonTerminal)} gives the
+ * cumulative range [getLow(i), getHigh(i)) of rule index i, and
+ * {@link #findRuleIndex(NonTerminal, int)} maps a cumulative value back to the rule index.
+ * Frequencies are (quantised) versions of the model's probabilities; they need not
+ * agree exactly with the intervals of the {@link RuleProbModel} methods.
+ * <p>
+ * Unlike the {@link RuleProbModel} methods, the index-based methods never adapt the model;
+ * adaptive models are only updated by {@link #update(NonTerminal, int)}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public interface IndexedRuleProbModel extends RuleProbModel {
+
+	/** The index of rule among the rules of its left-hand side */
+	int getRuleIndex(Rule rule);
+
+	/** The right-hand side of the rule with the given index for lhs */
+	List<Category> getRhs(NonTerminal lhs, int index);
+
+	/**
+	 * The current frequencies of the rules for lhs, indexed by rule index.
+	 * Adaptive models may update the table in place; callers must not modify it.
+	 */
+	FrequencyTable getFrequencyTable(NonTerminal lhs);
+
+	/** The index of the rule for lhs whose cumulative range contains value */
+	default int findRuleIndex(NonTerminal lhs, int value) {
+		return getFrequencyTable(lhs).findSymbol(value);
+	}
+
+	/** Records one use of the rule with the given index; no-op for static models. */
+	void update(NonTerminal lhs, int index);
+
+}
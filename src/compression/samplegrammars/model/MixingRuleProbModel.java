@@ -0,0 +1,220 @@
+package compression.samplegrammars.model;
+
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.QuantisedFrequencyTables;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
+import compression.grammar.Category;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rule probability model that mixes a static prior, e.g., a trained {@link StaticRuleProbModel},
+ * with adaptive rule counts of the RNA coded so far, as {@link AdaptiveRuleProbModel}
+ * keeps them.
+ * <p>
+ * For each nonterminal, the probability of rule i is w p_s(i) + (1 - w) p_a(i) for the static
+ * probability p_s and the adaptive probability p_a. The weight w starts at the initial weight,
+ * and after each rule x moves along the gradient of the code length,
+ * w += 2^-r (p_s(x) - p_a(x)) / p(x) for the learning rate 2^-r; it is kept in
+ * [{@value #MIN_WEIGHT} / 2^{@value #WEIGHT_BITS}, 1 - {@value #MIN_WEIGHT} / 2^{@value #WEIGHT_BITS}].
+ * So the static prior dominates early, and the counts take over for nonterminals where
+ * they predict better.
+ * <p>
+ * All of this is integer arithmetic: probabilities are frequencies with total
+ * {@link QuantisedFrequencyTables#TOTAL_SCALE} (plus rounding), and w has {@value #WEIGHT_BITS}
+ * fractional bits. The mixed frequencies of a nonterminal are recomputed after each update, in
+ * O(k) for its k rules.
+ * <p>
+ * The {@link RuleProbModel} methods are supported for compatibility; they give the
+ * {@link DyadicInterval}s of the current mixed frequencies. One model codes one RNA; use
+ * {@link #MixingRuleProbModel(MixingRuleProbModel)} for more.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class MixingRuleProbModel implements IndexedRuleProbModel {
+
+	public static final int WEIGHT_BITS = 16;
+	public static final int MIN_WEIGHT = 1 << (WEIGHT_BITS - 8);
+	private static final int ONE = 1 << WEIGHT_BITS;
+	private static final int TOTAL = QuantisedFrequencyTables.TOTAL_SCALE;
+
+	public static final int DEFAULT_INITIAL_WEIGHT = 3 * ONE / 4;
+	public static final int DEFAULT_LEARNING_RATE_SHIFT = 3;
+
+	private final Grammar<?> grammar;
+	private final RuleIndex ruleIndex;
+	private final int initialWeight, learningRateShift;
+	/** static frequencies of each nonterminal, with total TOTAL; shared between copies */
+	private final Map<NonTerminal, int[]> priors;
+
+	private final Map<NonTerminal, State> states = new HashMap<>();
+
+	/** The adaptive part and the mixed frequencies of one nonterminal */
+	private static final class State {
+		final int[] prior;
+		final int[] counts;
+		int countTotal;
+		int weight;
+		final SimpleFrequencyTable mixed;
+
+		State(final int[] prior, final int weight) {
+			this.prior = prior;
+			this.counts = new int[prior.length];
+			Arrays.fill(counts, 1);
+			this.countTotal = prior.length;
+			this.weight = weight;
+			this.mixed = new SimpleFrequencyTable(prior);
+			mix();
+		}
+
+		int adaptive(final int index) {
+			return (int) ((long) counts[index] * TOTAL / countTotal);
+		}
+
+		void mix() {
+			for (int i = 0; i < prior.length; i++) {
+				long f = ((long) weight * prior[i] + (long) (ONE - weight) * adaptive(i)) >>> WEIGHT_BITS;
+				mixed.set(i, (int) Math.max(f, 1));
+			}
+		}
+	}
+
+	/**
+	 * @param prior the static model; only its frequency tables are used
+	 * @param initialWeight the initial weight of prior, with {@value #WEIGHT_BITS} fractional bits
+	 * @param learningRateShift r for the learning rate 2^-r of the weights
+	 */
+	public MixingRuleProbModel(final Grammar<?> grammar, final IndexedRuleProbModel prior,
+			final int initialWeight, final int learningRateShift) {
+		if (initialWeight < MIN_WEIGHT || initialWeight > ONE - MIN_WEIGHT)
+			throw new IllegalArgumentException("initialWeight must be in [" + MIN_WEIGHT + ".." + (ONE - MIN_WEIGHT) + "]");
+		if (learningRateShift < 0 || learningRateShift >= WEIGHT_BITS)
+			throw new IllegalArgumentException("learningRateShift must be in [0.." + (WEIGHT_BITS - 1) + "]");
+		this.grammar = grammar;
+		this.ruleIndex = new RuleIndex(grammar);
+		this.initialWeight = initialWeight;
+		this.learningRateShift = learningRateShift;
+		this.priors = new HashMap<>();
+		for (NonTerminal nonTerminal : ruleIndex.nonTerminals()) {
+			FrequencyTable table = prior.getFrequencyTable(nonTerminal);
+			int[] freqs = new int[ruleIndex.numberOfRules(nonTerminal)];
+			long total = table.getTotal();
+			int sum = 0, largest = 0;
+			for (int i = 0; i < freqs.length; i++) {
+				freqs[i] = (int) Math.max((long) table.get(i) * TOTAL / total, 1);
+				sum += freqs[i];
+				if (freqs[i] > freqs[largest]) largest = i;
+			}
+			freqs[largest] += TOTAL - sum;
+			priors.put(nonTerminal, freqs);
+		}
+	}
+
+	public MixingRuleProbModel(final Grammar<?> grammar, final IndexedRuleProbModel prior) {
+		this(grammar, prior, DEFAULT_INITIAL_WEIGHT, DEFAULT_LEARNING_RATE_SHIFT);
+	}
+
+	/** A model with the same prior and parameters as model, with fresh counts and weights */
+	public MixingRuleProbModel(final MixingRuleProbModel model) {
+		this.grammar = model.grammar;
+		this.ruleIndex = model.ruleIndex;
+		this.initialWeight = model.initialWeight;
+		this.learningRateShift = model.learningRateShift;
+		this.priors = model.priors;
+	}
+
+	public Grammar<?> getGrammar() {
+		return grammar;
+	}
+
+	private State state(final NonTerminal lhs) {
+		State state = states.get(lhs);
+		if (state == null) {
+			int[] prior = priors.get(lhs);
+			if (prior == null) throw new IllegalArgumentException("No rules for " + lhs);
+			state = new State(prior, initialWeight);
+			states.put(lhs, state);
+		}
+		return state;
+	}
+
+	/** The current weight of the prior for lhs, with {@value #WEIGHT_BITS} fractional bits */
+	public int getWeight(final NonTerminal lhs) {
+		return state(lhs).weight;
+	}
+
+	/** The current mixed frequencies for lhs; updated in place by {@link #update(NonTerminal, int)}. */
+	@Override
+	public FrequencyTable getFrequencyTable(final NonTerminal lhs) {
+		return state(lhs).mixed;
+	}
+
+	@Override
+	public int getRuleIndex(final Rule rule) {
+		return ruleIndex.indexOf(rule);
+	}
+
+	@Override
+	public List<Category> getRhs(final NonTerminal lhs, final int index) {
+		return ruleIndex.rhs(lhs, index);
+	}
+
+	/** Moves the weight of lhs towards the better prediction of index, and counts index. */
+	@Override
+	public void update(final NonTerminal lhs, final int index) {
+		// as in AdaptiveRuleProbModel, the artificial start rule is not counted
+		if (lhs.toString().compareTo("<start>") == 0) return;
+		State state = state(lhs);
+		if (state.prior.length == 1) return;
+		long gradient = ((long) (state.prior[index] - state.adaptive(index)) << WEIGHT_BITS) / state.mixed.get(index);
+		state.weight = (int) Math.max(MIN_WEIGHT,
+				Math.min(ONE - MIN_WEIGHT, state.weight + (gradient >> learningRateShift)));
+		state.counts[index]++;
+		state.countTotal++;
+		state.mix();
+	}
+
+	private Interval intervalFor(final NonTerminal lhs, final int index) {
+		FrequencyTable table = getFrequencyTable(lhs);
+		return DyadicInterval.ofCounts(table.getLow(index), table.get(index), table.getTotal(),
+				DyadicInterval.DEFAULT_DENOMINATOR_BITS);
+	}
+
+	@Override
+	public Interval getIntervalFor(final Rule rule) {
+		int index = getRuleIndex(rule);
+		Interval res = intervalFor(rule.getLeft(), index);
+		update(rule.getLeft(), index);
+		return res;
+	}
+
+	@Override
+	public List<Interval> getIntervalList(final NonTerminal lhs) {
+		int k = getFrequencyTable(lhs).getSymbolLimit();
+		List<Interval> res = new ArrayList<>(k);
+		for (int i = 0; i < k; i++) res.add(intervalFor(lhs, i));
+		return res;
+	}
+
+	@Override
+	public List<Category> getRhsFor(final Interval interval, final NonTerminal lhs) {
+		int k = getFrequencyTable(lhs).getSymbolLimit();
+		for (int i = 0; i < k; i++) {
+			if (interval.equals(intervalFor(lhs, i))) {
+				update(lhs, i);
+				return getRhs(lhs, i);
+			}
+		}
+		throw new IllegalArgumentException("Did not find any rhs for given lhs and interval");
+	}
+
+}
@@ -0,0 +1,108 @@
+package compression.samplegrammars.model;
+
+import compression.grammar.Category;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The context of a rule choice in a derivation: the parent rule whose right-hand side
+ * contains the nonterminal to be expanded, and the position of the nonterminal in it.
+ * The start symbol has the context {@link #ROOT}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class RuleContext {
+
+	/** context of the start symbol */
+	public static final RuleContext ROOT = new RuleContext(null, -1);
+
+	private final Rule parent;
+	private final int position;
+
+	public RuleContext(final Rule parent, final int position) {
+		if (parent != null && !Category.isNonTerminal(parent.getRight()[position]))
+			throw new IllegalArgumentException("No nonterminal at position " + position + " of " + parent);
+		this.parent = parent;
+		this.position = position;
+	}
+
+	/** The parent rule, or null for {@link #ROOT} */
+	public Rule getParent() {
+		return parent;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	/** The nonterminal expanded in this context, or null for {@link #ROOT} */
+	public NonTerminal getNonTerminal() {
+		return parent == null ? null : (NonTerminal) parent.getRight()[position];
+	}
+
+	/** The contexts of the rules of a leftmost derivation, in the same order */
+	public static List<RuleContext> contextsOf(final List<Rule> derivation) {
+		List<RuleContext> res = new ArrayList<>(derivation.size());
+		Tracker tracker = new Tracker();
+		for (Rule rule : derivation) {
+			res.add(tracker.current());
+			tracker.expand(rule);
+		}
+		return res;
+	}
+
+	/**
+	 * Follows a leftmost derivation rule by rule and knows the context of the next rule:
+	 * the contexts of the pending nonterminals are kept on a stack, with the leftmost on top.
+	 * Once the derivation is complete, the next rule starts a new one at {@link #ROOT}.
+	 */
+	static final class Tracker {
+
+		private RuleContext[] stack = new RuleContext[16];
+		private int size = 0;
+
+		/** The context of the next rule */
+		RuleContext current() {
+			return size == 0 ? ROOT : stack[size - 1];
+		}
+
+		/** Expands the leftmost nonterminal, in context {@link #current()}, by rule */
+		void expand(final Rule rule) {
+			if (size > 0) {
+				NonTerminal expected = stack[size - 1].getNonTerminal();
+				if (!expected.equals(rule.getLeft()))
+					throw new IllegalStateException("Next rule must be for " + expected + ", not " + rule);
+				stack[--size] = null;
+			}
+			Category[] rhs = rule.getRight();
+			for (int i = rhs.length - 1; i >= 0; --i) {
+				if (!Category.isNonTerminal(rhs[i])) continue;
+				if (size == stack.length) stack = Arrays.copyOf(stack, 2 * size);
+				stack[size++] = new RuleContext(rule, i);
+			}
+		}
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		final RuleContext that = (RuleContext) o;
+		return position == that.position && Objects.equals(parent, that.parent);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Objects.hashCode(parent) + position;
+	}
+
+	@Override
+	public String toString() {
+		return parent == null ? "RuleContext(root)" : "RuleContext(" + parent + " @ " + position + ")";
+	}
+}
@@ -0,0 +1,90 @@
+package compression.samplegrammars.model;
+
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.QuantisedFrequencyTables;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
+import compression.grammar.Category;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.Rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dense rule indices of {@link IndexedRuleProbModel} for one grammar.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+final class RuleIndex {
+
+	/** right-hand sides of each nonterminal, indexed by rule index */
+	private final Map<NonTerminal, List<List<Category>>> rhss = new HashMap<>();
+	/** index of each right-hand side among the rules of its left-hand side */
+	private final Map<NonTerminal, Map<List<Category>, Integer>> indices = new HashMap<>();
+
+	RuleIndex(final Grammar<?> grammar) {
+		for (NonTerminal nonTerminal : grammar.getNonTerminals()) {
+			List<Rule> rules = new ArrayList<>(grammar.getRules(nonTerminal));
+			if (rules.isEmpty()) continue;
+			List<List<Category>> rhsForNT = new ArrayList<>(rules.size());
+			Map<List<Category>, Integer> indexForNT = new HashMap<>();
+			for (int i = 0; i < rules.size(); i++) {
+				rhsForNT.add(Arrays.asList(rules.get(i).getRight()));
+				indexForNT.put(rhsForNT.get(i), i);
+			}
+			rhss.put(nonTerminal, rhsForNT);
+			indices.put(nonTerminal, indexForNT);
+		}
+	}
+
+	/** The nonterminals that have rules */
+	Iterable<NonTerminal> nonTerminals() {
+		return rhss.keySet();
+	}
+
+	int numberOfRules(final NonTerminal lhs) {
+		return rhssFor(lhs).size();
+	}
+
+	int indexOf(final NonTerminal lhs, final List<Category> rhs) {
+		Map<List<Category>, Integer> indexForNT = indices.get(lhs);
+		Integer index = indexForNT == null ? null : indexForNT.get(rhs);
+		if (index == null) throw new IllegalArgumentException("Rule not in grammar: " + lhs + " -> " + rhs);
+		return index;
+	}
+
+	int indexOf(final Rule rule) {
+		return indexOf(rule.getLeft(), Arrays.asList(rule.getRight()));
+	}
+
+	List<Category> rhs(final NonTerminal lhs, final int index) {
+		return rhssFor(lhs).get(index);
+	}
+
+	private List<List<Category>> rhssFor(final NonTerminal lhs) {
+		List<List<Category>> rhsForNT = rhss.get(lhs);
+		if (rhsForNT == null) throw new IllegalArgumentException("No rules for " + lhs);
+		return rhsForNT;
+	}
+
+	/**
+	 * Quantises the intervals of a static model for lhs, given by right-hand side,
+	 * to a frequency table indexed by rule index.
+	 */
+	FrequencyTable quantise(final NonTerminal lhs, final Map<List<Category>, Interval> intervals) {
+		List<List<Category>> rhsForNT = rhssFor(lhs);
+		List<Interval> byIndex = new ArrayList<>(rhsForNT.size());
+		for (List<Category> rhs : rhsForNT) {
+			Interval interval = intervals == null ? null : intervals.get(rhs);
+			if (interval == null) throw new IllegalArgumentException("No probability for " + lhs + " -> " + rhs);
+			byIndex.add(interval);
+		}
+		return new SimpleFrequencyTable(QuantisedFrequencyTables.quantise(byIndex));
+	}
+
+}
@@ -1,6 +1,8 @@
 package compression.samplegrammars.model;
 
 import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
 import compression.grammar.Category;
 import compression.grammar.NonTerminal;
 import compression.grammar.RNAGrammar;
@@ -10,24 +12,56 @@ import compression.samplegrammars.RuleProbsForGrammarSemiAdaptive;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * A rule probability model that uses counts to estimate the probability of a rule from a
  * given RNA sequence.
+ * <p>
+ * For {@link IndexedRuleProbModel}, the probabilities of each nonterminal are quantised to
+ * integer frequencies when the nonterminal is first used; a model created with
+ * {@link #fromCounts(RNAGrammar, Map)} uses the rule counts themselves as frequencies.
  */
-public class SemiAdaptiveRuleProbModel implements RuleProbModel {
+public class SemiAdaptiveRuleProbModel implements IndexedRuleProbModel {
 	/**
 	 * store right hand side as list of categories
 	 */
 	private final Map<NonTerminal, Map<List<Category>, Interval>> ruleProbs;
+	private final RuleIndex ruleIndex;
+	private final Map<NonTerminal, FrequencyTable> frequencies = new HashMap<>();
 
 	/** Requires the rules in G and in probs to match in probability! */
 	public SemiAdaptiveRuleProbModel(RNAGrammar G, RNAWithStructure rna) {
 		// obtains probability for each rule given the particular RNA
-		Map<Rule, Double> probs = new RuleProbsForGrammarSemiAdaptive(G, rna).ruleProbs();
+		this(G, new RuleProbsForGrammarSemiAdaptive(G, rna).ruleProbs());
+	}
+
+	private SemiAdaptiveRuleProbModel(RNAGrammar G, Map<Rule, Double> probs) {
 		this.ruleProbs = StaticRuleProbModel.computeRuleIntervalMap(G, probs);
+		this.ruleIndex = new RuleIndex(G);
+	}
+
+	/**
+	 * The model for the given rule counts of an RNA, e.g., as read by a decoder; the frequency
+	 * tables of the nonterminals with positive total count, or a single rule, are the counts,
+	 * indexed by rule index.
+	 */
+	public static SemiAdaptiveRuleProbModel fromCounts(RNAGrammar G, Map<Rule, Long> ruleCounts) {
+		SemiAdaptiveRuleProbModel model = new SemiAdaptiveRuleProbModel(G, RuleProbModel.computeRuleProbs(G, ruleCounts));
+		for (NonTerminal nonTerminal : model.ruleIndex.nonTerminals()) {
+			int[] counts = new int[model.ruleIndex.numberOfRules(nonTerminal)];
+			long total = 0;
+			for (Rule rule : G.getRules(nonTerminal)) {
+				long count = ruleCounts.getOrDefault(rule, 0L);
+				counts[model.ruleIndex.indexOf(rule)] = Math.toIntExact(count);
+				total += count;
+			}
+			if (counts.length == 1) counts[0] = 1; // need not be counted
+			if (total > 0 || counts.length == 1) model.frequencies.put(nonTerminal, new SimpleFrequencyTable(counts));
+		}
+		return model;
 	}
 
 	@Override
@@ -49,5 +83,25 @@ public class SemiAdaptiveRuleProbModel implements RuleProbModel {
 		return ruleProbs.get(rule.getLeft()).get(Arrays.asList(rule.getRight()));
 	}
 
+	@Override
+	public int getRuleIndex(final Rule rule) {
+		return ruleIndex.indexOf(rule);
+	}
+
+	@Override
+	public List<Category> getRhs(final NonTerminal lhs, final int index) {
+		return ruleIndex.rhs(lhs, index);
+	}
+
+	@Override
+	public FrequencyTable getFrequencyTable(final NonTerminal lhs) {
+		return frequencies.computeIfAbsent(lhs, nt -> ruleIndex.quantise(nt, ruleProbs.get(nt)));
+	}
+
+	@Override
+	public void update(final NonTerminal lhs, final int index) {
+		// fixed for the whole RNA
+	}
+
 
 }
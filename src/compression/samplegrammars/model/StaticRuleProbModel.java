@@ -1,7 +1,9 @@
 package compression.samplegrammars.model;
 
 import compression.arithmaticCoding.bigDecimalAc.BigDecimalInterval;
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
 import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
 import compression.grammar.Category;
 import compression.grammar.NonTerminal;
 import compression.grammar.Grammar;
@@ -16,8 +18,15 @@ import java.util.Map;
 
 /**
  * A rule probability model that uses fixed rule probabilities.
+ * <p>
+ * For {@link IndexedRuleProbModel}, the probabilities of each nonterminal are quantised to
+ * integer frequencies when the model is created, so the model is immutable and can be shared
+ * between threads, e.g., by the substreams of {@code SubstreamArchive}.
+ * <p>
+ * {@link #withDyadicIntervals(Grammar, Map)} creates a model whose intervals are
+ * {@link DyadicInterval}s instead of {@link BigDecimalInterval}s.
  */
-public class StaticRuleProbModel implements RuleProbModel {
+public class StaticRuleProbModel implements IndexedRuleProbModel {
 
 	/**
 	 * store right hand side as list, not entire rule to avoid failed lookups when used
@@ -25,11 +34,38 @@ public class StaticRuleProbModel implements RuleProbModel {
 	 */
 	private final Map<NonTerminal, Map<List<Category>, Interval>> ruleProbs;
 	Grammar<?> grammar;
+	private final RuleIndex ruleIndex;
+	/** the quantised frequencies of all nonterminals whose probabilities can be quantised */
+	private final Map<NonTerminal, FrequencyTable> frequencies = new HashMap<>();
 
 	/** Requires the rules in grammar and in probs to match in probability! */
 	public StaticRuleProbModel(Grammar<?> grammar, Map<Rule, Double> probs) {
+		this(grammar, probs, 0);
+	}
+
+	/** dyadicBits is the denominator bits of DyadicIntervals, or 0 for BigDecimalIntervals */
+	private StaticRuleProbModel(Grammar<?> grammar, Map<Rule, Double> probs, int dyadicBits) {
 		this.grammar = grammar;
-		this.ruleProbs = computeRuleIntervalMap(grammar, probs);
+		this.ruleProbs = dyadicBits > 0 ? computeDyadicRuleIntervalMap(grammar, probs, dyadicBits)
+				: computeRuleIntervalMap(grammar, probs);
+		this.ruleIndex = new RuleIndex(grammar);
+		for (NonTerminal nonTerminal : ruleIndex.nonTerminals()) {
+			try {
+				frequencies.put(nonTerminal, ruleIndex.quantise(nonTerminal, ruleProbs.get(nonTerminal)));
+			} catch (IllegalArgumentException | IllegalStateException e) {
+				// a rule without probability, or all rules with probability 0;
+				// getFrequencyTable reports it if lhs is ever used
+			}
+		}
+	}
+
+	/**
+	 * A static model with {@link DyadicInterval}s of denominator
+	 * 2^{@value DyadicInterval#DEFAULT_DENOMINATOR_BITS}; requires the rules in grammar
+	 * and in probs to match in probability!
+	 */
+	public static StaticRuleProbModel withDyadicIntervals(Grammar<?> grammar, Map<Rule, Double> probs) {
+		return new StaticRuleProbModel(grammar, probs, DyadicInterval.DEFAULT_DENOMINATOR_BITS);
 	}
 
 	public static Map<NonTerminal, Map<List<Category>, Interval>> computeRuleIntervalMap(
@@ -52,6 +88,29 @@ public class StaticRuleProbModel implements RuleProbModel {
 		return res;
 	}
 
+	/**
+	 * As {@link #computeRuleIntervalMap(Grammar, Map)}, but with {@link DyadicInterval}s
+	 * of the given denominator; the log lengths are those of the given probabilities.
+	 */
+	public static Map<NonTerminal, Map<List<Category>, Interval>> computeDyadicRuleIntervalMap(
+			final Grammar<?> grammar, final Map<Rule, Double> probs, final int denominatorBits) {
+		Map<NonTerminal, Map<List<Category>, Interval>> res = new HashMap<>();
+		for (NonTerminal nonTerminal : grammar.getNonTerminals()) {
+			res.put(nonTerminal, new HashMap<>());
+			long left = 0; // numerator of left endpoint of interval
+			for (Rule rule : grammar.getRules(nonTerminal)) {
+				Double pp = probs.get(rule);
+				if (!Double.isNaN(pp)) { // don't create entry for rules with NaN prob
+					DyadicInterval interval = DyadicInterval.ofProbability(left, pp, denominatorBits);
+					ArrayList<Category> rhs = new ArrayList<>(Arrays.asList(rule.getRight()));
+					res.get(nonTerminal).put(rhs, interval);
+					left += interval.getLengthNumerator();
+				}
+			}
+		}
+		return res;
+	}
+
 	void printRuleProbs() {
 		//System.out.println("PRINTING OUT RULE PROBS");
 		for (NonTerminal nt : ruleProbs.keySet()) {
@@ -82,5 +141,27 @@ public class StaticRuleProbModel implements RuleProbModel {
 		return res;
 	}
 
+	@Override
+	public int getRuleIndex(final Rule rule) {
+		return ruleIndex.indexOf(rule);
+	}
+
+	@Override
+	public List<Category> getRhs(final NonTerminal lhs, final int index) {
+		return ruleIndex.rhs(lhs, index);
+	}
+
+	@Override
+	public FrequencyTable getFrequencyTable(final NonTerminal lhs) {
+		FrequencyTable table = frequencies.get(lhs);
+		// quantise throws the reason why there is no table
+		return table != null ? table : ruleIndex.quantise(lhs, ruleProbs.get(lhs));
+	}
+
+	@Override
+	public void update(final NonTerminal lhs, final int index) {
+		// static
+	}
+
 
 }
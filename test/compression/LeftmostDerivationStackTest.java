@@ -0,0 +1,41 @@
+package compression;
+
+import compression.data.FolderBasedDataset;
+import compression.grammar.NonTerminal;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.DowellGrammar6Bound;
+import compression.samplegrammars.LeftmostDerivation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays leftmost derivations on a {@link LeftmostDerivationStack}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class LeftmostDerivationStackTest {
+
+    @Test
+    public void testReplayDerivations() {
+        RNAGrammar G = new DowellGrammar6Bound(true).getGrammar();
+        for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+            List<Rule> derivation = LeftmostDerivation.rules(G, rna);
+            LeftmostDerivationStack stack = new LeftmostDerivationStack(G.startSymbol);
+            for (Rule rule : derivation) {
+                NonTerminal leftmost = stack.nextNonTerminal();
+                Assert.assertEquals(rule.left, leftmost);
+                stack.expand(Arrays.asList(rule.right));
+            }
+            Assert.assertNull(stack.nextNonTerminal());
+            RNAWithStructure decoded = stack.toRNA();
+            Assert.assertEquals(rna.secondaryStructure, decoded.secondaryStructure);
+            Assert.assertEquals(rna.primaryStructure.toUpperCase(), decoded.primaryStructure);
+        }
+    }
+
+}
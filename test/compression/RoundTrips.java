@@ -0,0 +1,78 @@
+package compression;
+
+import compression.arithmaticCoding.bigDecimalAc.ExactArithmeticEncoder;
+import compression.data.Dataset;
+import compression.data.FolderBasedDataset;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.DowellGrammar4Bound;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+import compression.samplegrammars.model.RuleProbModel;
+import org.junit.Assert;
+
+import java.util.Map;
+
+/**
+ * The fixture shared by the coding tests: a grammar, an encoder that only computes derivations,
+ * the test RNAs and probabilities trained on the training RNAs, and the assertion that an RNA
+ * comes back from its encoding.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public final class RoundTrips {
+
+    public interface Encoding {
+        byte[] encode(RNAWithStructure rna) throws Exception;
+    }
+
+    public interface Decoding {
+        RNAWithStructure decode(byte[] encoded) throws Exception;
+    }
+
+    public static RNAGrammar grammar() {
+        return new DowellGrammar4Bound(true).getGrammar();
+    }
+
+    /** An encoder for {@link GenericRNAEncoder#leftmostDerivationFor} and the coding runners */
+    public static GenericRNAEncoder derivationEncoder(final RNAGrammar G) {
+        return new GenericRNAEncoder(RuleProbModel.DONT_CARE, new ExactArithmeticEncoder(), G, G.startSymbol);
+    }
+
+    public static Dataset testRNAs() {
+        return new FolderBasedDataset("TestDataSet");
+    }
+
+    public static Dataset trainingRNAs() {
+        return new FolderBasedDataset("TestTrainingData");
+    }
+
+    /** Rule probabilities from the LaPlace smoothed counts of the training RNAs */
+    public static Map<Rule, Double> trainedRuleProbs(final RNAGrammar G) {
+        return RuleProbModel.computeRuleProbs(G, new RuleCountsForGrammarLaPlace(G, trainingRNAs()).ruleCounts());
+    }
+
+    /** Decoded bases are upper case, so the primary structure is compared ignoring case. */
+    public static void assertDecoded(final String message, final RNAWithStructure rna,
+                                     final RNAWithStructure decoded) {
+        String name = message == null ? rna.name : message + ": " + rna.name;
+        Assert.assertEquals(name, rna.primaryStructure.toUpperCase(), decoded.primaryStructure);
+        Assert.assertEquals(name, rna.secondaryStructure, decoded.secondaryStructure);
+    }
+
+    /** @return the encoding of rna, for further checks */
+    public static byte[] assertRoundTrip(final String message, final RNAWithStructure rna,
+                                         final Encoding encoding, final Decoding decoding) throws Exception {
+        byte[] encoded = encoding.encode(rna);
+        assertDecoded(message, rna, decoding.decode(encoded));
+        return encoded;
+    }
+
+    /** Round trips every test RNA */
+    public static void assertRoundTrips(final String message, final Encoding encoding,
+                                        final Decoding decoding) throws Exception {
+        for (RNAWithStructure rna : testRNAs()) assertRoundTrip(message, rna, encoding, decoding);
+    }
+
+    private RoundTrips() {}
+}
@@ -0,0 +1,99 @@
+package compression.coding;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.arithmaticCoding.binary.BinaryRangeDecoder;
+import compression.arithmaticCoding.binary.BinaryRangeEncoder;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.BinarisedRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Round trips through {@link BinaryRangeEncoder} and {@link BinaryRangeDecoder}, and through the
+ * binarised path with {@link BinarisedRuleProbModel}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class BinaryRangeCoderTest {
+
+    RNAGrammar G = RoundTrips.grammar();
+
+    GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+    private static void checkRoundTrip(int[] probs, int[] bits) throws Exception {
+        WordBitWriter out = new WordBitWriter();
+        BinaryRangeEncoder enc = new BinaryRangeEncoder(out);
+        double idealBits = 0;
+        for (int i = 0; i < bits.length; i++) {
+            enc.encodeBit(probs[i], bits[i]);
+            double p0 = (double) probs[i] / BinaryRangeEncoder.PROB_SCALE;
+            idealBits -= Math.log(bits[i] == 0 ? p0 : 1 - p0) / Math.log(2);
+        }
+        enc.finish();
+        byte[] encoded = out.toByteArray();
+        Assert.assertTrue(encoded.length + " bytes for " + idealBits + " bits",
+                8 * encoded.length <= 1.001 * idealBits + 40);
+
+        BinaryRangeDecoder dec = new BinaryRangeDecoder(new WordBitReader(encoded));
+        for (int i = 0; i < bits.length; i++) Assert.assertEquals("bit " + i, bits[i], dec.decodeBit(probs[i]));
+    }
+
+    @Test
+    public void testRandomBits() throws Exception {
+        Random random = new Random(42);
+        int[] probs = new int[100000], bits = new int[probs.length];
+        for (int i = 0; i < probs.length; i++) {
+            probs[i] = 1 + random.nextInt(BinaryRangeEncoder.PROB_SCALE - 1);
+            bits[i] = random.nextInt(BinaryRangeEncoder.PROB_SCALE) < probs[i] ? 0 : 1;
+        }
+        checkRoundTrip(probs, bits);
+    }
+
+    @Test
+    public void testExtremeProbabilities() throws Exception {
+        Random random = new Random(4711);
+        int[] probs = new int[100000], bits = new int[probs.length];
+        for (int i = 0; i < probs.length; i++) {
+            // long runs of likely bits produce carries and pending 0xFF bytes
+            probs[i] = random.nextBoolean() ? 1 : BinaryRangeEncoder.PROB_SCALE - 1;
+            bits[i] = random.nextInt(100) == 0 ? (probs[i] == 1 ? 0 : 1) : (probs[i] == 1 ? 1 : 0);
+        }
+        checkRoundTrip(probs, bits);
+        checkRoundTrip(new int[0], new int[0]);
+        checkRoundTrip(new int[] {BinaryRangeEncoder.PROB_INIT}, new int[] {1});
+    }
+
+    @Test
+    public void testBinarisedRoundTrip() throws Exception {
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            byte[] encoded = RoundTrips.assertRoundTrip(null, rna,
+                    r -> NayukiEncodeRunner.encodeBinarised(encoder, r, new BinarisedRuleProbModel(G)),
+                    e -> NayukiDecodeRunner.decodeBinarised(e, new BinarisedRuleProbModel(G), G.startSymbol));
+
+            // adaptive bit probabilities should be about as good as adaptive rule counts
+            byte[] adaptive = NayukiEncodeRunner.encode(encoder, rna, new AdaptiveRuleProbModel(G));
+            Assert.assertEquals(rna.name, adaptive.length, encoded.length, 4 + 0.1 * adaptive.length);
+        }
+    }
+
+    @Test
+    public void testIntervalsFollowBinarisedModel() throws Exception {
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            byte[] encoded = RoundTrips.assertRoundTrip(null, rna,
+                    r -> NayukiEncodeRunner.encodeIntervals(encoder, r, new BinarisedRuleProbModel(G)),
+                    e -> NayukiDecodeRunner.decodeIntervals(e, new BinarisedRuleProbModel(G), G.startSymbol));
+            byte[] binarised = NayukiEncodeRunner.encodeBinarised(encoder, rna, new BinarisedRuleProbModel(G));
+            Assert.assertEquals(rna.name, binarised.length, encoded.length, 4 + 0.01 * binarised.length);
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package compression.coding;
+
+import compression.arithmaticCoding.ArithmeticCodingEngine;
+import compression.arithmaticCoding.ArithmeticCodingFactory;
+import compression.arithmaticCoding.ArithmeticCodingFactory.Backend;
+import compression.arithmaticCoding.ArithmeticDecodingEngine;
+import compression.arithmaticCoding.BypassCodingEngine;
+import compression.arithmaticCoding.BypassDecodingEngine;
+import compression.arithmaticCoding.bigDecimalAc.BigDecimalInterval;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.ArithmeticDecoderNayuki;
+import compression.arithmaticCoding.nayukiAc.ArithmeticEncoderNayuki;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.grammar.NonTerminal;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link BypassCodingEngine} skips single options and codes uniform choices
+ * without changing the Nayuki output, and that {@link BypassDecodingEngine} stays in sync.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class BypassCodingTest {
+
+    private static final NonTerminal SINGLE = new NonTerminal("S"), UNIFORM = new NonTerminal("U"),
+            SKEWED = new NonTerminal("K");
+
+    private static List<Interval> options(String... lengths) {
+        List<Interval> res = new ArrayList<>();
+        BigDecimal left = BigDecimal.ZERO;
+        for (String length : lengths) {
+            res.add(new BigDecimalInterval(left, new BigDecimal(length)));
+            left = left.add(new BigDecimal(length));
+        }
+        return res;
+    }
+
+    private final List<NonTerminal> nonTerminals = Arrays.asList(SINGLE, UNIFORM, SKEWED);
+    private final List<List<Interval>> options = Arrays.asList(
+            options("1"), options("0.25", "0.25", "0.25", "0.25"), options("0.7", "0.1", "0.1", "0.1"));
+
+    @Test
+    public void testUniformSameAsTable() throws Exception {
+        Random random = new Random(42);
+        int[] symbols = new int[10000], bits = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            bits[i] = 1 + random.nextInt(16);
+            symbols[i] = random.nextInt(1 << bits[i]);
+        }
+        WordBitWriter uniform = new WordBitWriter(), table = new WordBitWriter();
+        ArithmeticEncoderNayuki uniformEncoder = new ArithmeticEncoderNayuki(32, uniform);
+        ArithmeticEncoderNayuki tableEncoder = new ArithmeticEncoderNayuki(32, table);
+        for (int i = 0; i < symbols.length; i++) {
+            uniformEncoder.writeUniform(symbols[i], bits[i]);
+            int[] ones = new int[1 << bits[i]];
+            Arrays.fill(ones, 1);
+            tableEncoder.write(new SimpleFrequencyTable(ones), symbols[i]);
+        }
+        uniformEncoder.finish();
+        tableEncoder.finish();
+        byte[] encoded = uniform.toByteArray();
+        Assert.assertArrayEquals(table.toByteArray(), encoded);
+
+        ArithmeticDecoderNayuki decoder = new ArithmeticDecoderNayuki(32, new WordBitReader(encoded));
+        for (int i = 0; i < symbols.length; i++) Assert.assertEquals(symbols[i], decoder.readUniform(bits[i]));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(4711);
+        int[] nts = new int[5000], choices = new int[nts.length];
+        for (int i = 0; i < nts.length; i++) {
+            nts[i] = random.nextInt(nonTerminals.size());
+            choices[i] = random.nextInt(options.get(nts[i]).size());
+        }
+        for (Backend backend : Arrays.asList(Backend.NAYUKI, Backend.RANS)) {
+            byte[] bypassed = encode(backend, true, nts, choices);
+            if (backend == Backend.NAYUKI) Assert.assertArrayEquals(encode(backend, false, nts, choices), bypassed);
+
+            ArithmeticDecodingEngine decoder = new BypassDecodingEngine(
+                    ArithmeticCodingFactory.createDecoder(backend, new WordBitReader(bypassed)));
+            for (int i = 0; i < nts.length; i++) {
+                List<Interval> opts = options.get(nts[i]);
+                Assert.assertSame(backend + " " + i, opts.get(choices[i]),
+                        decoder.decodeNext(nonTerminals.get(nts[i]), opts));
+            }
+        }
+    }
+
+    private byte[] encode(Backend backend, boolean bypass, int[] nts, int[] choices) throws Exception {
+        WordBitWriter out = new WordBitWriter();
+        ArithmeticCodingEngine engine = ArithmeticCodingFactory.createEncoder(backend, out);
+        if (bypass) engine = new BypassCodingEngine(engine);
+        for (int i = 0; i < nts.length; i++) {
+            List<Interval> opts = options.get(nts[i]);
+            engine.encodeNext(nonTerminals.get(nts[i]), opts, opts.get(choices[i]));
+        }
+        engine.finish();
+        return out.toByteArray();
+    }
+
+}
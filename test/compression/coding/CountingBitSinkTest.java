@@ -0,0 +1,76 @@
+package compression.coding;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.arithmaticCoding.nayukiAc.CountingBitSink;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.CodeLengthOracle;
+import compression.samplegrammars.model.RuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link CountingBitSink} and the size-only mode of {@link NayukiEncodeRunner}
+ * give the sizes of the actual output.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class CountingBitSinkTest {
+
+    RNAGrammar G = RoundTrips.grammar();
+
+    GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+    @Test
+    public void testCountsAsWordBitWriter() throws Exception {
+        Random random = new Random(42);
+        WordBitWriter writer = new WordBitWriter();
+        CountingBitSink counter = new CountingBitSink();
+        for (int i = 0; i < 10000; i++) {
+            int count = random.nextInt(65);
+            long value = random.nextLong();
+            switch (random.nextInt(3)) {
+                case 0:
+                    writer.write((int) value & 1);
+                    counter.write((int) value & 1);
+                    break;
+                case 1:
+                    writer.writeBits(value, count);
+                    counter.writeBits(value, count);
+                    break;
+                default:
+                    writer.writeRepeated((int) value & 1, count);
+                    counter.writeRepeated((int) value & 1, count);
+            }
+            Assert.assertEquals(writer.bitsWritten(), counter.bitsWritten());
+        }
+        Assert.assertEquals(writer.toByteArray().length, counter.bytesWritten());
+    }
+
+    @Test
+    public void testEncodedBitsMatchOutput() throws Exception {
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            List<Rule> derivation = encoder.leftmostDerivationFor(rna);
+
+            long bits = NayukiEncodeRunner.encodedBits(derivation, new AdaptiveRuleProbModel(G));
+            byte[] encoded = NayukiEncodeRunner.encode(encoder, rna, new AdaptiveRuleProbModel(G));
+            Assert.assertEquals(rna.name, encoded.length, (bits + 7) / 8);
+            // exact sizes differ from the estimate only by termination and rounding
+            double estimate = CodeLengthOracle.adaptiveBits(G, derivation);
+            Assert.assertEquals(rna.name, estimate, bits, 40 + 0.02 * estimate);
+
+            bits = NayukiEncodeRunner.encodedBits(derivation, AdaptiveRuleProbModel.withDyadicIntervals(G));
+            encoded = NayukiEncodeRunner.encode(encoder, rna, (RuleProbModel) AdaptiveRuleProbModel.withDyadicIntervals(G));
+            Assert.assertEquals(rna.name, encoded.length, (bits + 7) / 8);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package compression.coding;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.arithmaticCoding.bigDecimalAc.BigDecimalInterval;
+import compression.arithmaticCoding.bigDecimalAc.DyadicInterval;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.QuantisedFrequencyTables;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks {@link DyadicInterval} against {@link BigDecimalInterval}, and that models with dyadic
+ * intervals give the same Nayuki output as with BigDecimal intervals.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class DyadicIntervalTest {
+
+    RNAGrammar G = RoundTrips.grammar();
+
+    GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+    @Test
+    public void testExactBounds() {
+        DyadicInterval interval = new DyadicInterval(3, 5, 4);
+        Assert.assertEquals(0, new BigDecimal("0.1875").compareTo(interval.getLowerBound()));
+        Assert.assertEquals(0, new BigDecimal("0.3125").compareTo(interval.getLength()));
+        Assert.assertEquals(0, new BigDecimal("0.5").compareTo(interval.getUpperBound()));
+        Assert.assertEquals(Math.log(0.3125), interval.getLnLength(), 1e-12);
+        Assert.assertTrue(interval.contains(new BigDecimal("0.1875")));
+        Assert.assertFalse(interval.contains(new BigDecimal("0.5")));
+    }
+
+    @Test
+    public void testEqualsAcrossDenominators() {
+        DyadicInterval a = new DyadicInterval(2, 4, 3);
+        DyadicInterval b = new DyadicInterval(1L << 30, 1L << 31, 32);
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+        Assert.assertNotEquals(a, new DyadicInterval(2, 4, 4));
+        Assert.assertNotEquals(a, new DyadicInterval(2, 5, 3));
+    }
+
+    @Test
+    public void testOfCounts() {
+        DyadicInterval interval = DyadicInterval.ofCounts(1, 1, 3, 62);
+        Assert.assertEquals(((1L << 62) - 1) / 3, interval.getLow());
+        Assert.assertEquals(((1L << 62) - 1) / 3, interval.getLengthNumerator());
+        Assert.assertEquals(1L << 62, DyadicInterval.ofCounts(0, 7, 7, 62).getLengthNumerator());
+        Assert.assertEquals(0, DyadicInterval.ofCounts(7, 0, 7, 62).getLengthNumerator());
+    }
+
+    @Test
+    public void testSameQuantisationAsBigDecimal() {
+        Random random = new Random(42);
+        for (int test = 0; test < 1000; test++) {
+            int k = 1 + random.nextInt(20);
+            long[] counts = new long[k];
+            long total = 0;
+            for (int i = 0; i < k; i++) total += counts[i] = 1 + random.nextInt(random.nextBoolean() ? 10 : 100000);
+            List<Interval> dyadic = new ArrayList<>(), decimal = new ArrayList<>();
+            long cumulative = 0;
+            for (long c : counts) {
+                DyadicInterval interval = DyadicInterval.ofCounts(cumulative, c, total,
+                        DyadicInterval.DEFAULT_DENOMINATOR_BITS);
+                dyadic.add(interval);
+                decimal.add(new BigDecimalInterval(interval.getLowerBound(), interval.getLength()));
+                cumulative += c;
+            }
+            Assert.assertArrayEquals(Arrays.toString(counts), QuantisedFrequencyTables.quantise(decimal),
+                    QuantisedFrequencyTables.quantise(dyadic));
+        }
+    }
+
+    @Test
+    public void testSameNayukiOutputAsBigDecimal() throws Exception {
+        Map<Rule, Double> probs = RoundTrips.trainedRuleProbs(G);
+        RuleProbModel staticModel = new StaticRuleProbModel(G, probs);
+        RuleProbModel dyadicStaticModel = StaticRuleProbModel.withDyadicIntervals(G, probs);
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            Assert.assertArrayEquals(rna.name,
+                    NayukiEncodeRunner.encodeIntervals(encoder, rna, staticModel),
+                    NayukiEncodeRunner.encodeIntervals(encoder, rna, dyadicStaticModel));
+
+            byte[] encoded = RoundTrips.assertRoundTrip(null, rna,
+                    r -> NayukiEncodeRunner.encodeIntervals(encoder, r, AdaptiveRuleProbModel.withDyadicIntervals(G)),
+                    e -> NayukiDecodeRunner.decodeIntervals(e, AdaptiveRuleProbModel.withDyadicIntervals(G),
+                            G.startSymbol));
+            Assert.assertArrayEquals(rna.name,
+                    NayukiEncodeRunner.encodeIntervals(encoder, rna, new AdaptiveRuleProbModel(G)), encoded);
+        }
+    }
+
+}
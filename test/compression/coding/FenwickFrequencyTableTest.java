@@ -0,0 +1,96 @@
+package compression.coding;
+
+import compression.arithmaticCoding.nayukiAc.ArithmeticDecoderNayuki;
+import compression.arithmaticCoding.nayukiAc.ArithmeticEncoderNayuki;
+import compression.arithmaticCoding.nayukiAc.BitInputStream;
+import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.nayukiAc.FenwickFrequencyTable;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks {@link FenwickFrequencyTable} against {@link SimpleFrequencyTable}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class FenwickFrequencyTableTest {
+
+	@Test
+	public void testSameCumulativeFrequencies() {
+		Random random = new Random(42);
+		for (int k : new int[]{1, 2, 3, 7, 8, 9, 33}) {
+			int[] freqs = new int[k];
+			for (int i = 0; i < k; i++) freqs[i] = random.nextInt(4);
+			freqs[k - 1] += 1;
+			SimpleFrequencyTable expected = new SimpleFrequencyTable(freqs);
+			FenwickFrequencyTable actual = new FenwickFrequencyTable(freqs);
+			for (int step = 0; step < 200; step++) {
+				int symbol = random.nextInt(k);
+				if (random.nextInt(4) == 0) {
+					int freq = random.nextInt(10);
+					expected.set(symbol, freq);
+					actual.set(symbol, freq);
+				} else {
+					expected.increment(symbol);
+					actual.increment(symbol);
+				}
+				assertSameTable(expected, actual);
+			}
+		}
+	}
+
+	private static void assertSameTable(FrequencyTable expected, FrequencyTable actual) {
+		Assert.assertEquals(expected.getSymbolLimit(), actual.getSymbolLimit());
+		Assert.assertEquals(expected.getTotal(), actual.getTotal());
+		for (int s = 0; s < expected.getSymbolLimit(); s++) {
+			Assert.assertEquals(expected.get(s), actual.get(s));
+			Assert.assertEquals(expected.getLow(s), actual.getLow(s));
+			Assert.assertEquals(expected.getHigh(s), actual.getHigh(s));
+		}
+		for (int value = 0; value < expected.getTotal(); value++)
+			Assert.assertEquals(expected.findSymbol(value), actual.findSymbol(value));
+	}
+
+	@Test
+	public void testAdaptiveCodingSameOutput() throws Exception {
+		Random random = new Random(4711);
+		int k = 20;
+		int[] symbols = new int[2000];
+		for (int i = 0; i < symbols.length; i++) symbols[i] = Math.min(k - 1, (int) (-3 * Math.log(random.nextDouble())));
+		int[] ones = new int[k];
+		Arrays.fill(ones, 1);
+
+		byte[] simple = encodeAdaptively(new SimpleFrequencyTable(ones), symbols);
+		byte[] fenwick = encodeAdaptively(new FenwickFrequencyTable(ones), symbols);
+		Assert.assertArrayEquals(simple, fenwick);
+
+		FrequencyTable freqs = new FenwickFrequencyTable(ones);
+		ArithmeticDecoderNayuki dec = new ArithmeticDecoderNayuki(32,
+				new BitInputStream(new ByteArrayInputStream(fenwick)));
+		for (int symbol : symbols) {
+			Assert.assertEquals(symbol, dec.read(freqs));
+			freqs.increment(symbol);
+		}
+	}
+
+	private static byte[] encodeAdaptively(FrequencyTable freqs, int[] symbols) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		BitOutputStream bitOut = new BitOutputStream(bos);
+		ArithmeticEncoderNayuki enc = new ArithmeticEncoderNayuki(32, bitOut);
+		for (int symbol : symbols) {
+			enc.write(freqs, symbol);
+			freqs.increment(symbol);
+		}
+		enc.finish();
+		bitOut.close();
+		return bos.toByteArray();
+	}
+
+}
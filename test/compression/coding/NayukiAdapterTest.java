@@ -0,0 +1,72 @@
+package compression.coding;
+
+import compression.GenericRNAEncoder;
+import compression.arithmaticCoding.ArithmeticCodingEngine;
+import compression.arithmaticCoding.ArithmeticCodingFactory;
+import compression.arithmaticCoding.bigDecimalAc.ExactArithmeticEncoder;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.data.FolderBasedDataset;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.DowellGrammar4Bound;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Round trips through the Nayuki arithmetic coding adapters, whose quantised
+ * frequency tables are cached per nonterminal.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class NayukiAdapterTest {
+
+    RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+
+    RuleProbModel staticModel() throws Exception {
+        return new StaticRuleProbModel(G, RuleProbModel.computeRuleProbs(G,
+                new RuleCountsForGrammarLaPlace(G, new FolderBasedDataset("TestTrainingData")).ruleCounts()));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        RuleProbModel model = staticModel();
+        GenericRNAEncoder encoder = new GenericRNAEncoder(model, new ExactArithmeticEncoder(), G, G.startSymbol);
+        for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+            byte[] encoded = NayukiEncodeRunner.encodeIntervals(encoder, rna, model);
+            RNAWithStructure decoded = NayukiDecodeRunner.decodeIntervals(encoded, model, G.startSymbol);
+            // the grammars do not distinguish lower and upper case bases
+            Assert.assertEquals(rna.primaryStructure.toUpperCase(), decoded.primaryStructure);
+            Assert.assertEquals(rna.secondaryStructure, decoded.secondaryStructure);
+        }
+    }
+
+    @Test
+    public void testSameOutputWithoutNonTerminal() throws Exception {
+        RuleProbModel model = staticModel();
+        GenericRNAEncoder encoder = new GenericRNAEncoder(model, new ExactArithmeticEncoder(), G, G.startSymbol);
+        for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BitOutputStream bitOut = new BitOutputStream(bos);
+            ArithmeticCodingEngine engine = ArithmeticCodingFactory.createEncoder(
+                    ArithmeticCodingFactory.Backend.NAYUKI, bitOut);
+            for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+                List<Interval> options = model.getIntervalList(rule.left);
+                engine.encodeNext(options, model.getIntervalFor(rule));
+            }
+            engine.finish();
+            bitOut.close();
+            Assert.assertArrayEquals(rna.name, bos.toByteArray(), NayukiEncodeRunner.encodeIntervals(encoder, rna, model));
+        }
+    }
+
+}
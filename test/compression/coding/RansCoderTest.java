@@ -0,0 +1,107 @@
+package compression.coding;
+
+import compression.GenericRNAEncoder;
+import compression.arithmaticCoding.ArithmeticCodingFactory.Backend;
+import compression.arithmaticCoding.ans.RansDecoder;
+import compression.arithmaticCoding.ans.RansEncoder;
+import compression.arithmaticCoding.bigDecimalAc.ExactArithmeticEncoder;
+import compression.arithmaticCoding.nayukiAc.BitInputStream;
+import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.data.FolderBasedDataset;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.DowellGrammar4Bound;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Round trips through the interleaved rANS coder, directly and as a backend of the runners.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class RansCoderTest {
+
+    RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+
+    static FrequencyTable randomTable(Random random, int k) {
+        int[] freqs = new int[k];
+        int sum = 0;
+        for (int i = 0; i < k; i++) {
+            // skewed, with some tiny frequencies
+            freqs[i] = 1 + (random.nextBoolean() ? random.nextInt(4) : random.nextInt(RansEncoder.PROB_SCALE / k));
+            sum += freqs[i];
+        }
+        freqs[random.nextInt(k)] += RansEncoder.PROB_SCALE - sum;
+        return new SimpleFrequencyTable(freqs);
+    }
+
+    @Test
+    public void testRandomSymbols() throws Exception {
+        Random random = new Random(42);
+        for (int ways = 1; ways <= RansEncoder.MAX_WAYS; ways++) {
+            int n = 5000;
+            FrequencyTable[] tables = new FrequencyTable[n];
+            int[] symbols = new int[n];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BitOutputStream out = new BitOutputStream(bos);
+            RansEncoder encoder = new RansEncoder(ways, out);
+            for (int i = 0; i < n; i++) {
+                // a new table for every symbol, as with adaptive models
+                tables[i] = randomTable(random, 1 + random.nextInt(8));
+                do {
+                    symbols[i] = random.nextInt(tables[i].getSymbolLimit());
+                } while (random.nextInt(RansEncoder.PROB_SCALE) >= tables[i].get(symbols[i]));
+                encoder.write(tables[i], symbols[i]);
+            }
+            encoder.finish();
+            out.close();
+
+            RansDecoder decoder = new RansDecoder(ways, new BitInputStream(new ByteArrayInputStream(bos.toByteArray())));
+            for (int i = 0; i < n; i++) {
+                Assert.assertEquals("ways " + ways + ", symbol " + i, symbols[i], decoder.read(tables[i]));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOtherTotals() {
+        new RansEncoder(new BitOutputStream(new ByteArrayOutputStream()))
+                .write(new SimpleFrequencyTable(new int[]{1, 2, 3}), 0);
+    }
+
+    @Test
+    public void testRoundTripWithModels() throws Exception {
+        RuleProbModel staticModel = new StaticRuleProbModel(G, RuleProbModel.computeRuleProbs(G,
+                new RuleCountsForGrammarLaPlace(G, new FolderBasedDataset("TestTrainingData")).ruleCounts()));
+        GenericRNAEncoder encoder = new GenericRNAEncoder(staticModel, new ExactArithmeticEncoder(), G, G.startSymbol);
+        for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+            byte[] rans = NayukiEncodeRunner.encodeIntervals(encoder, rna, staticModel, Backend.RANS);
+            byte[] nayuki = NayukiEncodeRunner.encodeIntervals(encoder, rna, staticModel, Backend.NAYUKI);
+            // 8 bytes of final states for 2 ways, plus small losses from 15-bit frequencies
+            Assert.assertEquals(rna.name, nayuki.length, rans.length, 10 + 0.01 * nayuki.length);
+            check(rna, NayukiDecodeRunner.decodeIntervals(rans, staticModel, G.startSymbol, Backend.RANS));
+
+            byte[] adaptive = NayukiEncodeRunner.encodeIntervals(encoder, rna, new AdaptiveRuleProbModel(G), Backend.RANS);
+            check(rna, NayukiDecodeRunner.decodeIntervals(adaptive, new AdaptiveRuleProbModel(G), G.startSymbol,
+                    Backend.RANS));
+        }
+    }
+
+    private static void check(RNAWithStructure rna, RNAWithStructure decoded) {
+        Assert.assertEquals(rna.secondaryStructure, decoded.secondaryStructure);
+        Assert.assertEquals(rna.primaryStructure.toUpperCase(), decoded.primaryStructure);
+    }
+
+}
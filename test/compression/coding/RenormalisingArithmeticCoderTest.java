@@ -0,0 +1,123 @@
+package compression.coding;
+
+import compression.GenericRNADecoder;
+import compression.GenericRNAEncoder;
+import compression.arithmaticCoding.bigDecimalAc.BigDecimalInterval;
+import compression.arithmaticCoding.bigDecimalAc.ExactArithmeticEncoder;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.bigDecimalAc.RenormalisingArithmeticDecoder;
+import compression.arithmaticCoding.bigDecimalAc.RenormalisingArithmeticEncoder;
+import compression.arithmaticCoding.nayukiAc.BitInputStream;
+import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.data.FolderBasedDataset;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.DowellGrammar4Bound;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Checks {@link RenormalisingArithmeticEncoder} and {@link RenormalisingArithmeticDecoder}
+ * against {@link ExactArithmeticEncoder}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class RenormalisingArithmeticCoderTest {
+
+	/** partition of [0,1) into k intervals with decimal endpoints of the given scale */
+	private static List<Interval> randomPartition(Random random, int k, int scale) {
+		BigDecimal unit = BigDecimal.ONE.movePointLeft(scale);
+		long total = (long) Math.pow(10, scale);
+		List<Long> cuts = new ArrayList<>();
+		for (int i = 0; i < k - 1; i++) cuts.add(1 + (long) (random.nextDouble() * (total - 2)));
+		cuts.add(0L);
+		cuts.add(total);
+		cuts.sort(null);
+		List<Interval> intervals = new ArrayList<>();
+		for (int i = 0; i < k; i++) {
+			if (cuts.get(i + 1).equals(cuts.get(i))) continue;
+			intervals.add(new BigDecimalInterval(unit.multiply(BigDecimal.valueOf(cuts.get(i))),
+					unit.multiply(BigDecimal.valueOf(cuts.get(i + 1) - cuts.get(i)))));
+		}
+		return intervals;
+	}
+
+	@Test
+	public void testRandomSymbols() throws Exception {
+		Random random = new Random(2024);
+		for (int precisionBits : new int[]{48, 96}) {
+			for (int run = 0; run < 20; run++) {
+				List<Interval> options = randomPartition(random, 2 + random.nextInt(6), 10);
+				List<Interval> message = new ArrayList<>();
+				for (int i = 0; i < 200; i++) message.add(options.get(random.nextInt(options.size())));
+
+				ExactArithmeticEncoder exact = new ExactArithmeticEncoder();
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				BitOutputStream bitOut = new BitOutputStream(bos);
+				RenormalisingArithmeticEncoder encoder = new RenormalisingArithmeticEncoder(bitOut, precisionBits);
+				for (Interval interval : message) {
+					exact.encodeNext(interval);
+					encoder.encodeNext(interval);
+				}
+				encoder.finish();
+				bitOut.close();
+				Assert.assertEquals(exact.getFinalPrecision(), encoder.getFinalPrecision(), 1);
+
+				RenormalisingArithmeticDecoder decoder = new RenormalisingArithmeticDecoder(
+						new BitInputStream(new ByteArrayInputStream(bos.toByteArray())), precisionBits);
+				for (Interval interval : message) Assert.assertSame(interval, decoder.decodeNext(options));
+
+				// the same code through the word-based sink and source
+				WordBitWriter wordOut = new WordBitWriter();
+				RenormalisingArithmeticEncoder wordEncoder = new RenormalisingArithmeticEncoder(wordOut, precisionBits);
+				for (Interval interval : message) wordEncoder.encodeNext(interval);
+				wordEncoder.finish();
+				Assert.assertEquals(encoder.getFinalPrecision(), wordOut.bitsWritten());
+				Assert.assertArrayEquals(bos.toByteArray(), wordOut.toByteArray());
+				decoder = new RenormalisingArithmeticDecoder(new WordBitReader(wordOut.toByteArray()), precisionBits);
+				for (Interval interval : message) Assert.assertSame(interval, decoder.decodeNext(options));
+			}
+		}
+	}
+
+	@Test
+	public void testRNAs() throws Exception {
+		RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+		Map<Rule, Double> ruleProbs = RuleProbModel.computeRuleProbs(G,
+				new RuleCountsForGrammarLaPlace(G, new FolderBasedDataset("TestTrainingData")).ruleCounts());
+		List<Supplier<RuleProbModel>> models = List.of(
+				() -> new StaticRuleProbModel(G, ruleProbs),
+				() -> new AdaptiveRuleProbModel(G));
+		for (Supplier<RuleProbModel> model : models) {
+			for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+				int exactLength = new GenericRNAEncoder(model.get(), new ExactArithmeticEncoder(), G, G.startSymbol)
+						.encodeRNA(rna).length();
+				String encoded = new GenericRNAEncoder(model.get(), new RenormalisingArithmeticEncoder(), G, G.startSymbol)
+						.encodeRNA(rna);
+				Assert.assertEquals(rna.name, exactLength, encoded.length(), 1);
+
+				RNAWithStructure decoded = new GenericRNADecoder(model.get(),
+						new RenormalisingArithmeticDecoder(encoded), G.startSymbol).decode();
+				Assert.assertEquals(rna.secondaryStructure, decoded.secondaryStructure);
+				Assert.assertEquals(rna.primaryStructure.toUpperCase(), decoded.primaryStructure);
+			}
+		}
+	}
+
+}
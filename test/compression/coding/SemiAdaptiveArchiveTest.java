@@ -0,0 +1,74 @@
+package compression.coding;
+
+import compression.Compressions;
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.RuleProbType;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import compression.benchmark.SemiAdaptiveArchive;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.RuleProbsForGrammarSemiAdaptive;
+import compression.samplegrammars.model.CodeLengthOracle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Round trips through {@link SemiAdaptiveArchive}, and through its rule counts header alone.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class SemiAdaptiveArchiveTest {
+
+    RNAGrammar G = RoundTrips.grammar();
+
+    GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+    @Test
+    public void testHeaderRoundTrip() throws Exception {
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            List<Rule> derivation = encoder.leftmostDerivationFor(rna);
+            Map<Rule, Long> counts = new RuleProbsForGrammarSemiAdaptive(G, derivation).ruleCounts();
+            WordBitWriter out = new WordBitWriter();
+            long bits = SemiAdaptiveArchive.writeHeader(G, counts, out);
+            Assert.assertEquals(bits, out.bitsWritten());
+            Assert.assertEquals(bits, SemiAdaptiveArchive.headerBits(G, derivation));
+
+            Map<Rule, Long> read = SemiAdaptiveArchive.readHeader(G, new WordBitReader(out.toByteArray()));
+            for (Rule rule : G.getAllRules())
+                if (G.getRules(rule.getLeft()).size() > 1) Assert.assertEquals(counts.get(rule), read.get(rule));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            byte[] encoded = RoundTrips.assertRoundTrip(null, rna,
+                    r -> SemiAdaptiveArchive.encode(encoder, r, G), e -> SemiAdaptiveArchive.decode(e, G));
+
+            // the derivation is coded with the exact counts, so at about the ideal code length
+            List<Rule> derivation = encoder.leftmostDerivationFor(rna);
+            double payloadBits = CodeLengthOracle.semiAdaptiveBits(G, derivation);
+            long headerBits = SemiAdaptiveArchive.headerBits(G, derivation);
+            Assert.assertTrue(rna.name, 8 * encoded.length <= headerBits + payloadBits + 2 + 8 + 32);
+        }
+    }
+
+    @Test
+    public void testHeaderLengthsOfCompressions() throws Exception {
+        Map<RNAWithStructure, Integer> headerLengths = Collections.synchronizedMap(new HashMap<>());
+        Compressions.getEncodedLengthsParallel(RoundTrips.testRNAs(), G, RuleProbType.SEMI_ADAPTIVE, null,
+                headerLengths);
+        for (RNAWithStructure rna : RoundTrips.testRNAs())
+            Assert.assertEquals(rna.name, SemiAdaptiveArchive.headerBits(G, encoder.leftmostDerivationFor(rna)),
+                    (long) headerLengths.get(rna));
+    }
+
+}
@@ -0,0 +1,84 @@
+package compression.coding;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.benchmark.SubstreamArchive;
+import compression.grammar.Category;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the subtrees cut by {@link SubstreamArchive}, and round trips through it,
+ * with sequential and parallel decoding, also with one static model shared by all streams.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class SubstreamArchiveTest {
+
+    RNAGrammar G = RoundTrips.grammar();
+
+    GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+    @Test
+    public void testSubstreamStarts() {
+        int substreams = 0;
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            List<Rule> derivation = encoder.leftmostDerivationFor(rna);
+            int parts = 4, minRules = 8;
+            int[] starts = SubstreamArchive.substreamStarts(derivation, parts, minRules);
+            substreams += starts.length;
+            int end = 0;
+            for (int start : starts) {
+                Assert.assertTrue(start >= end);
+                // a subtree derives a substring, so its rules balance: one nonterminal left at its start
+                int open = 1;
+                int i = start;
+                while (open > 0) {
+                    for (Category c : derivation.get(i).getRight())
+                        if (Category.isNonTerminal(c)) open++;
+                    open--;
+                    i++;
+                }
+                end = i;
+                Assert.assertTrue(end - start >= minRules);
+                Assert.assertTrue(end - start <= derivation.size() / parts);
+            }
+            Assert.assertEquals(0, SubstreamArchive.substreamStarts(derivation, 1, minRules).length);
+        }
+        Assert.assertTrue(substreams > 0);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (int parts : new int[] {1, 2, 4, 16}) {
+            for (boolean parallel : new boolean[] {false, true}) {
+                RoundTrips.assertRoundTrips(parts + " parts" + (parallel ? ", parallel" : ""),
+                        rna -> SubstreamArchive.encode(encoder, rna, G, () -> new AdaptiveRuleProbModel(G),
+                                parts, 4),
+                        encoded -> SubstreamArchive.decode(encoded, G, () -> new AdaptiveRuleProbModel(G),
+                                parallel));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelDecodeWithSharedStaticModel() throws Exception {
+        Map<Rule, Double> probs = RoundTrips.trainedRuleProbs(G);
+        StaticRuleProbModel encodingModel = new StaticRuleProbModel(G, probs);
+        for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+            byte[] encoded = SubstreamArchive.encode(encoder, rna, G, () -> encodingModel, 16, 4);
+            // a model no stream has used yet, shared by all streams decoded at the same time
+            StaticRuleProbModel decodingModel = new StaticRuleProbModel(G, probs);
+            RoundTrips.assertDecoded("parallel", rna, SubstreamArchive.decode(encoded, G, () -> decodingModel, true));
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package compression.coding;
+
+import compression.GenericRNAEncoder;
+import compression.arithmaticCoding.ans.TansDecoder;
+import compression.arithmaticCoding.ans.TansEncoder;
+import compression.arithmaticCoding.ans.TansTable;
+import compression.arithmaticCoding.ans.TansTables;
+import compression.arithmaticCoding.bigDecimalAc.ExactArithmeticEncoder;
+import compression.arithmaticCoding.nayukiAc.BitInputStream;
+import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.nayukiAc.SimpleFrequencyTable;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.data.FolderBasedDataset;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.samplegrammars.DowellGrammar4Bound;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Round trips through the tANS coder, directly and with the precompiled tables of a static model.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class TansCoderTest {
+
+    RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+
+    @Test
+    public void testNormalisedFrequencies() {
+        TansTable table = new TansTable(new SimpleFrequencyTable(new int[]{1, 1000000, 3, 0, 500}), 10);
+        int sum = 0;
+        for (int s = 0; s < table.getSymbolLimit(); s++) sum += table.get(s);
+        Assert.assertEquals(1 << 10, sum);
+        Assert.assertEquals(1, table.get(0));
+        Assert.assertEquals(0, table.get(3));
+    }
+
+    @Test
+    public void testRandomSymbols() throws Exception {
+        Random random = new Random(42);
+        for (int tableLog = 5; tableLog <= 12; tableLog++) {
+            TansTable[] tables = new TansTable[10];
+            for (int t = 0; t < tables.length; t++) {
+                int[] freqs = new int[1 + random.nextInt(Math.min(20, 1 << tableLog))];
+                for (int s = 0; s < freqs.length; s++) freqs[s] = 1 + random.nextInt(random.nextBoolean() ? 3 : 1000);
+                tables[t] = new TansTable(new SimpleFrequencyTable(freqs), tableLog);
+            }
+            int n = 3000;
+            int[] tableOf = new int[n], symbols = new int[n];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BitOutputStream out = new BitOutputStream(bos);
+            TansEncoder encoder = new TansEncoder(tableLog, out);
+            for (int i = 0; i < n; i++) {
+                tableOf[i] = random.nextInt(tables.length);
+                symbols[i] = random.nextInt(tables[tableOf[i]].getSymbolLimit());
+                encoder.write(tables[tableOf[i]], symbols[i]);
+            }
+            encoder.finish();
+            out.close();
+
+            TansDecoder decoder = new TansDecoder(tableLog, new BitInputStream(new ByteArrayInputStream(bos.toByteArray())));
+            for (int i = 0; i < n; i++)
+                Assert.assertEquals("tableLog " + tableLog + ", symbol " + i, symbols[i], decoder.read(tables[tableOf[i]]));
+        }
+    }
+
+    @Test
+    public void testRoundTripWithStaticModel() throws Exception {
+        StaticRuleProbModel model = new StaticRuleProbModel(G, RuleProbModel.computeRuleProbs(G,
+                new RuleCountsForGrammarLaPlace(G, new FolderBasedDataset("TestTrainingData")).ruleCounts()));
+        TansTables tables = new TansTables(model);
+        GenericRNAEncoder encoder = new GenericRNAEncoder(model, new ExactArithmeticEncoder(), G, G.startSymbol);
+        for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+            byte[] tans = NayukiEncodeRunner.encodeTans(encoder, rna, tables);
+            byte[] nayuki = NayukiEncodeRunner.encode(encoder, rna, model);
+            Assert.assertEquals(rna.name, nayuki.length, tans.length, 4 + 0.02 * nayuki.length);
+            RNAWithStructure decoded = NayukiDecodeRunner.decodeTans(tans, tables, G.startSymbol);
+            Assert.assertEquals(rna.secondaryStructure, decoded.secondaryStructure);
+            Assert.assertEquals(rna.primaryStructure.toUpperCase(), decoded.primaryStructure);
+        }
+    }
+
+}
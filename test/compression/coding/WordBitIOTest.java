@@ -0,0 +1,102 @@
+package compression.coding;
+
+import compression.arithmaticCoding.nayukiAc.BitInputStream;
+import compression.arithmaticCoding.nayukiAc.BitOutputStream;
+import compression.arithmaticCoding.nayukiAc.BitSink;
+import compression.arithmaticCoding.nayukiAc.WordBitReader;
+import compression.arithmaticCoding.nayukiAc.WordBitWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Checks that {@link WordBitWriter} and {@link WordBitReader} agree with the bit streams.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class WordBitIOTest {
+
+    /** Applies the same random mix of single, bulk and repeated writes to both sinks */
+    private static void randomWrites(long seed, int n, BitSink... sinks) throws Exception {
+        Random random = new Random(seed);
+        for (int i = 0; i < n; i++) {
+            int op = random.nextInt(3);
+            int count = random.nextInt(65);
+            long value = random.nextLong();
+            int bit = random.nextInt(2);
+            for (BitSink sink : sinks) {
+                if (op == 0) sink.write(bit);
+                else if (op == 1) sink.writeBits(value, count);
+                else sink.writeRepeated(bit, 3L * count);
+            }
+        }
+    }
+
+    @Test
+    public void testSameBytesAsBitOutputStream() throws Exception {
+        for (int n = 0; n < 200; n += 7) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BitOutputStream stream = new BitOutputStream(bos);
+            WordBitWriter words = new WordBitWriter(8);
+            randomWrites(n, n, stream, words);
+            stream.close();
+            Assert.assertArrayEquals(bos.toByteArray(), words.toByteArray());
+        }
+    }
+
+    @Test
+    public void testReadsLikeBitInputStream() throws Exception {
+        byte[] bytes = new byte[101];
+        new Random(1).nextBytes(bytes);
+        Random random = new Random(2);
+        BitInputStream stream = new BitInputStream(new ByteArrayInputStream(bytes));
+        WordBitReader words = new WordBitReader(bytes);
+        for (int i = 0; i < 100; i++) {
+            if (random.nextBoolean()) {
+                Assert.assertEquals(stream.read(), words.read());
+            } else {
+                int count = random.nextInt(65);
+                Assert.assertEquals(stream.readBits(count), words.readBits(count));
+            }
+        }
+        // beyond the end
+        while (stream.read() != -1) words.read();
+        Assert.assertEquals(-1, words.read());
+        Assert.assertEquals(0, words.readBits(64));
+    }
+
+    @Test
+    public void testByteBufferTarget() {
+        ByteBuffer target = ByteBuffer.allocate(16);
+        target.put((byte) 0x7F);
+        WordBitWriter writer = new WordBitWriter(target);
+        writer.writeBits(0xABCDEF, 24);
+        writer.write(1);
+        writer.close();
+        Assert.assertEquals(5, target.position());
+        Assert.assertEquals((byte) 0x80, target.get(4));
+        target.flip();
+        target.get();
+        Assert.assertEquals(0xABCDEF, new WordBitReader(target).readBits(24));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testByteBufferTargetTooSmall() {
+        WordBitWriter writer = new WordBitWriter(ByteBuffer.allocate(4));
+        writer.writeBits(-1L, 64);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterClose() {
+        WordBitWriter writer = new WordBitWriter();
+        writer.writeBits(5, 3);
+        Assert.assertArrayEquals(new byte[] {(byte) 0xA0}, writer.toByteArray());
+        writer.write(1);
+    }
+
+}
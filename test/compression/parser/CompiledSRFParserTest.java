@@ -0,0 +1,219 @@
+package compression.parser;
+
+import compression.data.FolderBasedDataset;
+import compression.grammar.*;
+import compression.grammargenerator.UnparsableException;
+import compression.samplegrammars.DowellGrammar4Bound;
+import compression.samplegrammars.RuleCountsForGrammarLaPlace;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that {@link CompiledSRFParser} computes exactly the derivations of {@link SRFParser}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class CompiledSRFParserTest {
+
+	NonTerminal A0 = new NonTerminal("A0");
+	NonTerminal A1 = new NonTerminal("A1");
+	NonTerminal A2 = new NonTerminal("A2");
+	NonTerminal A3 = new NonTerminal("A3");
+	NonTerminal A4 = new NonTerminal("A4");
+
+	CharTerminal OP = new CharTerminal('(');
+	CharTerminal CL = new CharTerminal(')');
+	CharTerminal DT = new CharTerminal('.');
+
+	Grammar<Character> simpleGrammar = new Grammar.Builder<Character>("simpleGrammar", A0)
+			.addRule(A0, DT)
+			.addRule(A0, A0, A0)
+			.addRule(A0, OP, A4, CL)
+			.addRule(A1, DT)
+			.addRule(A2, OP, A4, CL)
+			.addRule(A3, DT)
+			.addRule(A3, A1, A3)
+			.addRule(A3, A2, A3)
+			.addRule(A4, OP, A4, CL)
+			.addRule(A4, A3)
+			.build();
+
+	@Test
+	public void testSimpleGrammar() throws UnparsableException {
+		SRFParser<Character> expected = new SRFParser<>(simpleGrammar);
+		CompiledSRFParser<Character> actual = new CompiledSRFParser<>(simpleGrammar);
+		List<Terminal<Character>> word = new ArrayList<>(Arrays.asList(DT, OP, DT, CL));
+		Assert.assertEquals("[A0 → A0 A0, A0 → ., A0 → ( A4 ), A4 → A3, A3 → .]",
+				actual.mostLikelyLeftmostDerivationFor(word).toString());
+		List<Terminal<Character>> word2 = new ArrayList<>(Arrays.asList(DT, OP, OP, DT, CL, CL, DT,
+				OP, DT, OP, DT, CL, DT, CL));
+		Assert.assertEquals(expected.mostLikelyLeftmostDerivationFor(word2), actual.mostLikelyLeftmostDerivationFor(word2));
+		Assert.assertEquals(expected.logProbabilityOf(word2), actual.logProbabilityOf(word2), 1e-9);
+	}
+
+	@Test
+	public void testParsable() {
+		SRFParser<Character> expected = new SRFParser<>(simpleGrammar);
+		CompiledSRFParser<Character> actual = new CompiledSRFParser<>(simpleGrammar);
+		for (List<Terminal<Character>> word : List.<List<Terminal<Character>>>of(
+				List.of(OP, DT, CL), List.of(OP, CL), List.of(DT, DT, CL), List.of(OP, OP, DT, CL, CL, DT))) {
+			Assert.assertEquals(expected.parsable(word), actual.parsable(word));
+		}
+		Assert.assertFalse(actual.parsable(List.of()));
+	}
+
+	@Test
+	public void testTerminalsThatPrintTheSame() {
+		// both terminals print as <a|.>, but they are not equal
+		PairOfCharTerminal pair = new PairOfChar('a', '.').asTerminal();
+		IgnoringSecondPartPairOfCharTerminal ignoring = new IgnoringSecondPartPairOfChar('a', '.').asTerminal();
+		Assert.assertEquals(pair.toString(), ignoring.toString());
+		Grammar<PairOfChar> pairGrammar = new Grammar.Builder<PairOfChar>("pairs", A0)
+				.addRule(A0, pair)
+				.build();
+		Grammar<IgnoringSecondPartPairOfChar> ignoringGrammar =
+				new Grammar.Builder<IgnoringSecondPartPairOfChar>("ignoring", A0)
+						.addRule(A0, ignoring)
+						.build();
+		Assert.assertTrue(new CompiledSRFParser<>(pairGrammar).parsable(List.of(pair)));
+		Assert.assertTrue(new CompiledSRFParser<>(ignoringGrammar).parsable(List.of(ignoring)));
+	}
+
+	@Test
+	public void testSameDerivationsOnRNAs() throws Exception {
+		RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+		Map<Rule, Double> ruleProbs = RuleProbModel.computeRuleProbs(G,
+				new RuleCountsForGrammarLaPlace(G, new FolderBasedDataset("TestTrainingData")).ruleCounts());
+		RuleProbModel staticModel = new StaticRuleProbModel(G, ruleProbs);
+		for (RuleProbModel model : List.of(RuleProbModel.DONT_CARE, staticModel)) {
+			SRFParser<PairOfChar> expected = new SRFParser<>(G, model);
+			CompiledSRFParser<PairOfChar> actual = new CompiledSRFParser<>(G, model);
+			for (RNAWithStructure rna : new FolderBasedDataset("minimal-parsable")) {
+				List<Terminal<PairOfChar>> word = rna.asTerminals();
+				Assert.assertEquals(expected.mostLikelyLeftmostDerivationFor(word), actual.mostLikelyLeftmostDerivationFor(word));
+				Assert.assertEquals(expected.logProbabilityOf(word), actual.logProbabilityOf(word), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testReducedPrecisionScoreModes() throws Exception {
+		RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+		Map<Rule, Double> ruleProbs = RuleProbModel.computeRuleProbs(G,
+				new RuleCountsForGrammarLaPlace(G, new FolderBasedDataset("TestTrainingData")).ruleCounts());
+		RuleProbModel staticModel = new StaticRuleProbModel(G, ruleProbs);
+		CompiledSRFParser<PairOfChar> expected = new CompiledSRFParser<>(G, staticModel);
+		for (CompiledSRFParser.ScoreMode mode : CompiledSRFParser.ScoreMode.values()) {
+			CompiledSRFParser<PairOfChar> actual = new CompiledSRFParser<>(G, staticModel, mode);
+			for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+				List<Terminal<PairOfChar>> word = rna.asTerminals();
+				Assert.assertEquals(mode.toString(), expected.mostLikelyLeftmostDerivationFor(word),
+						actual.mostLikelyLeftmostDerivationFor(word));
+				double lnP = expected.logProbabilityOf(word);
+				Assert.assertEquals(mode.toString(), lnP, actual.logProbabilityOf(word), 1e-3 * Math.abs(lnP));
+			}
+		}
+	}
+
+	@Test
+	public void testZeroProbabilityRules() throws Exception {
+		NonTerminal S = new NonTerminal("S"), X = new NonTerminal("X"), Y = new NonTerminal("Y");
+		Grammar<Character> grammar = new Grammar.Builder<Character>("zeroProbabilities", S)
+				.addRule(S, X, X)
+				.addRule(S, Y, Y)
+				.addRule(X, DT)
+				.addRule(Y, DT)
+				.build();
+		Map<Rule, Double> probs = new HashMap<>();
+		for (Rule rule : grammar.getAllRules())
+			probs.put(rule, rule.getLeft().equals(S) ? 0.5 : rule.getLeft().equals(X) ? Double.NaN : 1.0);
+		// the rule of X has no interval, i.e., probability 0
+		RuleProbModel model = new StaticRuleProbModel(grammar, probs);
+		List<Terminal<Character>> word = List.of(DT, DT);
+		for (CompiledSRFParser.ScoreMode mode : CompiledSRFParser.ScoreMode.values()) {
+			CompiledSRFParser<Character> parser = new CompiledSRFParser<>(grammar, model, mode);
+			Assert.assertEquals(mode.toString(), "[S → Y Y, Y → ., Y → .]",
+					parser.mostLikelyLeftmostDerivationFor(word).toString());
+			Assert.assertEquals(mode.toString(), Math.log(0.5), parser.logProbabilityOf(word), 1e-3);
+		}
+	}
+
+	@Test
+	public void testMaxSpan() throws Exception {
+		RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+		Map<Rule, Double> ruleProbs = RuleProbModel.computeRuleProbs(G,
+				new RuleCountsForGrammarLaPlace(G, new FolderBasedDataset("TestTrainingData")).ruleCounts());
+		RuleProbModel staticModel = new StaticRuleProbModel(G, ruleProbs);
+		CompiledSRFParser<PairOfChar> unbounded = new CompiledSRFParser<>(G, staticModel);
+		for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+			List<Terminal<PairOfChar>> word = rna.asTerminals();
+			int n = word.size();
+			// band covering the whole word: same as without band
+			CompiledSRFParser<PairOfChar> wide = new CompiledSRFParser<>(G, staticModel,
+					CompiledSRFParser.ScoreMode.DOUBLE, n);
+			Assert.assertEquals(unbounded.mostLikelyLeftmostDerivationFor(word), wide.mostLikelyLeftmostDerivationFor(word));
+			// band just wide enough for all pairs: derivation must still be consistent
+			CompiledSRFParser<PairOfChar> banded = new CompiledSRFParser<>(G, staticModel,
+					CompiledSRFParser.ScoreMode.DOUBLE, maxPairSpan(rna.secondaryStructure));
+			Assert.assertTrue(rna.name, banded.parsable(word));
+			List<Rule> derivation = banded.mostLikelyLeftmostDerivationFor(word);
+			double lnP = 0;
+			for (Rule rule : derivation) lnP += staticModel.getIntervalFor(rule).getLnLength();
+			Assert.assertEquals(lnP, banded.logProbabilityOf(word), 1e-6);
+			Assert.assertTrue(banded.logProbabilityOf(word) <= unbounded.logProbabilityOf(word) + 1e-9);
+		}
+	}
+
+	private static int maxPairSpan(String dotBracket) {
+		int max = 1;
+		Deque<Integer> open = new ArrayDeque<>();
+		for (int i = 0; i < dotBracket.length(); i++) {
+			char c = dotBracket.charAt(i);
+			if (c == '(') open.push(i);
+			else if (c == ')') max = Math.max(max, i - open.pop() + 1);
+		}
+		return max;
+	}
+
+	@Test
+	public void testBatchParsing() throws Exception {
+		RNAGrammar G = new DowellGrammar4Bound(true).getGrammar();
+		CompiledSRFParser<PairOfChar> single = new CompiledSRFParser<>(G);
+		CompiledSRFParser<PairOfChar> batch = new CompiledSRFParser<>(G);
+		List<List<Terminal<PairOfChar>>> words = new ArrayList<>();
+		for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) words.add(rna.asTerminals());
+		for (RNAWithStructure rna : new FolderBasedDataset("minimal-parsable")) words.add(rna.asTerminals());
+		List<List<Rule>> derivations = batch.leftmostDerivationsFor(words);
+		Assert.assertEquals(words.size(), derivations.size());
+		for (int i = 0; i < words.size(); i++)
+			Assert.assertEquals(single.leftmostDerivationFor(words.get(i)), derivations.get(i));
+		Assert.assertTrue(batch.parsableAll(words));
+
+		CompiledSRFParser<Character> simple = new CompiledSRFParser<>(simpleGrammar);
+		Assert.assertTrue(simple.parsableAll(List.of(List.of(DT), List.of(OP, DT, CL))));
+		Assert.assertFalse(simple.parsableAll(List.of(List.of(DT), List.of(OP, CL), List.of(OP, DT, CL))));
+		try {
+			simple.leftmostDerivationsFor(List.of(List.of(DT), List.of(OP, CL)));
+			Assert.fail("expected UnparsableException");
+		} catch (UnparsableException expected) {
+			Assert.assertEquals("Word 1 is not parsable", expected.getMessage());
+		}
+	}
+
+	@Test
+	public void testCompiledGrammarIsCached() {
+		Assert.assertSame(CompiledSRFGrammar.of(simpleGrammar),
+				new CompiledSRFParser<>(simpleGrammar).getCompiledGrammar());
+	}
+
+}
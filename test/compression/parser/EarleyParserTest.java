@@ -0,0 +1,184 @@
+package compression.parser;
+
+import compression.data.FolderBasedDataset;
+import compression.grammar.*;
+import compression.grammargenerator.UnparsableException;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that {@link EarleyParser} on a grammar with long right-hand sides finds the same
+ * derivations as {@link SRFParser} on the grammar converted to SRF normal form.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class EarleyParserTest {
+
+	NonTerminal S = new NonTerminal("S");
+	NonTerminal L = new NonTerminal("L");
+	NonTerminal A = new NonTerminal("A");
+	NonTerminal B = new NonTerminal("B");
+
+	CharTerminal OP = new CharTerminal('(');
+	CharTerminal CL = new CharTerminal(')');
+	CharTerminal DT = new CharTerminal('.');
+
+	Rule rSL = new Rule(S, L);
+	Rule rSLS = new Rule(S, L, S);
+	Rule rSLLS = new Rule(S, L, L, S);
+	Rule rSLLLL = new Rule(S, L, L, L, L);
+	Rule rLA = new Rule(L, A);
+	Rule rLB = new Rule(L, B);
+	Rule rAu = new Rule(A, DT);
+	Rule rBoSc = new Rule(B, OP, S, CL);
+
+	Map<Rule, Double> ruleProbs = Map.of(
+			rSL, 0.2, rSLS, 0.45, rSLLS, 0.3, rSLLLL, 0.05,
+			rLA, 0.6, rLB, 0.4,
+			rAu, 1.0,
+			rBoSc, 1.0);
+
+	SecondaryStructureGrammar G = SecondaryStructureGrammar.fromCheap(
+			new Grammar.Builder<Character>("long-rhs", S).addRules(ruleProbs.keySet()).build());
+
+	@Test
+	public void testSmallWord() throws UnparsableException {
+		EarleyParser<Character> parser = new EarleyParser<>(G, new StaticRuleProbModel(G, ruleProbs));
+		List<Terminal<Character>> word = List.of(DT, OP, DT, CL);
+		Assert.assertTrue(parser.parsable(word));
+		Assert.assertFalse(parser.parsable(List.of(DT, OP, CL)));
+		Assert.assertFalse(parser.parsable(List.of()));
+		Assert.assertEquals(List.of(rSLS, rLA, rAu, rSL, rLB, rBoSc, rSL, rLA, rAu),
+				parser.mostLikelyLeftmostDerivationFor(word));
+		Assert.assertEquals(Math.log(0.45 * 0.6 * 0.2 * 0.4 * 0.2 * 0.6),
+				parser.logProbabilityOf(word), 1e-9);
+	}
+
+	@Test
+	public void testSameProbabilitiesAsSRFParser() throws Exception {
+		// G is ambiguous, so equally likely derivations may be chosen differently
+		SRFParser<Character> srf = srfParserFor(G, ruleProbs);
+		EarleyParser<Character> earley = new EarleyParser<>(G, new StaticRuleProbModel(G, ruleProbs));
+		for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+			List<Terminal<Character>> word = dotBracket(rna);
+			double lnP = earley.logProbabilityOf(word);
+			Assert.assertEquals(srf.logProbabilityOf(word), lnP, 1e-6);
+			List<Rule> derivation = earley.mostLikelyLeftmostDerivationFor(word);
+			Assert.assertEquals(word, derivedWord(derivation));
+			double derivationLnP = 0;
+			for (Rule rule : derivation) derivationLnP += Math.log(ruleProbs.get(rule));
+			Assert.assertEquals(lnP, derivationLnP, 1e-6);
+		}
+	}
+
+	@Test
+	public void testSameDerivationsAsSRFParser() throws Exception {
+		NonTerminal K = new NonTerminal("K");
+		NonTerminal O = new NonTerminal("O");
+		NonTerminal C = new NonTerminal("C");
+		Map<Rule, Double> probs = Map.of(
+				rSL, 0.3, rSLS, 0.7,
+				rLA, 0.6, new Rule(L, K), 0.4,
+				rAu, 1.0,
+				new Rule(K, O, S, C), 1.0,
+				new Rule(O, OP), 1.0,
+				new Rule(C, CL), 1.0);
+		// unambiguous, with a long right-hand side for K
+		SecondaryStructureGrammar unambiguous = SecondaryStructureGrammar.fromCheap(
+				new Grammar.Builder<Character>("unambiguous", S).addRules(probs.keySet()).build());
+		SRFParser<Character> srf = srfParserFor(unambiguous, probs);
+		EarleyParser<Character> earley = new EarleyParser<>(unambiguous, new StaticRuleProbModel(unambiguous, probs));
+		for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+			List<Terminal<Character>> word = dotBracket(rna);
+			Assert.assertEquals(srf.logProbabilityOf(word), earley.logProbabilityOf(word), 1e-6);
+			Assert.assertEquals(collapseAuxiliaryRules(unambiguous, srf.mostLikelyLeftmostDerivationFor(word)),
+					earley.mostLikelyLeftmostDerivationFor(word));
+		}
+	}
+
+	private static List<Terminal<Character>> dotBracket(RNAWithStructure rna) {
+		List<Terminal<Character>> word = new ArrayList<>();
+		for (char c : rna.secondaryStructure.toCharArray()) word.add(new CharTerminal(c));
+		return word;
+	}
+
+	/** SRFParser for the SRF normal form of grammar, with the probability of a long rule on its first part */
+	private static SRFParser<Character> srfParserFor(SecondaryStructureGrammar grammar, Map<Rule, Double> ruleProbs) {
+		SecondaryStructureGrammar srfG = grammar.convertToSRF();
+		Map<Rule, Double> srfRuleProbs = new HashMap<>();
+		for (Rule rule : srfG.getAllRules()) {
+			if (ruleProbs.containsKey(rule)) srfRuleProbs.put(rule, ruleProbs.get(rule));
+			else if (isAuxiliary(grammar, rule.left)) srfRuleProbs.put(rule, 1.0);
+			else srfRuleProbs.put(rule, ruleProbs.get(originalRuleStartingWith(grammar, rule)));
+		}
+		return new SRFParser<>(srfG, new StaticRuleProbModel(srfG, srfRuleProbs));
+	}
+
+	/** the word derived by the given leftmost derivation */
+	private List<Terminal<Character>> derivedWord(List<Rule> derivation) {
+		List<Category> sententialForm = new ArrayList<>(List.of(S));
+		int leftmost = 0;
+		for (Rule rule : derivation) {
+			while (Category.isTerminal(sententialForm.get(leftmost))) ++leftmost;
+			Assert.assertEquals(rule.left, sententialForm.get(leftmost));
+			sententialForm.remove(leftmost);
+			sententialForm.addAll(leftmost, List.of(rule.right));
+		}
+		List<Terminal<Character>> word = new ArrayList<>();
+		for (Category c : sententialForm) word.add((CharTerminal) c);
+		return word;
+	}
+
+	private static boolean isAuxiliary(Grammar<?> grammar, NonTerminal nt) {
+		return !grammar.getNonTerminals().contains(nt);
+	}
+
+	/** the original rule A -> B0 B1 ... that was split into A -> B0 A_R<i>_1, ... */
+	private static Rule originalRuleStartingWith(Grammar<?> grammar, Rule split) {
+		int ruleIndex = 0;
+		for (Rule rule : grammar.getAllRules()) {
+			if (split.right[1].toString().equals(rule.left + "_R" + ruleIndex + "_1")) return rule;
+			++ruleIndex;
+		}
+		throw new IllegalArgumentException(split.toString());
+	}
+
+	/** Replaces the chains of rules for auxiliary nonterminals by the original long rules. */
+	private static List<Rule> collapseAuxiliaryRules(Grammar<?> grammar, List<Rule> derivation) {
+		List<Rule> result = new ArrayList<>();
+		// chains for the same auxiliary nonterminal can be nested
+		Map<NonTerminal, Deque<Integer>> pendingPosition = new HashMap<>();
+		Map<NonTerminal, Deque<List<Category>>> pendingRhs = new HashMap<>();
+		for (Rule rule : derivation) {
+			if (isAuxiliary(grammar, rule.left)) {
+				int pos = pendingPosition.get(rule.left).pop();
+				List<Category> rhs = pendingRhs.get(rule.left).pop();
+				rhs.add(rule.right[0]);
+				if (isAuxiliary(grammar, (NonTerminal) rule.right[1])) {
+					pendingPosition.computeIfAbsent((NonTerminal) rule.right[1], k -> new ArrayDeque<>()).push(pos);
+					pendingRhs.computeIfAbsent((NonTerminal) rule.right[1], k -> new ArrayDeque<>()).push(rhs);
+				} else {
+					rhs.add(rule.right[1]);
+					result.set(pos, new Rule(result.get(pos).left, rhs.toArray(new Category[0])));
+				}
+			} else if (rule.right.length == 2 && isAuxiliary(grammar, (NonTerminal) rule.right[1])) {
+				pendingPosition.computeIfAbsent((NonTerminal) rule.right[1], k -> new ArrayDeque<>()).push(result.size());
+				pendingRhs.computeIfAbsent((NonTerminal) rule.right[1], k -> new ArrayDeque<>())
+						.push(new ArrayList<>(List.of(rule.right[0])));
+				result.add(rule);
+			} else {
+				result.add(rule);
+			}
+		}
+		return result;
+	}
+
+}
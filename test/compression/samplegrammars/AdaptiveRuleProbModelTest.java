@@ -116,4 +116,24 @@ public class AdaptiveRuleProbModelTest extends TestCase {
 		Assert.assertEquals(Arrays.asList(SRules[1].getRight()), rhs);
 
 	}
+
+	@Test
+	public void testOnlyUsedNonTerminalChanges() {
+		Grammar<PairOfChar> G = new LiuGrammar(false).getGrammar();
+		NonTerminal S = NonTerminal.of("S");
+		NonTerminal L = NonTerminal.of("L");
+		Rule[] SRules = G.getRules(S).toArray(Rule[]::new);
+
+		AdaptiveRuleProbModel model = new AdaptiveRuleProbModel(G, 30);
+		List<Interval> LIntervals = model.getIntervalList(L);
+		Interval S0 = model.getIntervalFor(SRules[0]);
+		// intervals for L are not recomputed after using a rule for S
+		List<Interval> LIntervalsAfter = model.getIntervalList(L);
+		for (int i = 0; i < LIntervals.size(); i++)
+			Assert.assertSame(LIntervals.get(i), LIntervalsAfter.get(i));
+		// but those for S are
+		Assert.assertEquals(new BigDecimalInterval(BigDecimal.ZERO, fractionWithScale(2, 3, 30)),
+				model.getIntervalFor(SRules[0]));
+		Assert.assertNotSame(S0, model.getIntervalFor(SRules[0]));
+	}
 }
@@ -0,0 +1,87 @@
+package compression.samplegrammars;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.grammar.NonTerminal;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.BoundedAdaptiveRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the count bounds of {@link BoundedAdaptiveRuleProbModel}, and round trips with it.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class BoundedAdaptiveRuleProbModelTest {
+
+	RNAGrammar G = RoundTrips.grammar();
+
+	GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+	@Test
+	public void testCountHalving() {
+		BoundedAdaptiveRuleProbModel model = BoundedAdaptiveRuleProbModel.withCountHalving(G, 16);
+		AdaptiveRuleProbModel unbounded = new AdaptiveRuleProbModel(G);
+		for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+			for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+				NonTerminal lhs = rule.getLeft();
+				FrequencyTable table = model.getFrequencyTable(lhs);
+				model.update(lhs, model.getRuleIndex(rule));
+				unbounded.update(lhs, unbounded.getRuleIndex(rule));
+				// until the limit is first exceeded, the counts are those of the unbounded model
+				if (unbounded.getFrequencyTable(lhs).getTotal() <= 16)
+					Assert.assertEquals(unbounded.getFrequencyTable(lhs).getTotal(), table.getTotal());
+				Assert.assertTrue(table.getTotal() <= 16 + table.getSymbolLimit());
+				for (int i = 0; i < table.getSymbolLimit(); i++) Assert.assertTrue(table.get(i) >= 1);
+			}
+		}
+	}
+
+	@Test
+	public void testWindowCountsLastRules() {
+		int windowSize = 8;
+		BoundedAdaptiveRuleProbModel model = BoundedAdaptiveRuleProbModel.withWindow(G, windowSize);
+		List<Rule> rules = new ArrayList<>();
+		for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+			for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+				model.update(rule.getLeft(), model.getRuleIndex(rule));
+				rules.add(rule);
+			}
+		}
+		NonTerminal lhs = rules.get(rules.size() - 1).getLeft();
+		List<Rule> last = new ArrayList<>();
+		for (int i = rules.size() - 1; i >= 0 && last.size() < windowSize; --i)
+			if (rules.get(i).getLeft().equals(lhs)) last.add(rules.get(i));
+		FrequencyTable table = model.getFrequencyTable(lhs);
+		for (int i = 0; i < table.getSymbolLimit(); i++) {
+			int uses = 0;
+			for (Rule rule : last) if (model.getRuleIndex(rule) == i) uses++;
+			Assert.assertEquals(1 + uses, table.get(i));
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		for (int bound : new int[] {4, 64}) {
+			RoundTrips.assertRoundTrips("count halving " + bound,
+					rna -> NayukiEncodeRunner.encode(encoder, rna, BoundedAdaptiveRuleProbModel.withCountHalving(G, bound)),
+					encoded -> NayukiDecodeRunner.decode(encoded,
+							BoundedAdaptiveRuleProbModel.withCountHalving(G, bound), G.startSymbol));
+			RoundTrips.assertRoundTrips("window " + bound,
+					rna -> NayukiEncodeRunner.encodeIntervals(encoder, rna, BoundedAdaptiveRuleProbModel.withWindow(G, bound)),
+					encoded -> NayukiDecodeRunner.decodeIntervals(encoded,
+							BoundedAdaptiveRuleProbModel.withWindow(G, bound), G.startSymbol));
+		}
+	}
+
+}
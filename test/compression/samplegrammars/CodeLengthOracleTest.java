@@ -0,0 +1,62 @@
+package compression.samplegrammars;
+
+import compression.GenericRNAEncoderForPrecision;
+import compression.arithmaticCoding.bigDecimalAc.BitSizeOnlyArithmeticEncoder;
+import compression.data.FolderBasedDataset;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.CodeLengthOracle;
+import compression.samplegrammars.model.RuleProbModel;
+import compression.samplegrammars.model.SemiAdaptiveRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Checks the closed-form code lengths of {@link CodeLengthOracle} against simulated coding.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class CodeLengthOracleTest {
+
+	@Test
+	public void testSameLengthsAsSimulation() {
+		for (SampleGrammar sampleGrammar : List.of(new DowellGrammar4Bound(true), new DowellGrammar1Bound(true),
+				new LiuGrammar(true))) {
+			RNAGrammar G = sampleGrammar.getGrammar();
+			for (RNAWithStructure rna : new FolderBasedDataset("TestDataSet")) {
+				List<Rule> derivation = LeftmostDerivation.rules(G, rna);
+
+				double adaptiveBits = CodeLengthOracle.adaptiveBits(G, derivation);
+				Assert.assertEquals(rna.name, simulatedLength(new AdaptiveRuleProbModel(G), G, rna),
+						CodeLengthOracle.encodedLength(adaptiveBits), 1);
+
+				double semiAdaptiveBits = CodeLengthOracle.semiAdaptiveBits(G, derivation);
+				Assert.assertEquals(rna.name, simulatedLength(new SemiAdaptiveRuleProbModel(G, rna), G, rna),
+						CodeLengthOracle.encodedLength(semiAdaptiveBits), 1);
+
+				// semi-adaptive uses the maximum likelihood probabilities for this RNA
+				Assert.assertTrue(semiAdaptiveBits <= adaptiveBits);
+			}
+		}
+	}
+
+	private static int simulatedLength(RuleProbModel model, RNAGrammar G, RNAWithStructure rna) {
+		return new GenericRNAEncoderForPrecision(model, new BitSizeOnlyArithmeticEncoder(), G, G.startSymbol)
+				.getPrecisionForRNACode(rna);
+	}
+
+	@Test
+	public void testSingleNonTerminal() {
+		// one use each of two rules of S: probabilities 1/2, then 1/3
+		RNAGrammar G = new LiuGrammar(false).getGrammar();
+		Rule[] SRules = G.getRules(G.startSymbol).toArray(Rule[]::new);
+		Assert.assertEquals(Math.log(6) / Math.log(2),
+				CodeLengthOracle.adaptiveBits(G, List.of(SRules[0], SRules[1])), 1e-9);
+		Assert.assertEquals(2, CodeLengthOracle.semiAdaptiveBits(G, List.of(SRules[0], SRules[1])), 1e-9);
+	}
+
+}
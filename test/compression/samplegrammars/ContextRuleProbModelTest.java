@@ -0,0 +1,88 @@
+package compression.samplegrammars;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.data.CachedDataset;
+import compression.grammar.NonTerminal;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.ContextRuleProbModel;
+import compression.samplegrammars.model.RuleContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the context counts of {@link RuleCountsForGrammarLaPlace} and round trips with
+ * {@link ContextRuleProbModel}.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class ContextRuleProbModelTest {
+
+	RNAGrammar G = RoundTrips.grammar();
+
+	GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+	@Test
+	public void testContextCountsMatchRuleCounts() {
+		RuleCountsForGrammarLaPlace counts = new RuleCountsForGrammarLaPlace(G,
+				new CachedDataset(RoundTrips.trainingRNAs()), true);
+		Map<Rule, Long> ruleCounts = counts.ruleCounts();
+		for (Rule rule : G.getAllRules()) {
+			long inContexts = 0;
+			for (Map.Entry<RuleContext, Map<Rule, Long>> e : counts.contextCounts().entrySet()) {
+				Long c = e.getValue().get(rule);
+				if (c == null) continue;
+				Assert.assertTrue(e.getKey() == RuleContext.ROOT || rule.getLeft().equals(e.getKey().getNonTerminal()));
+				inContexts += c;
+			}
+			// rule counts start at 1
+			Assert.assertEquals(rule.toString(), ruleCounts.get(rule) - 1, inContexts);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testContextCountsOnlyOnRequest() {
+		new RuleCountsForGrammarLaPlace(G, new CachedDataset(RoundTrips.trainingRNAs())).contextCounts();
+	}
+
+	@Test
+	public void testContextsOfDerivation() {
+		for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+			List<Rule> derivation = encoder.leftmostDerivationFor(rna);
+			List<RuleContext> contexts = RuleContext.contextsOf(derivation);
+			Assert.assertEquals(RuleContext.ROOT, contexts.get(0));
+			for (int i = 1; i < derivation.size(); i++) {
+				RuleContext context = contexts.get(i);
+				Assert.assertEquals(derivation.get(i).getLeft(), context.getNonTerminal());
+				Assert.assertTrue(derivation.subList(0, i).contains(context.getParent()));
+			}
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		ContextRuleProbModel trained = new ContextRuleProbModel(G, new RuleCountsForGrammarLaPlace(G,
+				new CachedDataset(RoundTrips.trainingRNAs()), true));
+		RoundTrips.assertRoundTrips(null,
+				rna -> NayukiEncodeRunner.encodeIntervals(encoder, rna, new ContextRuleProbModel(trained)),
+				encoded -> NayukiDecodeRunner.decodeIntervals(encoded, new ContextRuleProbModel(trained), G.startSymbol));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRulesOutOfOrder() {
+		ContextRuleProbModel model = new ContextRuleProbModel(G, new RuleCountsForGrammarLaPlace(G,
+				new CachedDataset(RoundTrips.trainingRNAs()), true));
+		List<Rule> derivation = encoder.leftmostDerivationFor(RoundTrips.testRNAs().iterator().next());
+		model.getIntervalFor(derivation.get(0));
+		NonTerminal next = RuleContext.contextsOf(derivation).get(1).getNonTerminal();
+		model.getIntervalFor(G.getAllRules().stream().filter(r -> !r.getLeft().equals(next)).findAny().get());
+	}
+
+}
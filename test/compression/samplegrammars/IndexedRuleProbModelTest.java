@@ -0,0 +1,153 @@
+package compression.samplegrammars;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.arithmaticCoding.bigDecimalAc.Interval;
+import compression.arithmaticCoding.nayukiAc.FrequencyTable;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.grammar.CharTerminal;
+import compression.grammar.Grammar;
+import compression.grammar.NonTerminal;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.AdaptiveRuleProbModel;
+import compression.samplegrammars.model.IndexedRuleProbModel;
+import compression.samplegrammars.model.SemiAdaptiveRuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Checks the rule indices and frequency tables of all {@link IndexedRuleProbModel}s.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class IndexedRuleProbModelTest {
+
+	RNAGrammar G = RoundTrips.grammar();
+
+	GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+	StaticRuleProbModel staticModel() throws Exception {
+		return new StaticRuleProbModel(G, RoundTrips.trainedRuleProbs(G));
+	}
+
+	void checkModels(ModelCheck check) throws Exception {
+		StaticRuleProbModel staticModel = staticModel();
+		check.run("static", rna -> staticModel);
+		check.run("semi-adaptive", rna -> new SemiAdaptiveRuleProbModel(G, rna));
+		check.run("adaptive", rna -> new AdaptiveRuleProbModel(G));
+	}
+
+	interface ModelCheck {
+		void run(String name, Function<RNAWithStructure, IndexedRuleProbModel> newModel) throws Exception;
+	}
+
+	@Test
+	public void testIndicesAndCumulativeRanges() throws Exception {
+		checkModels((name, newModel) -> {
+			for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+				IndexedRuleProbModel model = newModel.apply(rna);
+				for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+					int index = model.getRuleIndex(rule);
+					Assert.assertEquals(name, Arrays.asList(rule.getRight()), model.getRhs(rule.left, index));
+					FrequencyTable table = model.getFrequencyTable(rule.left);
+					Assert.assertTrue(name, table.get(index) > 0);
+					for (int i = 0; i < table.getSymbolLimit(); i++) {
+						if (table.get(i) == 0) continue;
+						Assert.assertEquals(name, i, model.findRuleIndex(rule.left, table.getLow(i)));
+						Assert.assertEquals(name, i, model.findRuleIndex(rule.left, table.getHigh(i) - 1));
+					}
+					model.update(rule.left, index);
+				}
+			}
+		});
+	}
+
+	@Test
+	public void testAdaptiveIntervalsFollowIndexedUpdates() throws Exception {
+		for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+			AdaptiveRuleProbModel intervals = new AdaptiveRuleProbModel(G);
+			AdaptiveRuleProbModel mixed = new AdaptiveRuleProbModel(G);
+			boolean useIndex = false;
+			for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+				// mixing interval and index methods must keep both views consistent
+				FrequencyTable expected = intervals.getFrequencyTable(rule.left);
+				FrequencyTable actual = mixed.getFrequencyTable(rule.left);
+				for (int i = 0; i < expected.getSymbolLimit(); i++)
+					Assert.assertEquals(expected.get(i), actual.get(i));
+				Interval interval = intervals.getIntervalFor(rule);
+				if (useIndex) mixed.update(rule.left, mixed.getRuleIndex(rule));
+				else Assert.assertEquals(interval, mixed.getIntervalFor(rule));
+				useIndex = !useIndex;
+			}
+		}
+	}
+
+	@Test
+	public void testAdaptiveCodeLengths() throws Exception {
+		for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+			double idealBits = 0;
+			AdaptiveRuleProbModel counts = new AdaptiveRuleProbModel(G);
+			for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+				FrequencyTable table = counts.getFrequencyTable(rule.left);
+				int index = counts.getRuleIndex(rule);
+				idealBits += Math.log((double) table.getTotal() / table.get(index)) / Math.log(2);
+				counts.update(rule.left, index);
+			}
+			byte[] indexEncoded = NayukiEncodeRunner.encode(encoder, rna, new AdaptiveRuleProbModel(G));
+			byte[] intervalEncoded = NayukiEncodeRunner.encodeIntervals(encoder, rna, new AdaptiveRuleProbModel(G));
+			// arithmetic coding needs at most 2 bits more than the ideal code length (plus byte padding)
+			Assert.assertTrue(rna.name, 8 * indexEncoded.length <= idealBits + 2 + 8);
+			// the intervals are quantised, so both can differ by a small amount
+			Assert.assertEquals(rna.name, intervalEncoded.length, indexEncoded.length, 1 + 0.001 * indexEncoded.length);
+
+			RoundTrips.assertDecoded(null, rna,
+					NayukiDecodeRunner.decode(indexEncoded, new AdaptiveRuleProbModel(G), G.startSymbol));
+		}
+	}
+
+	@Test
+	public void testStaticModelWithUnusableNonTerminal() {
+		NonTerminal S = new NonTerminal("S"), X = new NonTerminal("X"), Y = new NonTerminal("Y");
+		CharTerminal DT = new CharTerminal('.');
+		Grammar<Character> grammar = new Grammar.Builder<Character>("zeroProbabilities", S)
+				.addRule(S, X)
+				.addRule(S, Y)
+				.addRule(X, DT)
+				.addRule(Y, DT)
+				.build();
+		Map<Rule, Double> probs = new HashMap<>();
+		for (Rule rule : grammar.getAllRules())
+			probs.put(rule, rule.getLeft().equals(S) ? 0.5 : rule.getLeft().equals(X) ? 0.0 : 1.0);
+		// X cannot be quantised, but that only matters once it is used
+		StaticRuleProbModel model = new StaticRuleProbModel(grammar, probs);
+		Assert.assertEquals(2, model.getFrequencyTable(S).getSymbolLimit());
+		Assert.assertEquals(1, model.getFrequencyTable(Y).getSymbolLimit());
+		try {
+			model.getFrequencyTable(X);
+			Assert.fail("expected IllegalStateException");
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		checkModels((name, newModel) -> {
+			for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+				RoundTrips.assertRoundTrip(name, rna,
+						r -> NayukiEncodeRunner.encode(encoder, r, newModel.apply(r)),
+						e -> NayukiDecodeRunner.decode(e, newModel.apply(rna), G.startSymbol));
+			}
+		});
+	}
+
+}
@@ -0,0 +1,59 @@
+package compression.samplegrammars;
+
+import compression.GenericRNAEncoder;
+import compression.RoundTrips;
+import compression.benchmark.NayukiDecodeRunner;
+import compression.benchmark.NayukiEncodeRunner;
+import compression.grammar.RNAGrammar;
+import compression.grammar.RNAWithStructure;
+import compression.grammar.Rule;
+import compression.samplegrammars.model.MixingRuleProbModel;
+import compression.samplegrammars.model.StaticRuleProbModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Round trips with {@link MixingRuleProbModel}, on the integer and on the interval path.
+ *
+ * @author Sebastian Wild (wild@liverpool.ac.uk)
+ */
+public class MixingRuleProbModelTest {
+
+	RNAGrammar G = RoundTrips.grammar();
+
+	GenericRNAEncoder encoder = RoundTrips.derivationEncoder(G);
+
+	MixingRuleProbModel trained() {
+		return new MixingRuleProbModel(G, new StaticRuleProbModel(G, RoundTrips.trainedRuleProbs(G)));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		MixingRuleProbModel trained = trained();
+		for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+			byte[] encoded = RoundTrips.assertRoundTrip("integer", rna,
+					r -> NayukiEncodeRunner.encode(encoder, r, new MixingRuleProbModel(trained)),
+					e -> NayukiDecodeRunner.decode(e, new MixingRuleProbModel(trained), G.startSymbol));
+
+			// the intervals are those of the frequency tables
+			byte[] intervals = RoundTrips.assertRoundTrip("intervals", rna,
+					r -> NayukiEncodeRunner.encodeIntervals(encoder, r, new MixingRuleProbModel(trained)),
+					e -> NayukiDecodeRunner.decodeIntervals(e, new MixingRuleProbModel(trained), G.startSymbol));
+			Assert.assertEquals(rna.name, encoded.length, intervals.length, 1 + 0.001 * encoded.length);
+		}
+	}
+
+	@Test
+	public void testWeightsStayInRange() {
+		MixingRuleProbModel model = trained();
+		for (RNAWithStructure rna : RoundTrips.testRNAs()) {
+			for (Rule rule : encoder.leftmostDerivationFor(rna)) {
+				model.getIntervalFor(rule);
+				int weight = model.getWeight(rule.getLeft());
+				Assert.assertTrue(weight >= MixingRuleProbModel.MIN_WEIGHT);
+				Assert.assertTrue(weight <= (1 << MixingRuleProbModel.WEIGHT_BITS) - MixingRuleProbModel.MIN_WEIGHT);
+			}
+		}
+	}
+
+}